@@ -1,6 +1,7 @@
 package vg.civcraft.mc.civmodcore;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 import net.md_5.bungee.api.ChatColor;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
@@ -23,8 +24,17 @@ import vg.civcraft.mc.civmodcore.players.scoreboard.side.ScoreBoardListener;
 import vg.civcraft.mc.civmodcore.players.settings.PlayerSettingAPI;
 import vg.civcraft.mc.civmodcore.players.settings.commands.ConfigCommand;
 import vg.civcraft.mc.civmodcore.utilities.SkinCache;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
+import vg.civcraft.mc.civmodcore.world.LoadedChunkIndex;
 import vg.civcraft.mc.civmodcore.world.WorldTracker;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CheckpointSettings;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.ChunkDataCleaner;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.ChunkMetaCommand;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CleanupSettings;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.EvictionSettings;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.FlushSettings;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.GlobalChunkMetaManager;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.PinnedRegion;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaAPI;
 import vg.civcraft.mc.civmodcore.world.locations.global.CMCWorldDAO;
 import vg.civcraft.mc.civmodcore.world.locations.global.WorldIDManager;
@@ -37,6 +47,7 @@ public final class CivModCorePlugin extends ACivMod {
 	private GlobalChunkMetaManager chunkMetaManager;
 	private ManagedDatasource database;
 	private WorldIDManager worldIdManager;
+	private ChunkDataCleaner chunkDataCleaner;
 	private CommandManager commands;
 	private SkinCache skinCache;
 
@@ -48,24 +59,50 @@ public final class CivModCorePlugin extends ACivMod {
 		saveDefaultResource("enchants.yml");
 		saveDefaultConfig();
 		super.onEnable();
-		// Load Database
+		// Load Database, migrating it in the background while loading the APIs, which don't need it
+		CMCWorldDAO dao = null;
+		CompletableFuture<Boolean> migrated = null;
 		try {
 			this.database = ManagedDatasource.construct(this, (DatabaseCredentials) getConfig().get("database"));
 			if (this.database != null) {
-				CMCWorldDAO dao = new CMCWorldDAO(this.database, this);
-				if (dao.updateDatabase()) {
+				dao = new CMCWorldDAO(this.database, this);
+				migrated = dao.updateDatabaseAsync();
+			}
+		}
+		catch (final Throwable error) {
+			warning("Cannot get database from config.", error);
+			this.database = null;
+		}
+		// Load APIs
+		EnchantUtils.loadEnchantAbbreviations(this);
+		MoreTags.init();
+		SpawnEggUtils.init();
+		TreeTypeUtils.init();
+		BottomLineAPI.init();
+		MapColours.init();
+		if (migrated != null) {
+			try {
+				if (migrated.join()) {
 					this.worldIdManager = new WorldIDManager(dao);
-					this.chunkMetaManager = new GlobalChunkMetaManager(dao, this.worldIdManager);
+					this.chunkMetaManager = new GlobalChunkMetaManager(dao, this.worldIdManager,
+							CheckpointSettings.fromConfig(getConfig().getConfigurationSection("chunk_meta_checkpoint")),
+							FlushSettings.fromConfig(getConfig().getConfigurationSection("chunk_meta_flush")),
+							EvictionSettings.fromConfig(getConfig().getConfigurationSection("chunk_meta_eviction")));
+					PinnedRegion.fromConfig(getConfig().getConfigurationSection("chunk_meta_pinned_regions"),
+							getLogger()).forEach(this.chunkMetaManager::pinRegion);
+					this.chunkDataCleaner = new ChunkDataCleaner(this.database, getLogger(),
+							CleanupSettings.fromConfig(getConfig().getConfigurationSection("chunk_data_cleanup")));
+					this.chunkDataCleaner.start();
 					info("Setup database successfully");
 				}
 				else {
 					warning("Could not setup database");
 				}
 			}
-		}
-		catch (final Throwable error) {
-			warning("Cannot get database from config.", error);
-			this.database = null;
+			catch (final Throwable error) {
+				warning("Could not setup database", error);
+				this.database = null;
+			}
 		}
 		String scoreboardHeader = ChatColor.translateAlternateColorCodes('&', getConfig().getString("scoreboardHeader","  Info  "));
 		ScoreBoardAPI.setDefaultHeader(scoreboardHeader);
@@ -76,25 +113,29 @@ public final class CivModCorePlugin extends ACivMod {
 		registerListener(new ScoreBoardListener());
 		registerListener(new CustomEventMapper());
 		registerListener(new WorldTracker());
-		registerListener(ChunkOperationManager.INSTANCE);
+		registerListener(ChunkLifecycleDispatcher.INSTANCE);
+		LoadedChunkIndex.INSTANCE.start(this);
 		// Register commands
 		this.commands = new CommandManager(this);
 		this.commands.init();
 		this.commands.registerCommand(new ConfigCommand());
 		this.commands.registerCommand(ChunkOperationManager.INSTANCE);
-		// Load APIs
-		EnchantUtils.loadEnchantAbbreviations(this);
-		MoreTags.init();
-		SpawnEggUtils.init();
-		TreeTypeUtils.init();
-		BottomLineAPI.init();
-		MapColours.init();
+		this.commands.registerCommand(ChunkLifecycleDispatcher.INSTANCE);
+		this.commands.registerCommand(new ChunkMetaCommand());
 		this.skinCache = new SkinCache(this, getConfig().getInt("skin-download-threads", Runtime.getRuntime().availableProcessors() / 2));
 	}
 
 	@Override
 	public void onDisable() {
 		Bukkit.getOnlinePlayers().forEach(HumanEntity::closeInventory);
+		if (this.chunkDataCleaner != null) {
+			this.chunkDataCleaner.stop();
+			this.chunkDataCleaner = null;
+		}
+		if (this.chunkMetaManager != null) {
+			// save all plugins at once, rather than plugin by plugin as their views are disabled
+			this.chunkMetaManager.shutdown();
+		}
 		ChunkMetaAPI.saveAll();
 		this.chunkMetaManager = null;
 		// Disconnect database
@@ -109,6 +150,8 @@ public final class CivModCorePlugin extends ACivMod {
 		}
 		DialogManager.resetDialogs();
 		WorldTracker.reset();
+		LoadedChunkIndex.INSTANCE.stop();
+		ChunkLifecycleDispatcher.INSTANCE.reset();
 		PlayerSettingAPI.saveAll();
 		if (this.commands != null) {
 			this.commands.reset();
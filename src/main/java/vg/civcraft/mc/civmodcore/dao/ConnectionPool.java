@@ -31,6 +31,17 @@ public class ConnectionPool {
 	 * @param credentials The credentials to connect with.
 	 */
 	public ConnectionPool(@Nonnull final DatabaseCredentials credentials) {
+		this(credentials, false);
+	}
+
+	/**
+	 * Creates a new ConnectionPool based on a given set of credentials. Note that the credentials are not scrutinised,
+	 * so you should make sure they're valid, or at least valid enough, otherwise expect exceptions or logger spam.
+	 *
+	 * @param credentials The credentials to connect with.
+	 * @param readOnly Whether the pool's connections should be read-only, such as when connecting to a read replica.
+	 */
+	public ConnectionPool(@Nonnull final DatabaseCredentials credentials, final boolean readOnly) {
 		this.credentials = Objects.requireNonNull(credentials,
 				"Cannot create a ConnectionPool with a null set of credentials.");
 		HikariConfig config = new HikariConfig();
@@ -41,6 +52,7 @@ public class ConnectionPool {
 		config.setMaxLifetime(credentials.maxLifetime());
 		config.setMaximumPoolSize(credentials.poolSize());
 		config.setUsername(credentials.username());
+		config.setReadOnly(readOnly);
 		if (!Strings.isNullOrEmpty(credentials.password())) {
 			config.setPassword(credentials.password());
 		}
@@ -1,6 +1,8 @@
 package vg.civcraft.mc.civmodcore.dao;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -23,13 +25,49 @@ public record DatabaseCredentials(String username,
 								  int poolSize,
 								  long connectionTimeout,
 								  long idleTimeout,
-								  long maxLifetime)
+								  long maxLifetime,
+								  List<DatabaseCredentials> readReplicas,
+								  long maxReplicaLag)
 		implements ConfigurationSerializable {
 
+	/**
+	 * How far behind the primary a read replica may fall before reads are routed back to the primary, in
+	 * milliseconds.
+	 */
+	public static final long DEFAULT_MAX_REPLICA_LAG = 5_000L;
+
+	private static final DatabaseCredentials DEFAULTS = new DatabaseCredentials("root", "", "localhost", 3306,
+			"mysql", "minecraft", 10, 10_000L, 600_000L, 7_200_000L);
+
+	public DatabaseCredentials {
+		readReplicas = readReplicas == null ? List.of() : List.copyOf(readReplicas);
+	}
+
+	public DatabaseCredentials(final String username,
+							   final String password,
+							   final String host,
+							   final int port,
+							   final String driver,
+							   final String database,
+							   final int poolSize,
+							   final long connectionTimeout,
+							   final long idleTimeout,
+							   final long maxLifetime) {
+		this(username, password, host, port, driver, database, poolSize, connectionTimeout, idleTimeout,
+				maxLifetime, List.of(), DEFAULT_MAX_REPLICA_LAG);
+	}
+
+	/**
+	 * @return Returns whether any read replicas have been configured alongside these credentials.
+	 */
+	public boolean hasReadReplicas() {
+		return !this.readReplicas.isEmpty();
+	}
+
 	@Nonnull
 	@Override
 	public Map<String, Object> serialize() {
-		final var data = new HashMap<String, Object>(10);
+		final var data = new HashMap<String, Object>(12);
 		data.put("username", this.username);
 		data.put("password", this.password);
 		data.put("hostname", this.host);
@@ -40,6 +78,14 @@ public record DatabaseCredentials(String username,
 		data.put("connectionTimeout", this.connectionTimeout);
 		data.put("idleTimeout", this.idleTimeout);
 		data.put("maxLifetime", this.maxLifetime);
+		if (hasReadReplicas()) {
+			final var replicas = new ArrayList<Map<String, Object>>(this.readReplicas.size());
+			for (final DatabaseCredentials replica : this.readReplicas) {
+				replicas.add(replica.serialize());
+			}
+			data.put("readReplicas", replicas);
+			data.put("maxReplicaLag", this.maxReplicaLag);
+		}
 		return data;
 	}
 
@@ -48,27 +94,63 @@ public record DatabaseCredentials(String username,
 		if (MapUtils.isEmpty(data)) {
 			return null;
 		}
+		final DatabaseCredentials primary = deserialize(data, DEFAULTS);
+		return new DatabaseCredentials(primary.username, primary.password, primary.host, primary.port,
+				primary.driver, primary.database, primary.poolSize, primary.connectionTimeout, primary.idleTimeout,
+				primary.maxLifetime,
+				deserializeReplicas(primary, MoreMapUtils.attemptGet(data, List.of(),
+						"readReplicas", "read_replicas", "replicas")), // keys
+				MoreMapUtils.attemptGet(data, NumberConversions::toLong, DEFAULT_MAX_REPLICA_LAG,
+						"maxReplicaLag", "max_replica_lag")); // keys
+	}
+
+	@Nonnull
+	private static DatabaseCredentials deserialize(@Nonnull final Map<String, Object> data,
+												   @Nonnull final DatabaseCredentials defaults) {
 		return new DatabaseCredentials(
-				MoreMapUtils.attemptGet(data, "root",
+				MoreMapUtils.attemptGet(data, defaults.username,
 						"username", "user"), // keys
-				MoreMapUtils.attemptGet(data, "",
+				MoreMapUtils.attemptGet(data, defaults.password,
 						"password", "pass"), // keys
-				MoreMapUtils.attemptGet(data, "localhost",
+				MoreMapUtils.attemptGet(data, defaults.host,
 						"hostname", "host"), // keys
-				MoreMapUtils.attemptGet(data, NumberConversions::toInt, 3306,
+				MoreMapUtils.attemptGet(data, NumberConversions::toInt, defaults.port,
 						"port"), // keys
-				MoreMapUtils.attemptGet(data, "mysql",
+				MoreMapUtils.attemptGet(data, defaults.driver,
 						"driver"), // keys
-				MoreMapUtils.attemptGet(data, "minecraft",
+				MoreMapUtils.attemptGet(data, defaults.database,
 						"database", "dbname", "db"), // keys
-				MoreMapUtils.attemptGet(data, NumberConversions::toInt, 10,
+				MoreMapUtils.attemptGet(data, NumberConversions::toInt, defaults.poolSize,
 						"poolSize", "poolsize"), // keys
-				MoreMapUtils.attemptGet(data, NumberConversions::toLong, 10_000L,
+				MoreMapUtils.attemptGet(data, NumberConversions::toLong, defaults.connectionTimeout,
 						"connectionTimeout", "connection_timeout"), // keys
-				MoreMapUtils.attemptGet(data, NumberConversions::toLong, 600_000L,
+				MoreMapUtils.attemptGet(data, NumberConversions::toLong, defaults.idleTimeout,
 						"idleTimeout", "idle_timeout"), // keys
-				MoreMapUtils.attemptGet(data, NumberConversions::toLong, 7_200_000L,
+				MoreMapUtils.attemptGet(data, NumberConversions::toLong, defaults.maxLifetime,
 						"maxLifetime", "max_lifetime")); // keys
 	}
 
+	/**
+	 * Replicas only need to specify what differs from the primary, typically just the host and port, everything else
+	 * is inherited from the primary's credentials.
+	 */
+	@SuppressWarnings("unchecked")
+	@Nonnull
+	private static List<DatabaseCredentials> deserializeReplicas(@Nonnull final DatabaseCredentials primary,
+																 @Nullable final Object raw) {
+		if (!(raw instanceof List<?> entries) || entries.isEmpty()) {
+			return List.of();
+		}
+		final var replicas = new ArrayList<DatabaseCredentials>(entries.size());
+		for (final Object entry : entries) {
+			if (entry instanceof DatabaseCredentials credentials) {
+				replicas.add(credentials);
+			}
+			else if (entry instanceof Map<?, ?> map && !map.isEmpty()) {
+				replicas.add(deserialize((Map<String, Object>) map, primary));
+			}
+		}
+		return replicas;
+	}
+
 }
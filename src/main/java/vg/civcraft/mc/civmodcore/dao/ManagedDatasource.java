@@ -1,5 +1,6 @@
 package vg.civcraft.mc.civmodcore.dao;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,10 +12,14 @@ import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -79,14 +84,6 @@ public class ManagedDatasource {
 	);
 	""";
 
-	private static final String CREATE_LOCK_TABLE = """
-	CREATE TABLE IF NOT EXISTS managed_plugin_locks (
-		plugin_name VARCHAR(120) NOT NULL,
-		lock_time TIMESTAMP NOT NULL DEFAULT NOW(),
-		CONSTRAINT pk_managed_plugin_locks PRIMARY KEY (plugin_name)
-	);
-	""";
-
 	private static final String CHECK_LAST_MIGRATION = """
 	SELECT current_migration_number FROM managed_plugin_data WHERE plugin_name = ?;
 	""";
@@ -102,39 +99,71 @@ public class ManagedDatasource {
 		last_migration = VALUES(last_migration);
 	""";
 
-	private static final String CLEANUP_LOCK_TABLE = """
-	DELETE FROM managed_plugin_locks WHERE lock_time <= TIMESTAMPADD(HOUR, -8, NOW());
-	""";
-
 	private static final String ACQUIRE_LOCK = """
-	INSERT IGNORE INTO managed_plugin_locks (plugin_name) VALUES (?);
+	SELECT GET_LOCK(?, ?);
 	""";
 
 	private static final String RELEASE_LOCK = """
-	DELETE FROM managed_plugin_locks WHERE plugin_name = ?;
+	SELECT RELEASE_LOCK(?);
 	""";
 
-	private static final long MAX_WAIT_FOR_LOCK = 600000L;
-	private static final long WAIT_PERIOD = 500L;
+	private static final String CHECK_REPLICA_STATUS = """
+	SHOW SLAVE STATUS;
+	""";
+
+	private static final int MAX_WAIT_FOR_LOCK = 600; // seconds
+	private static final int MAX_LOCK_NAME_LENGTH = 64;
+	private static final long REPLICA_CHECK_INTERVAL = 5000L;
+	private static final int STREAMING_FETCH_SIZE = 1000;
+	private static final String WRITE_SPOOL_FILE = "write-spool.dat";
+
+	/**
+	 * Shared between all datasources so that plugins can check and apply their migrations concurrently via
+	 * {@link #updateDatabaseAsync()}.
+	 */
+	private static final ExecutorService MIGRATION_EXECUTOR = Executors.newCachedThreadPool();
 
 	private final CivLogger logger;
 	private final Plugin plugin;
 	private final ConnectionPool connections;
 	private final ExecutorService postExecutor;
 	private final TreeMap<Integer, Migration> migrations;
+	private final List<ReadReplica> readReplicas;
+	private final long maxReplicaLag;
+	private final AtomicInteger nextReplica;
+	private final ScheduledExecutorService replicaMonitor;
+	private volatile WriteSpool writeSpool;
 	private int firstMigration;
 	private int lastMigration;
 
 	private ManagedDatasource(final CivLogger logger,
 							  final ACivMod plugin,
-							  final ConnectionPool connections) {
+							  final ConnectionPool connections,
+							  final List<ReadReplica> readReplicas,
+							  final long maxReplicaLag) {
 		this.logger = logger;
 		this.plugin = plugin;
 		this.connections = connections;
 		this.postExecutor = Executors.newSingleThreadExecutor();
 		this.migrations = new TreeMap<>();
+		this.readReplicas = readReplicas;
+		this.maxReplicaLag = maxReplicaLag;
+		this.nextReplica = new AtomicInteger();
 		this.firstMigration = Integer.MAX_VALUE;
 		this.lastMigration = Integer.MIN_VALUE;
+		// Writes spooled during an outage before the last shutdown are replayed right away, whether used or not
+		if (getWriteSpoolFile().length() > 0) {
+			this.writeSpool = new WriteSpool(this, getWriteSpoolFile(), logger);
+		}
+		if (readReplicas.isEmpty()) {
+			this.replicaMonitor = null;
+		}
+		else {
+			checkReadReplicas();
+			this.replicaMonitor = Executors.newSingleThreadScheduledExecutor();
+			this.replicaMonitor.scheduleWithFixedDelay(this::checkReadReplicas,
+					REPLICA_CHECK_INTERVAL, REPLICA_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+		}
 	}
 
 	/**
@@ -150,8 +179,9 @@ public class ManagedDatasource {
 	 *
 	 * Use {@link #registerMigration(int, boolean, Callable, String...)} to add a new migration.
 	 *
-	 * When you are done adding, call {@link #updateDatabase()} which gets a lock on migrating for this plugin, then
-	 * checks if any migrations need to be applied, and applies as needed.
+	 * When you are done adding, call {@link #updateDatabase()} which checks if any migrations need to be applied, and
+	 * if so, gets a lock on migrating for this plugin and applies them as needed. If you'd rather not block while
+	 * doing so, use {@link #updateDatabaseAsync()} instead.
 	 *
 	 * Now, your database connection pool will be ready to use!
 	 *
@@ -176,6 +206,10 @@ public class ManagedDatasource {
 	 * will be executed in order. Be sure to watch for errors or warnings and of course read the PreparedStatement API
 	 * docs for any further questions.
 	 *
+	 * If the credentials specify read replicas, a separate pool is opened for each of them, which can be used for
+	 * heavy reads via {@link #getReadConnection()}. Replicas that are unreachable, not replicating, or lagging behind
+	 * by more than the configured maximum are skipped in favour of the primary until they recover.
+	 *
 	 * @param plugin The plugin whose database is being managed.
 	 * @param credentials The credentials to connect to the database with.
 	 * @return Returns
@@ -191,13 +225,9 @@ public class ManagedDatasource {
 		final var connections = new ConnectionPool(credentials);
 		logger.info(String.format("Connecting to %s@%s:%s using %s",credentials.database(),
 				credentials.host(), credentials.port(), credentials.username()));
-		try (final Connection connection = connections.getConnection()) {
-			try (final Statement statement = connection.createStatement()) {
-				statement.executeUpdate(ManagedDatasource.CREATE_MIGRATIONS_TABLE);
-			}
-			try (final Statement statement = connection.createStatement()) {
-				statement.executeUpdate(ManagedDatasource.CREATE_LOCK_TABLE);
-			}
+		try (final Connection connection = connections.getConnection();
+			 final Statement statement = connection.createStatement()) {
+			statement.executeUpdate(ManagedDatasource.CREATE_MIGRATIONS_TABLE);
 		}
 		catch (final SQLException exception) {
 			logger.severe("Failed to prepare migrations table or register this plugin to it.");
@@ -206,7 +236,19 @@ public class ManagedDatasource {
 					"latest mysql version.", exception);
 			return null;
 		}
-		return new ManagedDatasource(logger, plugin, connections);
+		final var replicas = new ArrayList<ReadReplica>(credentials.readReplicas().size());
+		for (final DatabaseCredentials replicaCredentials : credentials.readReplicas()) {
+			final String name = replicaCredentials.host() + ":" + replicaCredentials.port();
+			logger.info(String.format("Connecting to read replica %s@%s using %s", replicaCredentials.database(),
+					name, replicaCredentials.username()));
+			final var replicaConnections = new ConnectionPool(replicaCredentials, true);
+			if (replicaConnections.getHikariDataSource() == null) {
+				logger.warning("Read replica " + name + " is unavailable, its reads will go to the primary instead.");
+				continue;
+			}
+			replicas.add(new ReadReplica(name, replicaConnections));
+		}
+		return new ManagedDatasource(logger, plugin, connections, replicas, credentials.maxReplicaLag());
 	}
 
 	/**
@@ -249,79 +291,128 @@ public class ManagedDatasource {
 
 	/**
 	 * This method should be called by your plugin after all migrations have been registered. It applies the migrations
-	 * if necessary in a "multi-tenant" safe way via a soft-lock. Locks have a maximum duration currently set to 8
-	 * hours, but realistically they will be very short. For multi-tenant updates all servers should gracefully wait in
-	 * line.
+	 * if necessary in a "multi-tenant" safe way via the database's advisory locks. Locks are tied to the connection
+	 * holding them, so they are released the moment migrating finishes, or should the server crash or lose connection
+	 * mid-migration. For multi-tenant updates all servers should gracefully wait in line, and are woken up as soon as
+	 * the lock is released.
+	 *
+	 * 1. Checks for the current update level without any lock. If identical to the "highest" registered migration
+	 * level, return "true" straight away. 2. Otherwise, waits for the migration lock for this plugin. If a timeout
+	 * occurs, return "false". 3. Once acquired, check the update level again, as another server may have migrated in
+	 * the mean time. a. If no record exists, start with first migration, and apply in sequence from first to last,
+	 * updating the migration management table along the way b. If a record exists, read which migration was completed
+	 * last i. If identical to "highest" registered migration level, do nothing. ii. If less then "highest" registered
+	 * migration level, get the tailset of migrations "after" the last completed level, and run. 4. If no errors
+	 * occurred, or this migration has errors marked ignored, return true. 5. If errors, return false. 6. In either
+	 * case, release the lock.
 	 *
-	 * 1. Attempts to get a lock for migrations for this plugin. 2. If unsuccessful, periodically check the lock for
-	 * release. a. Once released, restart at 1. b. If Timeout occurs, return "false". 3. If successful, check for
-	 * current update level. a. If no record exists, start with first migration, and apply in sequence from first to
-	 * last, updating the migration management table along the way b. If a record exists, read which migration was
-	 * completed last i. If identical to "highest" registered migration level, do nothing. ii. If less then "highest"
-	 * registered migration level, get the tailset of migrations "after" the last completed level, and run. 4. If no
-	 * errors occurred, or this migration has errors marked ignored, return true. 5. If errors, return false. 6. In
-	 * either case, release the lock.
+	 * How long all this took is logged, to make slow startups easy to attribute.
 	 * 
 	 * @return As described in the algorithm above, returns true if no errors or all ignored; or false if unable to
 	 *         start migration in a timely fashion or errors occurred.
 	 */
 	public boolean updateDatabase() {
-		try {
-			checkWaitLock();
-		}
-		catch (final SQLException exception) {
-			this.logger.log(Level.SEVERE, "An uncorrectable SQL error was encountered!", exception);
-			return false;
-		}
-		catch (final TimeoutException exception) {
-			this.logger.log(Level.SEVERE, "Unable to acquire a lock!", exception);
-			return false;
+		final long startTime = System.currentTimeMillis();
+		final boolean success = applyMigrations();
+		this.logger.info(String.format("%s database %s after %d ms", this.plugin.getName(),
+				success ? "ready" : "failed", System.currentTimeMillis() - startTime));
+		return success;
+	}
+
+	/**
+	 * Does the same as {@link #updateDatabase()}, but on a shared migration thread. This allows plugins to start their
+	 * migrations early, such as in {@link Plugin#onLoad()}, and only wait on the result once they need the database,
+	 * letting the migrations of independent plugins run concurrently.
+	 *
+	 * @return Returns a future completing with the result of {@link #updateDatabase()}.
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> updateDatabaseAsync() {
+		return CompletableFuture.supplyAsync(this::updateDatabase, MIGRATION_EXECUTOR);
+	}
+
+	private boolean applyMigrations() {
+		if (this.migrations.isEmpty()) {
+			this.logger.info(this.plugin.getName() + " has no migrations registered.");
+			return true;
 		}
-		// Now check update level, etc.
-		int currentLevel = this.migrations.firstKey() - 1;
-		try (final Connection connection = getConnection();
-			 final PreparedStatement statement = connection.prepareStatement(CHECK_LAST_MIGRATION)) {
-			statement.setString(1, plugin.getName());
-			try (final ResultSet set = statement.executeQuery()) {
-				if (set.next()) {
-					currentLevel = set.getInt(1);
-				} // else we aren't tracked yet!
+		// Most of the time the database will already be up to date, which doesn't warrant waiting for a lock
+		try (final Connection connection = getConnection()) {
+			if (getPendingMigrations(connection).isEmpty()) {
+				this.logger.info(this.plugin.getName() + " database is up to date.");
+				return true;
 			}
 		}
 		catch (final SQLException exception) {
 			this.logger.log(Level.SEVERE, "Unable to check last migration!", exception);
-			releaseLock();
 			return false;
 		}
-		final NavigableMap<Integer, Migration> newApply = this.migrations.tailMap(currentLevel, false);
-		try {
-			if (newApply.size() > 0) {
+		// Locks are held by connections, so everything from here on must happen on this very connection
+		try (final Connection connection = getConnection()) {
+			final String lockName = getLockName();
+			try {
+				acquireLock(connection, lockName);
+			}
+			catch (final SQLException exception) {
+				this.logger.log(Level.SEVERE, "An uncorrectable SQL error was encountered!", exception);
+				return false;
+			}
+			catch (final TimeoutException exception) {
+				this.logger.log(Level.SEVERE, "Unable to acquire a lock!", exception);
+				return false;
+			}
+			try {
+				final NavigableMap<Integer, Migration> newApply;
+				try {
+					newApply = getPendingMigrations(connection);
+				}
+				catch (final SQLException exception) {
+					this.logger.log(Level.SEVERE, "Unable to check last migration!", exception);
+					return false;
+				}
+				if (newApply.isEmpty()) {
+					// Another server applied them while we were waiting
+					this.logger.info(this.plugin.getName() + " database is up to date.");
+					return true;
+				}
 				this.logger.info(String.format("%s database is behind, %s migrations found",
 						this.plugin.getName(), newApply.size()));
-				if (doMigrations(newApply)) {
+				if (doMigrations(connection, newApply)) {
 					this.logger.info(this.plugin.getName() + " fully migrated.");
+					return true;
 				}
-				else {
-					this.logger.warning(this.plugin.getName() + " failed to apply updates.");
-					return false;
-				}
+				this.logger.warning(this.plugin.getName() + " failed to apply updates.");
+				return false;
 			}
-			else {
-				this.logger.info(this.plugin.getName() + " database is up to date.");
+			catch (final Throwable exception) {
+				this.logger.warning(this.plugin.getName() + " failed to apply updates for some reason...");
+				this.logger.log(Level.WARNING, "Full exception: ", exception);
+				return false;
+			}
+			finally {
+				releaseLock(connection, lockName);
 			}
-			return true;
 		}
-		catch (final Throwable exception) {
-			this.logger.warning(this.plugin.getName() + " failed to apply updates for some reason...");
-			this.logger.log(Level.WARNING, "Full exception: ", exception);
+		catch (final SQLException exception) {
+			this.logger.log(Level.SEVERE, "Unable to get a connection to migrate with!", exception);
 			return false;
 		}
-		finally {
-			releaseLock();
+	}
+
+	private NavigableMap<Integer, Migration> getPendingMigrations(final Connection connection) throws SQLException {
+		int currentLevel = this.migrations.firstKey() - 1;
+		try (final PreparedStatement statement = connection.prepareStatement(CHECK_LAST_MIGRATION)) {
+			statement.setString(1, this.plugin.getName());
+			try (final ResultSet set = statement.executeQuery()) {
+				if (set.next()) {
+					currentLevel = set.getInt(1);
+				} // else we aren't tracked yet!
+			}
 		}
+		return this.migrations.tailMap(currentLevel, false);
 	}
 
-	private boolean doMigrations(final NavigableMap<Integer, Migration> migrations) {
+	private boolean doMigrations(final Connection connection, final NavigableMap<Integer, Migration> migrations) {
 		try {
 			for (final Integer id : migrations.keySet()) {
 				this.logger.info("Migration " +  id + " ] Applying");
@@ -329,10 +420,10 @@ public class ManagedDatasource {
 				if (migration == null) {
 					continue; // huh?
 				}
-				if (doMigration(id, migration.migrations, migration.ignoreErrors, migration.postMigration)) {
+				if (doMigration(connection, id, migration.migrations, migration.ignoreErrors,
+						migration.postMigration)) {
 					this.logger.info("Migration " +  id + " ] Successful");
-					try (final Connection connection = getConnection();
-						 final PreparedStatement statement = connection.prepareStatement(RECORD_MIGRATION)) {
+					try (final PreparedStatement statement = connection.prepareStatement(RECORD_MIGRATION)) {
 						statement.setString(1, this.plugin.getName());
 						statement.setInt(2, id);
 						if (statement.executeUpdate() < 1) {
@@ -358,11 +449,12 @@ public class ManagedDatasource {
 		}
 	}
 
-	private boolean doMigration(final Integer migration,
+	private boolean doMigration(final Connection connection,
+								final Integer migration,
 								final List<String> queries,
 								final boolean ignoreErrors,
 								final Callable<Boolean> post) {
-		try (final Connection connection = getConnection()) {
+		try {
 			for (final String query : queries) {
 				try (final Statement statement = connection.createStatement()) {
 					statement.executeUpdate(query);
@@ -386,14 +478,9 @@ public class ManagedDatasource {
 			}
 		}
 		catch (final SQLException exception) {
-			if (ignoreErrors) {
-				this.logger.warning("Migration " + migration + " ] Ignoring error: " + exception.getMessage());
-			}
-			else {
-				this.logger.warning("Migration " + migration + " ] Failed migration: " + exception.getMessage());
-				this.logger.log(Level.SEVERE, "Full Error: ", exception);
-				return false;
-			}
+			this.logger.warning("Migration " + migration + " ] Failed migration: " + exception.getMessage());
+			this.logger.log(Level.SEVERE, "Full Error: ", exception);
+			return false;
 		}
 		if (post != null) {
 			final Future<Boolean> doing = postExecutor.submit(post);
@@ -445,75 +532,72 @@ public class ManagedDatasource {
 	}
 
 	/**
-	 * This attempts to acquire a lock every WAIT_PERIOD milliseconds, up to MAX_WAIT_FOR_LOCK milliseconds.
+	 * Advisory locks are server-wide rather than per database, hence the database name being part of the lock's name.
+	 * Names longer than the server allows are shortened with a hash, which is still unique enough for this purpose.
+	 */
+	private String getLockName() {
+		final String name = "cmc_migration." + this.connections.getCredentials().database() + "."
+				+ this.plugin.getName();
+		if (name.length() <= MAX_LOCK_NAME_LENGTH) {
+			return name;
+		}
+		final String hash = Integer.toHexString(name.hashCode());
+		return name.substring(0, MAX_LOCK_NAME_LENGTH - hash.length() - 1) + "#" + hash;
+	}
+
+	/**
+	 * This waits for the advisory lock for migrating this plugin, up to MAX_WAIT_FOR_LOCK seconds. The waiting happens
+	 * within the database, which wakes us as soon as the lock is released.
 	 * 
 	 * If max wait is exhausted, throws a TimeoutException.
 	 * 
-	 * If a <i>real</i> error (not failure to insert) is encountered, stops trying and throws that error.
+	 * If a <i>real</i> error is encountered, stops trying and throws that error.
 	 * 
-	 * Otherwise, returns true when lock is acquired.
-	 * 
-	 * @return true when lock is acquired, or exception otherwise
+	 * @param connection The connection to hold the lock with.
+	 * @param lockName The name of the lock to acquire.
 	 * @throws TimeoutException
 	 *             If lock isn't acquired by max wait time.
 	 * @throws SQLException
 	 *             If an exception is encountered
 	 */
-	private boolean checkWaitLock() throws TimeoutException, SQLException {
-		/* First, cleanup old locks if any */
-		try (final Connection connection = getConnection();
-			 final Statement cleanup = connection.createStatement()) {
-			cleanup.executeUpdate(CLEANUP_LOCK_TABLE);
-		}
-		catch (final SQLException exception) {
-			this.logger.severe("Unable to cleanup old locks, error encountered!");
-			throw exception;
-		}
-		/* Now get our own lock */
-		long start = System.currentTimeMillis();
-		while (System.currentTimeMillis() - start < MAX_WAIT_FOR_LOCK) {
-			try (final Connection connection = getConnection();
-				 final PreparedStatement tryAcquire = connection.prepareStatement(ACQUIRE_LOCK)) {
-				tryAcquire.setString(1, this.plugin.getName());
-				int hasLock = tryAcquire.executeUpdate();
-				if (hasLock > 0) {
-					this.logger.info("Lock acquired, proceeding.");
-					return true;
+	private void acquireLock(final Connection connection, final String lockName)
+			throws TimeoutException, SQLException {
+		final long startTime = System.currentTimeMillis();
+		try (final PreparedStatement tryAcquire = connection.prepareStatement(ACQUIRE_LOCK)) {
+			tryAcquire.setString(1, lockName);
+			tryAcquire.setInt(2, MAX_WAIT_FOR_LOCK);
+			try (final ResultSet set = tryAcquire.executeQuery()) {
+				if (set.next() && set.getInt(1) == 1) {
+					this.logger.info(String.format("Lock acquired after %d ms, proceeding.",
+							System.currentTimeMillis() - startTime));
+					return;
 				}
 			}
-			catch (final SQLException failToAcquire) {
-				this.logger.severe("Unable to acquire a lock, error encountered!");
-				// let the exception continue so we return right away; only errors we'd encounter here are terminal.
-				throw failToAcquire;
-			}
-			if (System.currentTimeMillis() - start > MAX_WAIT_FOR_LOCK) {
-				break;
-			}
-			try {
-				Thread.sleep(WAIT_PERIOD);
-			}
-			catch (final InterruptedException ignored) {
-				// Someone wants us to check right away.
-			}
+		}
+		catch (final SQLException failToAcquire) {
+			this.logger.severe("Unable to acquire a lock, error encountered!");
+			// let the exception continue so we return right away; only errors we'd encounter here are terminal.
+			throw failToAcquire;
 		}
 		throw new TimeoutException("We were unable to acquire a lock in the time allowed");
 	}
 
-	private void releaseLock() {
-		try (final Connection connection = getConnection();
-			 final PreparedStatement release = connection.prepareStatement(RELEASE_LOCK)) {
-			release.setString(1, plugin.getName());
-			int releaseLock = release.executeUpdate();
-			if (releaseLock < 1) {
-				this.logger.warning("Attempted to release a lock, already released.");
-			}
-			else {
-				this.logger.info("Lock released.");
+	private void releaseLock(final Connection connection, final String lockName) {
+		try (final PreparedStatement release = connection.prepareStatement(RELEASE_LOCK)) {
+			release.setString(1, lockName);
+			try (final ResultSet set = release.executeQuery()) {
+				if (set.next() && set.getInt(1) == 1) {
+					this.logger.info("Lock released.");
+				}
+				else {
+					this.logger.warning("Attempted to release a lock, already released.");
+				}
 			}
 		}
 		catch (final SQLException exception) {
+			// The lock goes away with the connection regardless, but the connection goes back into the pool
 			this.logger.log(Level.WARNING, "Attempted to release lock; failed. This may interrupt startup for other " +
-							"servers working against this database.", exception);
+							"servers working against this database until the connection is recycled.", exception);
 		}
 	}
 
@@ -530,14 +614,189 @@ public class ManagedDatasource {
 	}
 
 	/**
-	 * Passthrough; closes the underlying pool. Cannot be undone.
+	 * Gets a connection suited for heavy, latency-insensitive reads, such as bulk loading data on startup or loading
+	 * chunk data. If any read replicas are configured and healthy, the connection comes from one of them, otherwise
+	 * this falls back to the primary, exactly like {@link #getConnection()}. Simply close() it when done.
+	 *
+	 * Connections to replicas are read-only, so do not attempt to write through them. Data read from a replica may
+	 * also trail the primary by up to the configured maximum replica lag, so use {@link #getReadConnection(long)} if
+	 * the data you're about to read might have been written just now.
+	 *
+	 * @return Returns a connection to a read replica, or to the primary.
+	 * @throws SQLException If neither a replica nor the primary could provide a connection.
+	 */
+	public Connection getReadConnection() throws SQLException {
+		final int replicaCount = this.readReplicas.size();
+		if (replicaCount > 0) {
+			final int start = Math.floorMod(this.nextReplica.getAndIncrement(), replicaCount);
+			for (int i = 0; i < replicaCount; i++) {
+				final ReadReplica replica = this.readReplicas.get((start + i) % replicaCount);
+				if (!replica.healthy) {
+					continue;
+				}
+				try {
+					return replica.connections.getConnection();
+				}
+				catch (final SQLException exception) {
+					updateReplicaHealth(replica, false, exception.getMessage());
+				}
+			}
+		}
+		return getConnection();
+	}
+
+	/**
+	 * Same as {@link #getReadConnection()}, except that the primary will be used if the data about to be read was
+	 * written so recently that replicas may not have caught up with it yet.
+	 *
+	 * @param lastWritten UNIX timestamp of when the data about to be read was last written, or -1 if unknown.
+	 * @return Returns a connection to a read replica, or to the primary.
+	 * @throws SQLException If neither a replica nor the primary could provide a connection.
+	 */
+	public Connection getReadConnection(final long lastWritten) throws SQLException {
+		if (lastWritten >= 0 && System.currentTimeMillis() - lastWritten <= getReplicaStalenessWindow()) {
+			return getConnection();
+		}
+		return getReadConnection();
+	}
+
+	/**
+	 * Creates a streaming bulk read. Unlike a plain query, the rows are not all buffered in memory before the first is
+	 * handed over, which makes this the way to load entire tables on startup. The query runs on a read connection
+	 * unless told otherwise. See {@link StreamingQuery} for details.
+	 *
+	 * @param <R> The type each row is read into.
+	 * @param query The query to run.
+	 * @param reader Reads each row of the result.
+	 * @return Returns a new streaming query, which still needs to be run.
+	 */
+	@Nonnull
+	public <R> StreamingQuery<R> stream(@Nonnull final String query,
+										@Nonnull final StreamingQuery.RowReader<R> reader) {
+		return new StreamingQuery<>(this, query, reader);
+	}
+
+	/**
+	 * MySQL's driver ignores fetch sizes unless cursor fetching is enabled, and only streams row by row when given
+	 * {@link Integer#MIN_VALUE}. Other drivers honour regular fetch sizes.
+	 */
+	int getStreamingFetchSize() {
+		if ("mysql".equalsIgnoreCase(this.connections.getCredentials().driver())) {
+			return Integer.MIN_VALUE;
+		}
+		return STREAMING_FETCH_SIZE;
+	}
+
+	/**
+	 * Lag is only sampled every few seconds, so a replica may briefly trail by more than the maximum before it gets
+	 * taken out of rotation. Reads of data younger than this window are sent to the primary.
+	 */
+	private long getReplicaStalenessWindow() {
+		return this.maxReplicaLag * 2 + REPLICA_CHECK_INTERVAL;
+	}
+
+	private void checkReadReplicas() {
+		for (final ReadReplica replica : this.readReplicas) {
+			try (final Connection connection = replica.connections.getConnection();
+				 final Statement statement = connection.createStatement();
+				 final ResultSet set = statement.executeQuery(CHECK_REPLICA_STATUS)) {
+				if (!set.next()) {
+					updateReplicaHealth(replica, false, "not replicating from a primary");
+					continue;
+				}
+				final long lag = set.getLong("Seconds_Behind_Master");
+				if (set.wasNull()) {
+					updateReplicaHealth(replica, false, "replication is stopped");
+				}
+				else if (lag * 1000L > this.maxReplicaLag) {
+					updateReplicaHealth(replica, false, "lagging " + lag + " seconds behind");
+				}
+				else {
+					updateReplicaHealth(replica, true, null);
+				}
+			}
+			catch (final SQLException exception) {
+				updateReplicaHealth(replica, false, exception.getMessage());
+			}
+		}
+	}
+
+	private void updateReplicaHealth(final ReadReplica replica, final boolean healthy, final String reason) {
+		if (replica.healthy == healthy) {
+			return;
+		}
+		replica.healthy = healthy;
+		if (healthy) {
+			this.logger.info("Read replica " + replica.name + " is healthy, routing reads to it.");
+		}
+		else {
+			this.logger.warning("Read replica " + replica.name + " is unusable (" + reason + "), routing its "
+					+ "reads to the primary.");
+		}
+	}
+
+	/**
+	 * Gets this datasource's write spool, through which writes that must not be lost during a database outage should
+	 * be made. See {@link WriteSpool} for details. The spool is created on first use, so plugins not using it don't
+	 * run its replayer, unless writes were left spooled from before.
+	 *
+	 * @return Returns the write spool.
+	 */
+	@Nonnull
+	public WriteSpool getWriteSpool() {
+		WriteSpool spool = this.writeSpool;
+		if (spool == null) {
+			synchronized (this) {
+				spool = this.writeSpool;
+				if (spool == null) {
+					spool = new WriteSpool(this, getWriteSpoolFile(), this.logger);
+					this.writeSpool = spool;
+				}
+			}
+		}
+		return spool;
+	}
+
+	private File getWriteSpoolFile() {
+		return new File(this.plugin.getDataFolder(), WRITE_SPOOL_FILE);
+	}
+
+	/**
+	 * Passthrough; closes the underlying pool, and any read replica pools. Cannot be undone. Any writes still spooled
+	 * are kept on disk and replayed on next start.
 	 * 
 	 * @throws SQLException Something went horribly wrong.
 	 */
 	public void close() throws SQLException {
+		if (this.writeSpool != null) {
+			this.writeSpool.close();
+		}
+		if (this.replicaMonitor != null) {
+			this.replicaMonitor.shutdownNow();
+		}
+		for (final ReadReplica replica : this.readReplicas) {
+			try {
+				replica.connections.close();
+			}
+			catch (final SQLException exception) {
+				this.logger.log(Level.WARNING, "Failed to close read replica " + replica.name, exception);
+			}
+		}
 		this.connections.close();
 	}
 
+	private static final class ReadReplica {
+		private final String name;
+		private final ConnectionPool connections;
+		private volatile boolean healthy;
+
+		private ReadReplica(final String name, final ConnectionPool connections) {
+			this.name = name;
+			this.connections = connections;
+			this.healthy = true; // Checked synchronously before any reads are routed
+		}
+	}
+
 	private static record Migration(boolean ignoreErrors, Callable<Boolean> postMigration, List<String> migrations) {
 		public Migration(boolean ignoreErrors, Callable<Boolean> postMigration, String... migrations) {
 			this(ignoreErrors, postMigration, MoreCollectionUtils.collect(ArrayList::new, migrations));
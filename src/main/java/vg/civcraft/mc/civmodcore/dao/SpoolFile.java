@@ -0,0 +1,330 @@
+package vg.civcraft.mc.civmodcore.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+
+/**
+ * An append-only file of queries and their parameters, read back in the order they were appended. Each entry is
+ * written as its length, a checksum, then the entry itself, so an entry torn by a crash mid-append is detected and
+ * discarded when the file is next opened. How far entries have been acknowledged is kept in a small file next to it,
+ * so acknowledged entries are not read again after a restart.
+ *
+ * Not thread-safe, that's left to {@link WriteSpool}.
+ */
+final class SpoolFile implements Closeable {
+
+	private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_INT = 1;
+	private static final byte TYPE_SHORT = 2;
+	private static final byte TYPE_BYTE = 3;
+	private static final byte TYPE_LONG = 4;
+	private static final byte TYPE_DOUBLE = 5;
+	private static final byte TYPE_FLOAT = 6;
+	private static final byte TYPE_BOOLEAN = 7;
+	private static final byte TYPE_STRING = 8;
+	private static final byte TYPE_BYTES = 9;
+
+	private final FileChannel channel;
+	private final FileChannel ackChannel;
+	private long readPosition;
+	private long writePosition;
+	private int size;
+
+	SpoolFile(@Nonnull final File file) throws IOException {
+		final File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Could not create directory " + parent);
+		}
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.ackChannel = FileChannel.open(new File(file.getPath() + ".ack").toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final long acknowledged = readAcknowledged();
+		// Find where the intact entries end, anything after that was torn by a crash
+		long position = 0;
+		boolean foundAcknowledged = acknowledged == 0;
+		while (true) {
+			final Entry entry = readEntry(position);
+			if (entry == null) {
+				break;
+			}
+			position = entry.end();
+			this.size++;
+			if (position == acknowledged) {
+				foundAcknowledged = true;
+				this.readPosition = position;
+				this.size = 0;
+			}
+		}
+		if (position < this.channel.size()) {
+			this.channel.truncate(position);
+		}
+		this.writePosition = position;
+		// An offset not at the end of an entry is left over from before the file was last emptied, so start over
+		if (!foundAcknowledged) {
+			writeAcknowledged(0);
+		}
+	}
+
+	/**
+	 * @return Returns how many entries have not yet been acknowledged.
+	 */
+	int size() {
+		return this.size;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	void append(@Nonnull final String query, @Nonnull final Object[] parameters) throws IOException {
+		final byte[] payload = encode(query, parameters);
+		final var crc = new CRC32();
+		crc.update(payload);
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+		buffer.putInt(payload.length);
+		buffer.putInt((int) crc.getValue());
+		buffer.put(payload);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			this.writePosition += this.channel.write(buffer, this.writePosition);
+		}
+		this.size++;
+	}
+
+	/**
+	 * Reads the oldest unacknowledged entries, without acknowledging them.
+	 *
+	 * @param max The maximum number of entries to read.
+	 * @return Returns the entries read, oldest first.
+	 */
+	@Nonnull
+	List<Entry> peek(final int max) throws IOException {
+		if (this.size == 0) {
+			return Collections.emptyList();
+		}
+		final var entries = new ArrayList<Entry>(Math.min(max, this.size));
+		long position = this.readPosition;
+		while (entries.size() < max) {
+			final Entry entry = readEntry(position);
+			if (entry == null) {
+				break;
+			}
+			entries.add(entry);
+			position = entry.end();
+		}
+		return entries;
+	}
+
+	/**
+	 * Acknowledges every entry up to and including the given one, meaning they'll not be read again, not even after a
+	 * restart. Once every entry has been acknowledged, the file is emptied.
+	 */
+	void acknowledge(@Nonnull final Entry last, final int count) throws IOException {
+		this.readPosition = last.end();
+		this.size -= count;
+		if (this.readPosition >= this.writePosition) {
+			// Reset the offset first, a crash in between then replays acknowledged entries rather than skipping new ones
+			writeAcknowledged(0);
+			this.channel.truncate(0);
+			this.readPosition = 0;
+			this.writePosition = 0;
+			this.size = 0;
+		}
+		else {
+			writeAcknowledged(this.readPosition);
+		}
+	}
+
+	/**
+	 * Forces appended entries onto the disk.
+	 */
+	void force() throws IOException {
+		this.channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.channel.close();
+		}
+		finally {
+			this.ackChannel.close();
+		}
+	}
+
+	private long readAcknowledged() throws IOException {
+		if (this.ackChannel.size() < Long.BYTES) {
+			return 0;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		while (buffer.hasRemaining()) {
+			if (this.ackChannel.read(buffer, buffer.position()) < 0) {
+				return 0;
+			}
+		}
+		buffer.flip();
+		return buffer.getLong();
+	}
+
+	private void writeAcknowledged(final long position) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		buffer.putLong(position);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			this.ackChannel.write(buffer, buffer.position());
+		}
+		this.ackChannel.force(false);
+	}
+
+	private Entry readEntry(final long position) throws IOException {
+		final long fileSize = this.channel.size();
+		if (position + HEADER_SIZE > fileSize) {
+			return null;
+		}
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(header, position);
+		header.flip();
+		final int length = header.getInt();
+		final int checksum = header.getInt();
+		if (length < 0 || position + HEADER_SIZE + length > fileSize) {
+			return null;
+		}
+		final ByteBuffer payload = ByteBuffer.allocate(length);
+		readFully(payload, position + HEADER_SIZE);
+		final var crc = new CRC32();
+		crc.update(payload.array());
+		if ((int) crc.getValue() != checksum) {
+			return null;
+		}
+		return decode(payload.array(), position + HEADER_SIZE + length);
+	}
+
+	private void readFully(final ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = this.channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of spool");
+			}
+			position += read;
+		}
+	}
+
+	private static byte[] encode(final String query, final Object[] parameters) throws IOException {
+		final var bytes = new ByteArrayOutputStream(query.length() + parameters.length * 16);
+		final var output = new DataOutputStream(bytes);
+		writeString(output, query);
+		output.writeInt(parameters.length);
+		for (final Object parameter : parameters) {
+			if (parameter == null) {
+				output.writeByte(TYPE_NULL);
+			}
+			else if (parameter instanceof Integer value) {
+				output.writeByte(TYPE_INT);
+				output.writeInt(value);
+			}
+			else if (parameter instanceof Short value) {
+				output.writeByte(TYPE_SHORT);
+				output.writeShort(value);
+			}
+			else if (parameter instanceof Byte value) {
+				output.writeByte(TYPE_BYTE);
+				output.writeByte(value);
+			}
+			else if (parameter instanceof Long value) {
+				output.writeByte(TYPE_LONG);
+				output.writeLong(value);
+			}
+			else if (parameter instanceof Double value) {
+				output.writeByte(TYPE_DOUBLE);
+				output.writeDouble(value);
+			}
+			else if (parameter instanceof Float value) {
+				output.writeByte(TYPE_FLOAT);
+				output.writeFloat(value);
+			}
+			else if (parameter instanceof Boolean value) {
+				output.writeByte(TYPE_BOOLEAN);
+				output.writeBoolean(value);
+			}
+			else if (parameter instanceof String value) {
+				output.writeByte(TYPE_STRING);
+				writeString(output, value);
+			}
+			else if (parameter instanceof byte[] value) {
+				output.writeByte(TYPE_BYTES);
+				output.writeInt(value.length);
+				output.write(value);
+			}
+			else {
+				throw new IllegalArgumentException("Cannot spool parameter of type " + parameter.getClass().getName());
+			}
+		}
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private static Entry decode(final byte[] payload, final long end) throws IOException {
+		final var input = new DataInputStream(new ByteArrayInputStream(payload));
+		final String query = readString(input);
+		final var parameters = new Object[input.readInt()];
+		for (int i = 0; i < parameters.length; i++) {
+			final byte type = input.readByte();
+			parameters[i] = switch (type) {
+				case TYPE_NULL -> null;
+				case TYPE_INT -> input.readInt();
+				case TYPE_SHORT -> input.readShort();
+				case TYPE_BYTE -> input.readByte();
+				case TYPE_LONG -> input.readLong();
+				case TYPE_DOUBLE -> input.readDouble();
+				case TYPE_FLOAT -> input.readFloat();
+				case TYPE_BOOLEAN -> input.readBoolean();
+				case TYPE_STRING -> readString(input);
+				case TYPE_BYTES -> {
+					final var value = new byte[input.readInt()];
+					input.readFully(value);
+					yield value;
+				}
+				default -> throw new IOException("Unknown spooled parameter type " + type);
+			};
+		}
+		return new Entry(query, parameters, end);
+	}
+
+	private static void writeString(final DataOutputStream output, final String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(final DataInputStream input) throws IOException {
+		final var bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	record Entry(String query, Object[] parameters, long end) {
+		@Override
+		public String toString() {
+			return this.query + " " + Arrays.deepToString(this.parameters);
+		}
+	}
+
+}
@@ -0,0 +1,361 @@
+package vg.civcraft.mc.civmodcore.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A bulk read that streams its rows rather than letting the driver buffer the entire result in memory before the
+ * first row is handed over. Get one via {@link ManagedDatasource#stream(String, RowReader)}, configure it, then run it
+ * with {@link #forEach(Consumer)} or {@link #forEach(Function, int, Consumer)}.
+ *
+ * By default the query is run once, on a read connection, with a forward-only, read-only cursor that fetches rows in
+ * small chunks. This keeps the memory use flat regardless of how many rows there are, but does tie up a connection
+ * and the server's snapshot of the table until the last row has been read. For very large tables, consider
+ * {@link #keyset(int, Object, RowReader, KeyBinder)} instead, which reads the table in bounded pages.
+ *
+ * <pre><code>
+ *   database.stream("SELECT id, data FROM my_table WHERE world_id = ?;",
+ *           (set) -&gt; new RawRow(set.getLong(1), set.getString(2)))
+ *       .bind((statement) -&gt; statement.setShort(1, worldID))
+ *       .forEach(RawRow::decode, 4, loaded::add);
+ * </code></pre>
+ *
+ * @param <R> The type each row is read into.
+ */
+public final class StreamingQuery<R> {
+
+	/**
+	 * How many rows are decoded together when decoding in parallel.
+	 */
+	private static final int DECODE_BATCH_SIZE = 1024;
+
+	private final ManagedDatasource database;
+	private final String query;
+	private final RowReader<R> reader;
+	private StatementBinder binder;
+	private Keyset<?> keyset;
+	private boolean usePrimary;
+
+	StreamingQuery(@Nonnull final ManagedDatasource database,
+				   @Nonnull final String query,
+				   @Nonnull final RowReader<R> reader) {
+		this.database = Objects.requireNonNull(database);
+		this.query = Objects.requireNonNull(query);
+		this.reader = Objects.requireNonNull(reader);
+	}
+
+	/**
+	 * Sets the query's parameters. When using keyset pagination, these are bound before the key.
+	 *
+	 * @param binder Binds the query's parameters, can be null to not bind any.
+	 * @return Returns this query.
+	 */
+	@Nonnull
+	public StreamingQuery<R> bind(@Nullable final StatementBinder binder) {
+		this.binder = binder;
+		return this;
+	}
+
+	/**
+	 * Reads the rows from the primary rather than a read replica. Use this when reading data that may have only just
+	 * been written.
+	 *
+	 * @return Returns this query.
+	 */
+	@Nonnull
+	public StreamingQuery<R> onPrimary() {
+		this.usePrimary = true;
+		return this;
+	}
+
+	/**
+	 * Reads the rows in pages rather than in one pass, each page continuing after the key of the last row of the
+	 * previous page. This means the database never has to hold a snapshot, nor skip over rows already read, as is the
+	 * case with OFFSET pagination. For this to work, the query must:
+	 *
+	 * <ol><li>Only select rows whose key is greater than the bound key.</li>
+	 * <li>Be ordered by that key, which should be indexed.</li>
+	 * <li>End with a "LIMIT ?", which is set to the page size.</li></ol>
+	 *
+	 * <pre><code>
+	 *   SELECT chunk_x, chunk_z, world_id FROM cmc_chunk_data
+	 *   WHERE (world_id, chunk_x, chunk_z) &gt; (?, ?, ?)
+	 *   ORDER BY world_id, chunk_x, chunk_z LIMIT ?;
+	 * </code></pre>
+	 *
+	 * @param <K> The type of the key.
+	 * @param pageSize The maximum number of rows per page.
+	 * @param startKey The key to start after, usually the smallest possible key.
+	 * @param keyReader Reads the key from a row.
+	 * @param keyBinder Binds a key to the query.
+	 * @return Returns this query.
+	 */
+	@Nonnull
+	public <K> StreamingQuery<R> keyset(final int pageSize,
+										@Nonnull final K startKey,
+										@Nonnull final RowReader<K> keyReader,
+										@Nonnull final KeyBinder<K> keyBinder) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive.");
+		}
+		this.keyset = new Keyset<>(pageSize,
+				Objects.requireNonNull(startKey),
+				Objects.requireNonNull(keyReader),
+				Objects.requireNonNull(keyBinder));
+		return this;
+	}
+
+	/**
+	 * Runs the query, passing each row to the given consumer as it is read.
+	 *
+	 * @param consumer The consumer to pass each row to.
+	 * @return Returns the number of rows read.
+	 * @throws SQLException If the query failed at any point.
+	 */
+	public long forEach(@Nonnull final Consumer<? super R> consumer) throws SQLException {
+		Objects.requireNonNull(consumer);
+		return run(consumer::accept);
+	}
+
+	/**
+	 * Runs the query, decoding each row before passing it to the given consumer. Reading rows is inherently
+	 * sequential, but decoding them need not be, so expensive decoding (like parsing json) can be spread over several
+	 * threads. Decoded rows are still passed to the consumer in order and on the calling thread, so the consumer need
+	 * not be thread-safe. Rows decoded into null are skipped.
+	 *
+	 * @param <T> The type each row is decoded into.
+	 * @param decoder The decoder to decode each row with. Must be thread-safe if the parallelism is above 1.
+	 * @param parallelism How many threads to decode with, 1 or less decodes on the calling thread.
+	 * @param consumer The consumer to pass each decoded row to.
+	 * @return Returns the number of rows read.
+	 * @throws SQLException If the query failed at any point.
+	 */
+	public <T> long forEach(@Nonnull final Function<? super R, ? extends T> decoder,
+							final int parallelism,
+							@Nonnull final Consumer<? super T> consumer) throws SQLException {
+		Objects.requireNonNull(decoder);
+		Objects.requireNonNull(consumer);
+		if (parallelism <= 1) {
+			return run((row) -> {
+				final T decoded = decoder.apply(row);
+				if (decoded != null) {
+					consumer.accept(decoded);
+				}
+			});
+		}
+		final var stage = new ParallelDecoder<R, T>(decoder, parallelism, consumer);
+		try {
+			final long count = run(stage::add);
+			stage.finish();
+			return count;
+		}
+		finally {
+			stage.close();
+		}
+	}
+
+	private long run(final RowSink<R> sink) throws SQLException {
+		try (final Connection connection = this.usePrimary ?
+				this.database.getConnection() : this.database.getReadConnection()) {
+			if (this.keyset == null) {
+				return runOnce(connection, sink);
+			}
+			return this.keyset.run(connection, sink);
+		}
+	}
+
+	private long runOnce(final Connection connection, final RowSink<R> sink) throws SQLException {
+		try (final PreparedStatement statement = connection.prepareStatement(this.query,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(this.database.getStreamingFetchSize());
+			if (this.binder != null) {
+				this.binder.bind(statement);
+			}
+			long count = 0;
+			try (final ResultSet set = statement.executeQuery()) {
+				while (set.next()) {
+					sink.accept(this.reader.read(set));
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	@FunctionalInterface
+	public interface RowReader<R> {
+		/**
+		 * Reads the result set's current row. Do not move the cursor.
+		 */
+		R read(ResultSet set) throws SQLException;
+	}
+
+	@FunctionalInterface
+	public interface StatementBinder {
+		void bind(PreparedStatement statement) throws SQLException;
+	}
+
+	@FunctionalInterface
+	public interface KeyBinder<K> {
+		/**
+		 * Binds the key to the statement, using the parameter indexes following any bound by the
+		 * {@link StatementBinder}.
+		 */
+		void bind(PreparedStatement statement, K key) throws SQLException;
+	}
+
+	@FunctionalInterface
+	private interface RowSink<R> {
+		void accept(R row) throws SQLException;
+	}
+
+	private final class Keyset<K> {
+		private final int pageSize;
+		private final K startKey;
+		private final RowReader<K> keyReader;
+		private final KeyBinder<K> keyBinder;
+
+		private Keyset(final int pageSize,
+					   final K startKey,
+					   final RowReader<K> keyReader,
+					   final KeyBinder<K> keyBinder) {
+			this.pageSize = pageSize;
+			this.startKey = startKey;
+			this.keyReader = keyReader;
+			this.keyBinder = keyBinder;
+		}
+
+		private long run(final Connection connection, final RowSink<R> sink) throws SQLException {
+			try (final PreparedStatement statement = connection.prepareStatement(query,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+				// The page size is always the last parameter
+				final int limitIndex = statement.getParameterMetaData().getParameterCount();
+				long count = 0;
+				K key = this.startKey;
+				while (true) {
+					statement.clearParameters();
+					if (binder != null) {
+						binder.bind(statement);
+					}
+					this.keyBinder.bind(statement, key);
+					statement.setInt(limitIndex, this.pageSize);
+					int pageCount = 0;
+					try (final ResultSet set = statement.executeQuery()) {
+						while (set.next()) {
+							key = this.keyReader.read(set);
+							sink.accept(reader.read(set));
+							pageCount++;
+						}
+					}
+					count += pageCount;
+					if (pageCount < this.pageSize) {
+						return count;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes rows in batches on a pool of threads, while handing the decoded rows over in their original order. Only
+	 * a few batches are decoded ahead of the consumer, so memory use stays bounded however fast rows are read.
+	 */
+	private static final class ParallelDecoder<R, T> {
+		private static final AtomicInteger COUNTER = new AtomicInteger();
+
+		private final Function<? super R, ? extends T> decoder;
+		private final Consumer<? super T> consumer;
+		private final ExecutorService executor;
+		private final int maxInFlight;
+		private final ArrayDeque<Future<List<T>>> inFlight;
+		private List<R> batch;
+
+		private ParallelDecoder(final Function<? super R, ? extends T> decoder,
+								final int parallelism,
+								final Consumer<? super T> consumer) {
+			this.decoder = decoder;
+			this.consumer = consumer;
+			final int id = COUNTER.incrementAndGet();
+			this.executor = Executors.newFixedThreadPool(parallelism, (runnable) -> {
+				final Thread thread = new Thread(runnable, "CivModCore Streaming Decoder " + id);
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.maxInFlight = parallelism * 2;
+			this.inFlight = new ArrayDeque<>(this.maxInFlight);
+			this.batch = new ArrayList<>(DECODE_BATCH_SIZE);
+		}
+
+		private void add(final R row) {
+			this.batch.add(row);
+			if (this.batch.size() >= DECODE_BATCH_SIZE) {
+				submitBatch();
+			}
+		}
+
+		private void submitBatch() {
+			if (this.inFlight.size() >= this.maxInFlight) {
+				deliver(this.inFlight.poll());
+			}
+			final List<R> rows = this.batch;
+			this.batch = new ArrayList<>(DECODE_BATCH_SIZE);
+			this.inFlight.add(this.executor.submit(() -> {
+				final var decoded = new ArrayList<T>(rows.size());
+				for (final R row : rows) {
+					final T value = this.decoder.apply(row);
+					if (value != null) {
+						decoded.add(value);
+					}
+				}
+				return decoded;
+			}));
+		}
+
+		private void deliver(final Future<List<T>> future) {
+			final List<T> decoded;
+			try {
+				decoded = future.get();
+			}
+			catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while decoding rows", exception);
+			}
+			catch (final ExecutionException exception) {
+				if (exception.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw new IllegalStateException("Failed to decode rows", exception.getCause());
+			}
+			decoded.forEach(this.consumer);
+		}
+
+		private void finish() {
+			if (!this.batch.isEmpty()) {
+				submitBatch();
+			}
+			while (!this.inFlight.isEmpty()) {
+				deliver(this.inFlight.poll());
+			}
+		}
+
+		private void close() {
+			this.executor.shutdownNow();
+		}
+	}
+
+}
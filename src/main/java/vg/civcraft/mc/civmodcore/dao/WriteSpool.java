@@ -0,0 +1,323 @@
+package vg.civcraft.mc.civmodcore.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+
+/**
+ * Keeps writes from being lost while the database is unreachable. Writes made through
+ * {@link #execute(String, Object...)} go to the database as normal, but should that fail because the database cannot
+ * be reached, the write is appended to a local spool file instead and the circuit is opened: every following write is
+ * spooled straight away rather than waiting on yet another connection timeout. A background replayer periodically
+ * probes the database, backing off while it stays down, and once it's back replays the spool in order before the
+ * circuit closes again.
+ *
+ * Writes that fail for any other reason, such as a constraint violation, are not spooled, as retrying them will not
+ * help. These are thrown to the caller as usual, or logged and skipped if encountered during replay.
+ *
+ * Should the server stop before the spool is drained, the rest is replayed on the next start. Entries are
+ * acknowledged in batches and the acknowledged offset is kept on disk, so a crash mid-replay only replays the batch
+ * in flight again; keep spooled writes idempotent (upserts, updates and deletes by key) and this is harmless.
+ *
+ * Talking to the database during replay never happens while holding the lock writes are spooled under, so spooling
+ * does not stall on connection timeouts while the database is down.
+ */
+public final class WriteSpool {
+
+	private static final long REPLAY_INTERVAL = 1000L;
+	private static final long MAX_RETRY_DELAY = 60_000L;
+	private static final int REPLAY_BATCH_SIZE = 500;
+
+	private final ManagedDatasource database;
+	private final File file;
+	private final Logger logger;
+	private final ScheduledExecutorService replayer;
+	private final Object lock = new Object();
+	private final Object replayLock = new Object();
+	private SpoolFile spool;
+	private volatile boolean pending;
+	private volatile long retryAt;
+	private long retryDelay;
+
+	WriteSpool(@Nonnull final ManagedDatasource database, @Nonnull final File file, @Nonnull final Logger logger) {
+		this.database = database;
+		this.file = file;
+		this.logger = logger;
+		this.retryDelay = REPLAY_INTERVAL;
+		if (file.length() > 0) {
+			synchronized (this.lock) {
+				try {
+					this.spool = new SpoolFile(file);
+					this.pending = !this.spool.isEmpty();
+					if (this.pending) {
+						this.logger.warning("Found " + this.spool.size() + " writes spooled during a previous "
+								+ "database outage, they will be replayed shortly.");
+					}
+				}
+				catch (final IOException exception) {
+					this.logger.log(Level.SEVERE, "Failed to open write spool " + file, exception);
+				}
+			}
+		}
+		this.replayer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			final Thread thread = new Thread(runnable, "CivModCore Write Spool Replayer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.replayer.scheduleWithFixedDelay(this::tick, REPLAY_INTERVAL, REPLAY_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return Returns whether there are spooled writes that have yet to reach the database. Reading data from the
+	 *         database while this is true may yield outdated results.
+	 */
+	public boolean isPending() {
+		return this.pending;
+	}
+
+	/**
+	 * Executes a write, spooling it to disk if the database is unreachable. Parameters are bound in order and may
+	 * only be null, numbers, booleans, strings or byte arrays.
+	 *
+	 * @param query The write query to execute.
+	 * @param parameters The parameters of the query.
+	 * @throws SQLException Thrown if the write failed for any reason other than the database being unreachable.
+	 */
+	public void execute(@Nonnull final String query, final Object... parameters) throws SQLException {
+		if (!this.pending) {
+			try {
+				executeDirectly(query, parameters);
+				return;
+			}
+			catch (final SQLException exception) {
+				if (!isOutage(exception)) {
+					throw exception;
+				}
+				openCircuit(exception);
+			}
+		}
+		spool(query, parameters);
+	}
+
+	/**
+	 * Spools a write without attempting it against the database first. Use this when there's no time to wait on the
+	 * database, such as when the server is out of time to shut down. The write is replayed as normal, at the latest on
+	 * next start.
+	 *
+	 * @param query The write query to spool.
+	 * @param parameters The parameters of the query.
+	 * @throws SQLException Thrown if the write could not be spooled.
+	 */
+	public void defer(@Nonnull final String query, final Object... parameters) throws SQLException {
+		spool(query, parameters);
+	}
+
+	/**
+	 * Attempts to replay the spool right away rather than waiting on the replayer. Use this before reading data that
+	 * may have been spooled, as the read would otherwise see outdated data. This is free while nothing is spooled, and
+	 * does not wait on the database while the circuit is open and the replayer is backing off.
+	 *
+	 * @return Returns true if the spool is now empty, false if writes are still spooled.
+	 */
+	public boolean flush() {
+		if (!this.pending) {
+			return true;
+		}
+		if (System.currentTimeMillis() < this.retryAt) {
+			return false;
+		}
+		return replay();
+	}
+
+	private void executeDirectly(final String query, final Object[] parameters) throws SQLException {
+		try (final Connection connection = this.database.getConnection();
+			 final PreparedStatement statement = connection.prepareStatement(query)) {
+			bind(statement, parameters);
+			statement.executeUpdate();
+		}
+	}
+
+	private void spool(final String query, final Object[] parameters) throws SQLException {
+		synchronized (this.lock) {
+			try {
+				if (this.spool == null) {
+					this.spool = new SpoolFile(this.file);
+				}
+				this.spool.append(query, parameters);
+				this.pending = true;
+			}
+			catch (final IOException exception) {
+				throw new SQLException("Database is unreachable and the write could not be spooled", exception);
+			}
+		}
+	}
+
+	private void openCircuit(final SQLException cause) {
+		synchronized (this.lock) {
+			if (!this.pending) {
+				this.logger.warning("Database is unreachable (" + cause.getMessage() + "), spooling writes to "
+						+ this.file + " until it's back.");
+			}
+			this.retryAt = System.currentTimeMillis() + this.retryDelay;
+		}
+	}
+
+	private void tick() {
+		if (!this.pending) {
+			return;
+		}
+		synchronized (this.lock) {
+			try {
+				this.spool.force();
+			}
+			catch (final IOException exception) {
+				this.logger.log(Level.WARNING, "Failed to force write spool to disk", exception);
+			}
+		}
+		if (System.currentTimeMillis() >= this.retryAt) {
+			replay();
+		}
+	}
+
+	/**
+	 * Replays the spool, one replay at a time. The database is only talked to outside the lock, which is held just to
+	 * peek at and acknowledge batches.
+	 */
+	private boolean replay() {
+		synchronized (this.replayLock) {
+			if (!this.pending) {
+				return true;
+			}
+			int replayed = 0;
+			try (final Connection connection = this.database.getConnection()) {
+				while (true) {
+					final List<SpoolFile.Entry> batch;
+					synchronized (this.lock) {
+						batch = this.spool.peek(REPLAY_BATCH_SIZE);
+						if (batch.isEmpty()) {
+							// Closes the circuit, nothing can be spooled in between as that needs the lock
+							this.retryDelay = REPLAY_INTERVAL;
+							this.retryAt = 0;
+							this.pending = false;
+							break;
+						}
+					}
+					int done = 0;
+					try {
+						for (final SpoolFile.Entry entry : batch) {
+							try (final PreparedStatement statement = connection.prepareStatement(entry.query())) {
+								bind(statement, entry.parameters());
+								statement.executeUpdate();
+							}
+							catch (final SQLException exception) {
+								if (isOutage(exception)) {
+									throw exception;
+								}
+								this.logger.log(Level.SEVERE, "Dropping spooled write that failed: " + entry,
+										exception);
+							}
+							done++;
+						}
+					}
+					finally {
+						if (done > 0) {
+							synchronized (this.lock) {
+								this.spool.acknowledge(batch.get(done - 1), done);
+							}
+							replayed += done;
+						}
+					}
+				}
+			}
+			catch (final SQLException exception) {
+				if (!isOutage(exception)) {
+					this.logger.log(Level.SEVERE, "Unexpected failure replaying write spool", exception);
+				}
+				synchronized (this.lock) {
+					this.retryDelay = Math.min(this.retryDelay * 2, MAX_RETRY_DELAY);
+					this.retryAt = System.currentTimeMillis() + this.retryDelay;
+				}
+				if (replayed > 0) {
+					this.logger.info("Replayed " + replayed + " spooled writes before the database went away again.");
+				}
+				return false;
+			}
+			catch (final IOException exception) {
+				this.logger.log(Level.SEVERE, "Failed to read write spool " + this.file, exception);
+				this.retryAt = System.currentTimeMillis() + MAX_RETRY_DELAY;
+				return false;
+			}
+			this.logger.info("Database is reachable, replayed " + replayed + " spooled writes.");
+			return true;
+		}
+	}
+
+	/**
+	 * Stops the replayer and syncs the spool to disk. Nothing is replayed here, as the database being unreachable
+	 * would hold up shutdown, and writes spooled while out of time to shut down are not meant to be waited on either.
+	 * Whatever remains is replayed on next start.
+	 */
+	void close() {
+		this.replayer.shutdownNow();
+		synchronized (this.lock) {
+			if (this.spool == null) {
+				return;
+			}
+			try {
+				if (this.pending) {
+					this.logger.warning(this.spool.size() + " spooled writes have yet to reach the database, they "
+							+ "will be replayed on next start.");
+					this.spool.force();
+				}
+				this.spool.close();
+			}
+			catch (final IOException exception) {
+				this.logger.log(Level.SEVERE, "Failed to close write spool " + this.file, exception);
+			}
+		}
+	}
+
+	private static void bind(final PreparedStatement statement, final Object[] parameters) throws SQLException {
+		for (int i = 0; i < parameters.length; i++) {
+			statement.setObject(i + 1, parameters[i]);
+		}
+	}
+
+	/**
+	 * Distinguishes the database being unreachable from the write itself being at fault.
+	 */
+	static boolean isOutage(final SQLException exception) {
+		Throwable current = exception;
+		while (current != null) {
+			if (current instanceof SQLTransientConnectionException
+					|| current instanceof SQLNonTransientConnectionException
+					|| current instanceof SQLRecoverableException
+					|| current instanceof SQLTimeoutException) {
+				return true;
+			}
+			if (current instanceof SQLException sqlException) {
+				final String state = sqlException.getSQLState();
+				// Class 08 is "connection exception"
+				if (state != null && state.startsWith("08")) {
+					return true;
+				}
+			}
+			current = current.getCause();
+		}
+		return false;
+	}
+
+}
@@ -1,33 +1,240 @@
 package vg.civcraft.mc.civmodcore.events;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
-import vg.civcraft.mc.civmodcore.world.WorldUtils;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import vg.civcraft.mc.civmodcore.world.model.AreaIndex;
+import vg.civcraft.mc.civmodcore.world.model.IArea;
 
 public class CustomEventMapper implements Listener {
 
+	private static final List<AreaIndex<?>> WATCHED_AREAS = new CopyOnWriteArrayList<>();
+
+	// Player -> the block they were last seen in
+	private final Map<UUID, PlayerPosition> positions = new HashMap<>();
+
 	/**
-	 * Glue map for {@link PlayerMoveBlockEvent}.
+	 * Starts calling {@link PlayerEnterAreaEvent} and {@link PlayerLeaveAreaEvent} for the areas in the given index.
+	 * Transitions are determined whenever a player moves into a different block, so areas whose bounds aren't block
+	 * aligned are entered and left at block granularity. Rebuilding the index with new area instances causes players
+	 * to leave the old and enter the new ones on their next move. All leave events of a move are called before its
+	 * enter events. Should one of them be cancelled, the move is cancelled and the remaining ones are not called, but
+	 * those already called are not undone either, so they're called again when the player retries the move.
+	 *
+	 * @param index The index of areas to watch.
+	 */
+	public static void watchAreas(AreaIndex<?> index) {
+		if (index == null) {
+			throw new IllegalArgumentException("Index cannot be null!");
+		}
+		if (!WATCHED_AREAS.contains(index)) {
+			WATCHED_AREAS.add(index);
+		}
+	}
+
+	/**
+	 * Stops calling enter and leave events for the areas in the given index.
+	 *
+	 * @param index The index of areas to no longer watch.
+	 */
+	public static void unwatchAreas(AreaIndex<?> index) {
+		WATCHED_AREAS.remove(index);
+	}
+
+	/**
+	 * Glue map for {@link PlayerMoveBlockEvent}, {@link PlayerChangeChunkEvent} and area transitions. Compares against
+	 * the block each player was last seen in, so moves within the same block return right away. The player is only
+	 * seen in the new block once the move went through, see {@link #commitPlayerMoveBlock(PlayerMoveEvent)}.
+	 *
 	 * @param event The event to map from.
 	 */
 	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
 	public void detectPlayerMoveBlock(PlayerMoveEvent event) {
 		Location formerLocation = event.getFrom();
 		Location latterLocation = event.getTo();
+		PlayerPosition position = positions.computeIfAbsent(event.getPlayer().getUniqueId(),
+				uuid -> new PlayerPosition(formerLocation));
+		position.movePending = false;
+		World world = latterLocation.getWorld();
+		long blockKey = toBlockKey(latterLocation);
 		// If no block movement has occurred, exit out
-		if (!WorldUtils.doLocationsHaveSameWorld(formerLocation, latterLocation)
-				|| formerLocation.getBlockX() != latterLocation.getBlockX()
-				|| formerLocation.getBlockY() != latterLocation.getBlockY()
-				|| formerLocation.getBlockZ() != latterLocation.getBlockZ()) {
+		if (position.world == world && position.blockKey == blockKey) {
 			return;
 		}
 		PlayerMoveBlockEvent better = new PlayerMoveBlockEvent(event.getPlayer(), formerLocation, latterLocation);
+		if (!callCancellable(event, better)) {
+			return;
+		}
+		if (position.world != world
+				|| Block.getBlockKeyX(position.blockKey) >> 4 != latterLocation.getBlockX() >> 4
+				|| Block.getBlockKeyZ(position.blockKey) >> 4 != latterLocation.getBlockZ() >> 4) {
+			PlayerChangeChunkEvent chunkEvent = new PlayerChangeChunkEvent(event.getPlayer(), formerLocation,
+					latterLocation);
+			if (!callCancellable(event, chunkEvent)) {
+				return;
+			}
+		}
+		Map<AreaIndex<?>, List<? extends IArea>> areas = position.areas;
+		if (!WATCHED_AREAS.isEmpty()) {
+			areas = detectAreaTransitions(event, position);
+			if (areas == null) {
+				return;
+			}
+		}
+		position.pendingWorld = world;
+		position.pendingBlockKey = blockKey;
+		position.pendingAreas = areas;
+		position.movePending = true;
+	}
+
+	/**
+	 * Commits the block and areas determined by {@link #detectPlayerMoveBlock(PlayerMoveEvent)} once no listener
+	 * cancelled the move. Should a listener have moved the player elsewhere instead, the move is not committed and the
+	 * next one is compared against the block the player was in before.
+	 *
+	 * @param event The event that went through.
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void commitPlayerMoveBlock(PlayerMoveEvent event) {
+		PlayerPosition position = positions.get(event.getPlayer().getUniqueId());
+		if (position == null || !position.movePending) {
+			return;
+		}
+		position.movePending = false;
+		Location location = event.getTo();
+		if (position.pendingWorld == location.getWorld() && position.pendingBlockKey == toBlockKey(location)) {
+			position.world = position.pendingWorld;
+			position.blockKey = position.pendingBlockKey;
+			position.areas = position.pendingAreas;
+		}
+		position.pendingAreas = null;
+	}
+
+	/**
+	 * Determines all area transitions of the move first, then calls the leave events followed by the enter events,
+	 * stopping at the first one cancelled. Events called before that are not undone, so they're called again on the
+	 * player's next attempt at the same move.
+	 *
+	 * @return The areas the player is in after the move, null if it was cancelled
+	 */
+	private Map<AreaIndex<?>, List<? extends IArea>> detectAreaTransitions(PlayerMoveEvent event,
+			PlayerPosition position) {
+		Map<AreaIndex<?>, List<? extends IArea>> updated = new IdentityHashMap<>();
+		List<PlayerMoveBlockEvent> leaves = new ArrayList<>();
+		List<PlayerMoveBlockEvent> enters = new ArrayList<>();
+		for (AreaIndex<?> index : WATCHED_AREAS) {
+			List<? extends IArea> previous = position.areas.get(index);
+			List<? extends IArea> current = index.getAreas(event.getTo());
+			if (previous == null) {
+				// index was not watched yet when the player was last seen, so there's nothing to compare against
+				previous = index.getAreas(event.getFrom());
+			}
+			for (IArea area : previous) {
+				if (!containsReference(current, area)) {
+					leaves.add(new PlayerLeaveAreaEvent(event.getPlayer(), event.getFrom(), event.getTo(), index,
+							area));
+				}
+			}
+			for (IArea area : current) {
+				if (!containsReference(previous, area)) {
+					enters.add(new PlayerEnterAreaEvent(event.getPlayer(), event.getFrom(), event.getTo(), index,
+							area));
+				}
+			}
+			updated.put(index, current.isEmpty() ? Collections.emptyList() : current);
+		}
+		for (PlayerMoveBlockEvent leave : leaves) {
+			if (!callCancellable(event, leave)) {
+				return null;
+			}
+		}
+		for (PlayerMoveBlockEvent enter : enters) {
+			if (!callCancellable(event, enter)) {
+				return null;
+			}
+		}
+		return updated;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void updateOnTeleport(PlayerTeleportEvent event) {
+		PlayerPosition position = positions.get(event.getPlayer().getUniqueId());
+		if (position != null) {
+			// area transitions are picked up on the next move
+			position.world = event.getTo().getWorld();
+			position.blockKey = toBlockKey(event.getTo());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void trackOnJoin(PlayerJoinEvent event) {
+		PlayerPosition position = new PlayerPosition(event.getPlayer().getLocation());
+		for (AreaIndex<?> index : WATCHED_AREAS) {
+			position.areas.put(index, index.getAreas(event.getPlayer().getLocation()));
+		}
+		positions.put(event.getPlayer().getUniqueId(), position);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void untrackOnQuit(PlayerQuitEvent event) {
+		positions.remove(event.getPlayer().getUniqueId());
+	}
+
+	private static boolean callCancellable(PlayerMoveEvent event, PlayerMoveBlockEvent better) {
 		Bukkit.getPluginManager().callEvent(better);
-		event.setCancelled(better.isCancelled());
+		if (better.isCancelled()) {
+			event.setCancelled(true);
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean containsReference(List<? extends IArea> areas, IArea area) {
+		for (IArea other : areas) {
+			if (other == area) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long toBlockKey(Location location) {
+		return Block.getBlockKey(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+	}
+
+	private static final class PlayerPosition {
+
+		private World world;
+		private long blockKey;
+		private Map<AreaIndex<?>, List<? extends IArea>> areas;
+		// determined at the start of a move, only taken over once it went through
+		private boolean movePending;
+		private World pendingWorld;
+		private long pendingBlockKey;
+		private Map<AreaIndex<?>, List<? extends IArea>> pendingAreas;
+
+		private PlayerPosition(Location location) {
+			this.world = location.getWorld();
+			this.blockKey = toBlockKey(location);
+			this.areas = new IdentityHashMap<>();
+		}
+
 	}
 
 }
@@ -0,0 +1,55 @@
+package vg.civcraft.mc.civmodcore.events;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Called when a player moves into a different chunk. Cancelling this cancels the underlying move.
+ */
+public class PlayerChangeChunkEvent extends PlayerMoveBlockEvent {
+
+	private static final HandlerList handlers = new HandlerList();
+
+	public PlayerChangeChunkEvent(Player player, Location from, Location to) {
+		super(player, from, to);
+	}
+
+	/**
+	 * @return The x-coordinate of the chunk the player is leaving
+	 */
+	public int getFromChunkX() {
+		return getFrom().getBlockX() >> 4;
+	}
+
+	/**
+	 * @return The z-coordinate of the chunk the player is leaving
+	 */
+	public int getFromChunkZ() {
+		return getFrom().getBlockZ() >> 4;
+	}
+
+	/**
+	 * @return The x-coordinate of the chunk the player is entering
+	 */
+	public int getToChunkX() {
+		return getTo().getBlockX() >> 4;
+	}
+
+	/**
+	 * @return The z-coordinate of the chunk the player is entering
+	 */
+	public int getToChunkZ() {
+		return getTo().getBlockZ() >> 4;
+	}
+
+	@Override
+	public HandlerList getHandlers() {
+		return handlers;
+	}
+
+	public static HandlerList getHandlerList() {
+		return handlers;
+	}
+
+}
@@ -0,0 +1,51 @@
+package vg.civcraft.mc.civmodcore.events;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import vg.civcraft.mc.civmodcore.world.model.AreaIndex;
+import vg.civcraft.mc.civmodcore.world.model.IArea;
+
+/**
+ * Called when a player enters an area of an {@link AreaIndex} watched through
+ * {@link CustomEventMapper#watchAreas(AreaIndex)}. Cancelling this cancels the underlying move. Area events of
+ * the same move called before this one are not undone then, so they may be called again for the same transition
+ * when the player retries the move.
+ */
+public class PlayerEnterAreaEvent extends PlayerMoveBlockEvent {
+
+	private static final HandlerList handlers = new HandlerList();
+
+	private final AreaIndex<?> index;
+	private final IArea area;
+
+	public PlayerEnterAreaEvent(Player player, Location from, Location to, AreaIndex<?> index, IArea area) {
+		super(player, from, to);
+		this.index = index;
+		this.area = area;
+	}
+
+	/**
+	 * @return The index the area belongs to
+	 */
+	public AreaIndex<?> getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return The area the player is entering
+	 */
+	public IArea getArea() {
+		return area;
+	}
+
+	@Override
+	public HandlerList getHandlers() {
+		return handlers;
+	}
+
+	public static HandlerList getHandlerList() {
+		return handlers;
+	}
+
+}
@@ -5,6 +5,10 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.player.PlayerMoveEvent;
 
+/**
+ * Called when a player moves into a different block, rather than on every movement like {@link PlayerMoveEvent}.
+ * Cancelling this cancels the underlying move.
+ */
 public class PlayerMoveBlockEvent extends PlayerMoveEvent {
 
 	private static final HandlerList handlers = new HandlerList();
@@ -1,61 +1,139 @@
 package vg.civcraft.mc.civmodcore.world;
 
 import com.google.common.base.Preconditions;
-import java.util.HashSet;
-import java.util.Set;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Stream;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Beacon;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockExplodeEvent;
-import org.bukkit.event.world.ChunkLoadEvent;
-import org.bukkit.event.world.ChunkUnloadEvent;
+import vg.civcraft.mc.civmodcore.CivModCorePlugin;
 import vg.civcraft.mc.civmodcore.utilities.CivLogger;
 
-public final class BeaconTracker implements Listener {
+/**
+ * Tracks the beacons in loaded chunks, bucketed per chunk, so finding the beacons encompassing a location only looks
+ * at the chunks within reach of the widest beacon in that world, rather than at every beacon. Effect ranges are cached
+ * when a beacon is first seen.
+ *
+ * Loaded chunks are searched for beacons off the main thread, on a snapshot of the chunk. The beacons found are then
+ * picked up on the main thread, which means beacons in a freshly loaded chunk show up a tick or two later.
+ *
+ * Queries and modifications must happen on the main thread.
+ */
+public final class BeaconTracker implements Listener, ChunkLifecycleDispatcher.Subscriber {
 
 	private static final CivLogger LOGGER = CivLogger.getLogger(BeaconTracker.class);
-	private static final Set<Beacon> STORAGE = new HashSet<>();
+	private static final Map<UUID, WorldBeacons> STORAGE = new HashMap<>();
 
-	@EventHandler(priority = EventPriority.MONITOR)
-	public void onChunkLoad(final ChunkLoadEvent event) {
-		for (final BlockState tile : event.getChunk().getTileEntities()) {
-			if (tile instanceof Beacon) {
-				STORAGE.add((Beacon) tile);
-			}
-		}
+	/**
+	 * Creates a new beacon tracker, which receives chunk loads and unloads through the
+	 * {@link ChunkLifecycleDispatcher}. Register it as a listener to also track beacons being destroyed.
+	 */
+	public BeaconTracker() {
+		ChunkLifecycleDispatcher.INSTANCE.subscribeAll(this);
 	}
 
-	@EventHandler(priority = EventPriority.MONITOR)
-	public void onChunkUnload(final ChunkUnloadEvent event) {
-		for (final BlockState tile : event.getChunk().getTileEntities()) {
-			if (tile instanceof Beacon) {
-				STORAGE.remove(tile);
+	@Override
+	public void onChunkLoad(final Chunk chunk) {
+		final World world = chunk.getWorld();
+		final int chunkX = chunk.getX();
+		final int chunkZ = chunk.getZ();
+		final ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+		final int minY = world.getMinHeight();
+		final int maxY = world.getMaxHeight();
+		final CivModCorePlugin plugin = CivModCorePlugin.getInstance();
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			final List<int[]> found = findBeacons(snapshot, minY, maxY);
+			if (found.isEmpty()) {
+				return;
 			}
+			Bukkit.getScheduler().runTask(plugin, () -> trackChunk(world, chunkX, chunkZ, found));
+		});
+	}
+
+	@Override
+	public void onChunkUnload(final Chunk chunk) {
+		final WorldBeacons beacons = STORAGE.get(chunk.getWorld().getUID());
+		if (beacons != null) {
+			beacons.removeChunk(ChunkKey.of(chunk.getX(), chunk.getZ()));
 		}
 	}
 
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
 	public void onBlockBreak(final BlockBreakEvent event) {
-		final BlockState state = event.getBlock().getState();
-		if (state instanceof Beacon) {
-			STORAGE.remove(state);
-		}
+		untrack(event.getBlock());
 	}
 
 	@EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
 	public void onExplosion(final BlockExplodeEvent event) {
 		for (final Block block : event.blockList()) {
-			final BlockState state = block.getState();
-			if (state instanceof Beacon) {
-				STORAGE.remove(state);
+			untrack(block);
+		}
+	}
+
+	private static void untrack(final Block block) {
+		if (block.getType() != Material.BEACON) {
+			return;
+		}
+		final WorldBeacons beacons = STORAGE.get(block.getWorld().getUID());
+		if (beacons != null) {
+			beacons.remove(block.getX(), block.getY(), block.getZ());
+		}
+	}
+
+	private static List<int[]> findBeacons(final ChunkSnapshot snapshot, final int minY, final int maxY) {
+		final List<int[]> found = new ArrayList<>();
+		// Checks the palettes only, which rules out nearly every chunk without going through its blocks
+		if (!snapshot.contains(BeaconData.INSTANCE)) {
+			return found;
+		}
+		for (int y = minY; y < maxY; y++) {
+			for (int x = 0; x < 16; x++) {
+				for (int z = 0; z < 16; z++) {
+					if (snapshot.getBlockType(x, y, z) == Material.BEACON) {
+						found.add(new int[] {x, y, z});
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private static void trackChunk(final World world, final int chunkX, final int chunkZ, final List<int[]> found) {
+		// The chunk may have unloaded while it was searched
+		if (!world.isChunkLoaded(chunkX, chunkZ)) {
+			return;
+		}
+		final List<TrackedBeacon> tracked = new ArrayList<>(found.size());
+		for (final int[] position : found) {
+			final BlockState state = world.getBlockAt((chunkX << 4) + position[0], position[1],
+					(chunkZ << 4) + position[2]).getState();
+			if (state instanceof Beacon beacon) {
+				tracked.add(new TrackedBeacon(beacon));
 			}
 		}
+		if (tracked.isEmpty()) {
+			return;
+		}
+		STORAGE.computeIfAbsent(world.getUID(), (uuid) -> new WorldBeacons())
+				.putChunk(ChunkKey.of(chunkX, chunkZ), tracked);
 	}
 
 	/**
@@ -66,8 +144,11 @@ public final class BeaconTracker implements Listener {
 	 */
 	public static Stream<Beacon> getEncompassingBeacons(final Location location) {
 		Preconditions.checkArgument(WorldUtils.isValidLocation(location));
-		return STORAGE.stream()
-				.filter(beacon -> isInBeaconRange(beacon, location));
+		final WorldBeacons beacons = STORAGE.get(location.getWorld().getUID());
+		if (beacons == null) {
+			return Stream.empty();
+		}
+		return beacons.getEncompassing(location).stream();
 	}
 
 	/**
@@ -87,4 +168,86 @@ public final class BeaconTracker implements Listener {
 				&& location.getY() <= (beacon.getY() + range + 256);
 	}
 
+	private static final class WorldBeacons {
+
+		// Packed chunk key -> beacons in that chunk
+		private final Long2ObjectMap<List<TrackedBeacon>> chunks = new Long2ObjectOpenHashMap<>();
+		// Widest range of any beacon tracked in this world since it was last empty, which bounds the chunks a query
+		// has to look at
+		private int maxRange;
+
+		private void putChunk(final long chunkKey, final List<TrackedBeacon> beacons) {
+			this.chunks.put(chunkKey, beacons);
+			for (final TrackedBeacon beacon : beacons) {
+				this.maxRange = Math.max(this.maxRange, (int) Math.ceil(beacon.range()));
+			}
+		}
+
+		private void removeChunk(final long chunkKey) {
+			if (this.chunks.remove(chunkKey) != null && this.chunks.isEmpty()) {
+				this.maxRange = 0;
+			}
+		}
+
+		private void remove(final int x, final int y, final int z) {
+			final long chunkKey = ChunkKey.of(x >> 4, z >> 4);
+			final List<TrackedBeacon> beacons = this.chunks.get(chunkKey);
+			if (beacons == null) {
+				return;
+			}
+			beacons.removeIf((beacon) -> beacon.x() == x && beacon.y() == y && beacon.z() == z);
+			if (beacons.isEmpty()) {
+				removeChunk(chunkKey);
+			}
+		}
+
+		private List<Beacon> getEncompassing(final Location location) {
+			final List<Beacon> result = new ArrayList<>();
+			final int x = location.getBlockX();
+			final int z = location.getBlockZ();
+			final int minChunkX = (x - this.maxRange) >> 4;
+			final int maxChunkX = (x + this.maxRange) >> 4;
+			final int minChunkZ = (z - this.maxRange) >> 4;
+			final int maxChunkZ = (z + this.maxRange) >> 4;
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					final List<TrackedBeacon> beacons = this.chunks.get(ChunkKey.of(chunkX, chunkZ));
+					if (beacons == null) {
+						continue;
+					}
+					for (final TrackedBeacon beacon : beacons) {
+						if (beacon.encompasses(location)) {
+							result.add(beacon.beacon());
+						}
+					}
+				}
+			}
+			return result;
+		}
+
+	}
+
+	private record TrackedBeacon(Beacon beacon, int x, int y, int z, double range) {
+
+		private TrackedBeacon(final Beacon beacon) {
+			this(beacon, beacon.getX(), beacon.getY(), beacon.getZ(), beacon.getEffectRange());
+		}
+
+		private boolean encompasses(final Location location) {
+			final int distanceXZ = Math.max(Math.abs(this.x - location.getBlockX()),
+					Math.abs(this.z - location.getBlockZ()));
+			return distanceXZ <= this.range
+					&& location.getY() >= (this.y - this.range)
+					&& location.getY() <= (this.y + this.range + 256);
+		}
+
+	}
+
+	private static final class BeaconData {
+
+		// Created lazily, as block data can't be created before the server is up
+		private static final BlockData INSTANCE = Material.BEACON.createBlockData();
+
+	}
+
 }
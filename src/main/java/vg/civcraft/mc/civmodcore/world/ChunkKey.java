@@ -0,0 +1,69 @@
+package vg.civcraft.mc.civmodcore.world;
+
+/**
+ * Packs the coordinates of a chunk and the internal id of its world into a single long, so chunks can key primitive
+ * maps and sets without allocating a coordinate object for every lookup. Compared as longs, keys are ordered by world,
+ * then x, then z.
+ *
+ * Chunk coordinates must be within [-2^23, 2^23), which covers the entire Minecraft world.
+ */
+public final class ChunkKey {
+
+	private static final int COORD_BITS = 24;
+	private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+	private static final int COORD_OFFSET = 1 << (COORD_BITS - 1);
+
+	private ChunkKey() {
+	}
+
+	/**
+	 * @param worldID The internal id of the chunk's world.
+	 * @param x The chunk's x-coordinate.
+	 * @param z The chunk's z-coordinate.
+	 * @return Returns the chunk's key.
+	 */
+	public static long of(final short worldID, final int x, final int z) {
+		// Offsetting the coordinates keeps negative ones ordered before positive ones
+		return ((worldID & 0xFFFFL) << (COORD_BITS * 2))
+				| (((long) (x + COORD_OFFSET) & COORD_MASK) << COORD_BITS)
+				| ((long) (z + COORD_OFFSET) & COORD_MASK);
+	}
+
+	/**
+	 * Creates a key without a world, for maps which are already separated by world.
+	 *
+	 * @param x The chunk's x-coordinate.
+	 * @param z The chunk's z-coordinate.
+	 * @return Returns the chunk's key.
+	 */
+	public static long of(final int x, final int z) {
+		return of((short) 0, x, z);
+	}
+
+	/**
+	 * @param worldID The internal id of the block's world.
+	 * @param blockX The block's x-coordinate.
+	 * @param blockZ The block's z-coordinate.
+	 * @return Returns the key of the chunk the block is in.
+	 */
+	public static long ofBlock(final short worldID, final int blockX, final int blockZ) {
+		return of(worldID, blockX >> 4, blockZ >> 4);
+	}
+
+	public static short getWorldID(final long key) {
+		return (short) (key >>> (COORD_BITS * 2));
+	}
+
+	public static int getX(final long key) {
+		return (int) ((key >>> COORD_BITS) & COORD_MASK) - COORD_OFFSET;
+	}
+
+	public static int getZ(final long key) {
+		return (int) (key & COORD_MASK) - COORD_OFFSET;
+	}
+
+	public static String toString(final long key) {
+		return String.format("(%d, %d):%d", getX(key), getZ(key), getWorldID(key));
+	}
+
+}
@@ -0,0 +1,345 @@
+package vg.civcraft.mc.civmodcore.world;
+
+import co.aikar.commands.BaseCommand;
+import co.aikar.commands.annotation.CommandAlias;
+import co.aikar.commands.annotation.CommandPermission;
+import co.aikar.commands.annotation.Description;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import net.md_5.bungee.api.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+
+/**
+ * Single entry point for chunk loads and unloads within CivModCore. Rather than every subsystem listening to
+ * {@link ChunkLoadEvent} and {@link ChunkUnloadEvent} itself and looking up whether it has anything in that chunk,
+ * subsystems subscribe here, either to every chunk or only to the chunks they have registered interest in. The
+ * dispatcher keeps an index of interested subscribers per chunk, so a chunk nobody cares about costs a single lookup,
+ * regardless of how many subsystems are registered.
+ *
+ * Subscribers to every chunk are called first, in the order they subscribed, followed by those interested in the
+ * specific chunk. Each call is timed, the results of which can be viewed with /chunklifecycle.
+ *
+ * Subscribing and registering interest is thread-safe, events are dispatched on the main thread.
+ */
+public final class ChunkLifecycleDispatcher extends BaseCommand implements Listener {
+
+	public static final ChunkLifecycleDispatcher INSTANCE = new ChunkLifecycleDispatcher();
+
+	/**
+	 * Receives chunk lifecycle callbacks from the {@link ChunkLifecycleDispatcher}.
+	 */
+	public interface Subscriber {
+
+		/**
+		 * Called when a chunk this subscriber is interested in has loaded.
+		 *
+		 * @param chunk The chunk that loaded.
+		 */
+		default void onChunkLoad(final Chunk chunk) {
+		}
+
+		/**
+		 * Called when a chunk this subscriber is interested in is about to unload.
+		 *
+		 * @param chunk The chunk that's unloading.
+		 */
+		default void onChunkUnload(final Chunk chunk) {
+		}
+
+		/**
+		 * @return Returns the name this subscriber is listed under in timings.
+		 */
+		default String getSubscriberName() {
+			return getClass().getSimpleName();
+		}
+
+	}
+
+	private static final Subscription[] NONE = new Subscription[0];
+
+	private final Object lock = new Object();
+	private final List<Subscription> global = new CopyOnWriteArrayList<>();
+	// Subscriber -> its subscription, for every subscriber ever seen until it unsubscribes
+	private final Reference2ObjectMap<Subscriber, Subscription> subscriptions = new Reference2ObjectOpenHashMap<>();
+	// World -> packed chunk key -> subscriptions interested in that chunk. Arrays are replaced rather than modified,
+	// so they can be dispatched to without holding the lock.
+	private final Map<UUID, Long2ObjectMap<Subscription[]>> interests = new HashMap<>();
+
+	private ChunkLifecycleDispatcher() {
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onChunkLoad(final ChunkLoadEvent event) {
+		dispatch(event.getChunk(), true);
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onChunkUnload(final ChunkUnloadEvent event) {
+		dispatch(event.getChunk(), false);
+	}
+
+	private void dispatch(final Chunk chunk, final boolean load) {
+		for (final Subscription subscription : this.global) {
+			subscription.call(chunk, load);
+		}
+		final Subscription[] interested;
+		synchronized (this.lock) {
+			final Long2ObjectMap<Subscription[]> chunks = this.interests.get(chunk.getWorld().getUID());
+			if (chunks == null) {
+				return;
+			}
+			interested = chunks.get(ChunkKey.of(chunk.getX(), chunk.getZ()));
+		}
+		if (interested == null) {
+			return;
+		}
+		for (final Subscription subscription : interested) {
+			subscription.call(chunk, load);
+		}
+	}
+
+	/**
+	 * Subscribes to the loading and unloading of every chunk. Only use this if the subscriber genuinely needs to see
+	 * every chunk, otherwise register interest in specific chunks through
+	 * {@link #addInterest(Subscriber, UUID, int, int)}.
+	 *
+	 * @param subscriber The subscriber to call.
+	 */
+	public void subscribeAll(final Subscriber subscriber) {
+		if (subscriber == null) {
+			throw new IllegalArgumentException("Subscriber cannot be null!");
+		}
+		synchronized (this.lock) {
+			final Subscription subscription = getSubscription(subscriber);
+			if (!subscription.global) {
+				subscription.global = true;
+				this.global.add(subscription);
+			}
+		}
+	}
+
+	/**
+	 * Registers interest in a particular chunk, so the subscriber is called when that chunk loads or unloads.
+	 * Registering interest in a chunk more than once has no further effect.
+	 *
+	 * @param subscriber The subscriber to call.
+	 * @param world The UUID of the chunk's world.
+	 * @param chunkX The chunk's x-coordinate.
+	 * @param chunkZ The chunk's z-coordinate.
+	 */
+	public void addInterest(final Subscriber subscriber, final UUID world, final int chunkX, final int chunkZ) {
+		if (subscriber == null) {
+			throw new IllegalArgumentException("Subscriber cannot be null!");
+		}
+		if (world == null) {
+			throw new IllegalArgumentException("World cannot be null!");
+		}
+		final long key = ChunkKey.of(chunkX, chunkZ);
+		synchronized (this.lock) {
+			final Subscription subscription = getSubscription(subscriber);
+			final Long2ObjectMap<Subscription[]> chunks = this.interests.computeIfAbsent(world,
+					(uuid) -> new Long2ObjectOpenHashMap<>());
+			final Subscription[] existing = chunks.getOrDefault(key, NONE);
+			for (final Subscription other : existing) {
+				if (other == subscription) {
+					return;
+				}
+			}
+			final Subscription[] updated = Arrays.copyOf(existing, existing.length + 1);
+			updated[existing.length] = subscription;
+			chunks.put(key, updated);
+			subscription.interests++;
+		}
+	}
+
+	/**
+	 * Removes interest in a particular chunk, if the subscriber had registered any.
+	 *
+	 * @param subscriber The subscriber to no longer call.
+	 * @param world The UUID of the chunk's world.
+	 * @param chunkX The chunk's x-coordinate.
+	 * @param chunkZ The chunk's z-coordinate.
+	 */
+	public void removeInterest(final Subscriber subscriber, final UUID world, final int chunkX, final int chunkZ) {
+		final long key = ChunkKey.of(chunkX, chunkZ);
+		synchronized (this.lock) {
+			final Long2ObjectMap<Subscription[]> chunks = this.interests.get(world);
+			if (chunks == null) {
+				return;
+			}
+			final Subscription[] existing = chunks.get(key);
+			if (existing == null) {
+				return;
+			}
+			final Subscription[] updated = without(existing, subscriber);
+			if (updated == existing) {
+				return;
+			}
+			this.subscriptions.get(subscriber).interests--;
+			if (updated.length == 0) {
+				chunks.remove(key);
+				if (chunks.isEmpty()) {
+					this.interests.remove(world);
+				}
+			}
+			else {
+				chunks.put(key, updated);
+			}
+		}
+	}
+
+	/**
+	 * Removes the subscriber entirely, both from every chunk and from specific chunks.
+	 *
+	 * @param subscriber The subscriber to no longer call.
+	 */
+	public void unsubscribe(final Subscriber subscriber) {
+		synchronized (this.lock) {
+			final Subscription subscription = this.subscriptions.remove(subscriber);
+			if (subscription == null) {
+				return;
+			}
+			this.global.remove(subscription);
+			if (subscription.interests == 0) {
+				return;
+			}
+			this.interests.values().removeIf((chunks) -> {
+				final var iterator = chunks.long2ObjectEntrySet().iterator();
+				while (iterator.hasNext()) {
+					final Long2ObjectMap.Entry<Subscription[]> entry = iterator.next();
+					final Subscription[] updated = without(entry.getValue(), subscriber);
+					if (updated.length == 0) {
+						iterator.remove();
+					}
+					else {
+						entry.setValue(updated);
+					}
+				}
+				return chunks.isEmpty();
+			});
+		}
+	}
+
+	/**
+	 * Resets the dispatcher. Should only be used when disabling CivModCore.
+	 */
+	public void reset() {
+		synchronized (this.lock) {
+			this.global.clear();
+			this.subscriptions.clear();
+			this.interests.clear();
+		}
+	}
+
+	@CommandAlias("chunklifecycle")
+	@Description("Shows how much time each subsystem has spent handling chunk loads and unloads.")
+	@CommandPermission("cmc.debug")
+	public void onDebugCommand(final CommandSender sender) {
+		final List<Subscription> subscriptions;
+		synchronized (this.lock) {
+			subscriptions = new ArrayList<>(this.subscriptions.values());
+		}
+		sender.sendMessage(ChatColor.YELLOW + "Chunk lifecycle subscribers:");
+		for (final Subscription subscription : subscriptions) {
+			sender.sendMessage(" " + ChatColor.AQUA + subscription.subscriber.getSubscriberName() + ChatColor.RESET
+					+ (subscription.global ? " (all chunks)" : " (" + subscription.interests + " chunks)"));
+			sender.sendMessage("   Loads: " + subscription.loads.describe());
+			sender.sendMessage("   Unloads: " + subscription.unloads.describe());
+		}
+		sender.sendMessage(ChatColor.RED + "End of subscribers.");
+	}
+
+	private Subscription getSubscription(final Subscriber subscriber) {
+		return this.subscriptions.computeIfAbsent(subscriber, (s) -> new Subscription(subscriber));
+	}
+
+	private static Subscription[] without(final Subscription[] existing, final Subscriber subscriber) {
+		for (int i = 0; i < existing.length; i++) {
+			if (existing[i].subscriber == subscriber) {
+				final Subscription[] updated = new Subscription[existing.length - 1];
+				System.arraycopy(existing, 0, updated, 0, i);
+				System.arraycopy(existing, i + 1, updated, i, updated.length - i);
+				return updated;
+			}
+		}
+		return existing;
+	}
+
+	private static final class Subscription {
+
+		private final Subscriber subscriber;
+		private final Timing loads = new Timing();
+		private final Timing unloads = new Timing();
+		// Both only modified while holding the dispatcher's lock
+		private boolean global;
+		private int interests;
+
+		private Subscription(final Subscriber subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		private void call(final Chunk chunk, final boolean load) {
+			final long start = System.nanoTime();
+			try {
+				if (load) {
+					this.subscriber.onChunkLoad(chunk);
+				}
+				else {
+					this.subscriber.onChunkUnload(chunk);
+				}
+			}
+			catch (final Throwable exception) {
+				final World world = chunk.getWorld();
+				CivModCorePlugin.getInstance().warning("Chunk lifecycle subscriber ["
+						+ this.subscriber.getSubscriberName() + "] has thrown an error handling chunk "
+						+ chunk.getX() + ", " + chunk.getZ() + " in " + world.getName() + ":", exception);
+			}
+			(load ? this.loads : this.unloads).record(System.nanoTime() - start);
+		}
+
+	}
+
+	private static final class Timing {
+
+		// Only written to from the main thread
+		private volatile long calls;
+		private volatile long totalNanos;
+		private volatile long maxNanos;
+
+		private void record(final long nanos) {
+			this.calls++;
+			this.totalNanos += nanos;
+			if (nanos > this.maxNanos) {
+				this.maxNanos = nanos;
+			}
+		}
+
+		private String describe() {
+			final long calls = this.calls;
+			if (calls == 0) {
+				return "none";
+			}
+			return calls + " calls, " + String.format("%.1f", this.totalNanos / 1000.0 / calls) + "µs average, "
+					+ String.format("%.1f", this.maxNanos / 1000.0) + "µs max";
+		}
+
+	}
+
+}
@@ -1,15 +1,15 @@
 package vg.civcraft.mc.civmodcore.world;
 
 import com.google.common.base.Preconditions;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.Predicate;
 import net.minecraft.core.BlockPosition;
 import org.bukkit.Location;
 import org.bukkit.World;
 
 /**
- * Utility to use with {@link java.util.stream.Stream} to efficiently remove elements from unloaded chunks.
+ * Utility to use with {@link java.util.stream.Stream} to efficiently remove elements from unloaded chunks. Lookups go
+ * through the {@link LoadedChunkIndex}, where many positions are to be filtered at once prefer its bulk
+ * {@link LoadedChunkIndex#filterLoaded(World, long[])} instead.
  */
 public final class ChunkLoadedFilter {
 
@@ -21,23 +21,8 @@ public final class ChunkLoadedFilter {
 	 */
 	public static Predicate<BlockPosition> blockPosition(final World world) {
 		Preconditions.checkArgument(WorldUtils.isWorldLoaded(world));
-		final List<Long> loadedChunks = new ArrayList<>();
-		return (position) -> {
-			if (position == null) {
-				return false;
-			}
-			final int chunkX = position.getX() >> 4;
-			final int chunkZ = position.getZ() >> 4;
-			final long combined = ((long) chunkX << 32) | (long) chunkZ;
-			if (loadedChunks.contains(combined)) {
-				return true;
-			}
-			if (world.isChunkLoaded(chunkX, chunkZ)) {
-				loadedChunks.add(combined);
-				return true;
-			}
-			return false;
-		};
+		return (position) -> position != null
+				&& LoadedChunkIndex.INSTANCE.isLoaded(world, position.getX() >> 4, position.getZ() >> 4);
 	}
 
 	/**
@@ -48,23 +33,8 @@ public final class ChunkLoadedFilter {
 	 */
 	public static Predicate<Location> location(final World world) {
 		Preconditions.checkArgument(WorldUtils.isWorldLoaded(world));
-		final List<Long> loadedChunks = new ArrayList<>();
-		return (position) -> {
-			if (position == null) {
-				return false;
-			}
-			final int chunkX = position.getBlockX() >> 4;
-			final int chunkZ = position.getBlockZ() >> 4;
-			final long combined = ((long) chunkX << 32) | (long) chunkZ;
-			if (loadedChunks.contains(combined)) {
-				return true;
-			}
-			if (world.isChunkLoaded(chunkX, chunkZ)) {
-				loadedChunks.add(combined);
-				return true;
-			}
-			return false;
-		};
+		return (position) -> position != null
+				&& LoadedChunkIndex.INSTANCE.isLoaded(world, position.getBlockX() >> 4, position.getBlockZ() >> 4);
 	}
 
 }
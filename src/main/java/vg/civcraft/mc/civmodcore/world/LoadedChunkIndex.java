@@ -0,0 +1,173 @@
+package vg.civcraft.mc.civmodcore.world;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Keeps track of which chunks are loaded, per world, as sets of packed chunk keys (see {@link ChunkKey}), maintained
+ * from chunk loads and unloads received through the {@link ChunkLifecycleDispatcher}. On the main thread lookups see
+ * the current state. Every other thread reads an immutable snapshot without locking, which is republished once per
+ * tick if anything changed, so it may be up to a tick behind.
+ *
+ * Prefer the bulk {@link #filterLoaded(World, long[])} and {@link #filterLoadedChunks(World, long[])} over checking
+ * elements one by one where many positions need filtering.
+ */
+public final class LoadedChunkIndex implements ChunkLifecycleDispatcher.Subscriber {
+
+	public static final LoadedChunkIndex INSTANCE = new LoadedChunkIndex();
+
+	// World -> chunk keys of loaded chunks. Only accessed from the main thread.
+	private final Map<UUID, LongSet> live = new HashMap<>();
+	private final Set<UUID> changed = new HashSet<>();
+	private volatile Map<UUID, LongSet> snapshot = Map.of();
+	private BukkitTask publisher;
+
+	private LoadedChunkIndex() {
+	}
+
+	/**
+	 * Starts tracking loaded chunks. Should only be used when enabling CivModCore.
+	 *
+	 * @param plugin The plugin to schedule publishing snapshots with.
+	 */
+	public void start(final Plugin plugin) {
+		for (final World world : Bukkit.getWorlds()) {
+			for (final Chunk chunk : world.getLoadedChunks()) {
+				onChunkLoad(chunk);
+			}
+		}
+		publish();
+		ChunkLifecycleDispatcher.INSTANCE.subscribeAll(this);
+		this.publisher = Bukkit.getScheduler().runTaskTimer(plugin, this::publish, 1L, 1L);
+	}
+
+	/**
+	 * Stops tracking loaded chunks. Should only be used when disabling CivModCore.
+	 */
+	public void stop() {
+		if (this.publisher != null) {
+			this.publisher.cancel();
+			this.publisher = null;
+		}
+		ChunkLifecycleDispatcher.INSTANCE.unsubscribe(this);
+		this.live.clear();
+		this.changed.clear();
+		this.snapshot = Map.of();
+	}
+
+	@Override
+	public void onChunkLoad(final Chunk chunk) {
+		final UUID world = chunk.getWorld().getUID();
+		this.live.computeIfAbsent(world, (uuid) -> new LongOpenHashSet()).add(ChunkKey.of(chunk.getX(), chunk.getZ()));
+		this.changed.add(world);
+	}
+
+	@Override
+	public void onChunkUnload(final Chunk chunk) {
+		final UUID world = chunk.getWorld().getUID();
+		final LongSet chunks = this.live.get(world);
+		if (chunks == null) {
+			return;
+		}
+		chunks.remove(ChunkKey.of(chunk.getX(), chunk.getZ()));
+		if (chunks.isEmpty()) {
+			this.live.remove(world);
+		}
+		this.changed.add(world);
+	}
+
+	@Override
+	public String getSubscriberName() {
+		return "Loaded chunk index";
+	}
+
+	private void publish() {
+		if (this.changed.isEmpty()) {
+			return;
+		}
+		final Map<UUID, LongSet> updated = new HashMap<>(this.snapshot);
+		for (final UUID world : this.changed) {
+			final LongSet chunks = this.live.get(world);
+			if (chunks == null) {
+				updated.remove(world);
+			}
+			else {
+				updated.put(world, LongSets.unmodifiable(new LongOpenHashSet(chunks)));
+			}
+		}
+		this.changed.clear();
+		this.snapshot = updated;
+	}
+
+	private LongSet getChunks(final World world) {
+		if (world == null) {
+			throw new IllegalArgumentException("World cannot be null!");
+		}
+		final Map<UUID, LongSet> chunks = Bukkit.isPrimaryThread() ? this.live : this.snapshot;
+		final LongSet worldChunks = chunks.get(world.getUID());
+		return worldChunks == null ? LongSets.EMPTY_SET : worldChunks;
+	}
+
+	/**
+	 * @param world The world of the chunk.
+	 * @param chunkX The chunk's x-coordinate.
+	 * @param chunkZ The chunk's z-coordinate.
+	 * @return Returns whether the chunk is loaded.
+	 */
+	public boolean isLoaded(final World world, final int chunkX, final int chunkZ) {
+		return getChunks(world).contains(ChunkKey.of(chunkX, chunkZ));
+	}
+
+	/**
+	 * Filters the given chunks down to those which are loaded.
+	 *
+	 * @param world The world of the chunks.
+	 * @param chunkKeys Chunks packed through {@link ChunkKey#of(int, int)}.
+	 * @return Returns the loaded chunks, in the order given.
+	 */
+	public long[] filterLoadedChunks(final World world, final long[] chunkKeys) {
+		final LongSet chunks = getChunks(world);
+		final long[] result = new long[chunkKeys.length];
+		int size = 0;
+		for (final long chunkKey : chunkKeys) {
+			if (chunks.contains(chunkKey)) {
+				result[size++] = chunkKey;
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Filters the given block positions down to those in loaded chunks.
+	 *
+	 * @param world The world of the positions.
+	 * @param blockKeys Block positions packed through {@link Block#getBlockKey(int, int, int)}.
+	 * @return Returns the positions within loaded chunks, in the order given.
+	 */
+	public long[] filterLoaded(final World world, final long[] blockKeys) {
+		final LongSet chunks = getChunks(world);
+		final long[] result = new long[blockKeys.length];
+		int size = 0;
+		for (final long blockKey : blockKeys) {
+			final long chunkKey = ChunkKey.of(Block.getBlockKeyX(blockKey) >> 4, Block.getBlockKeyZ(blockKey) >> 4);
+			if (chunks.contains(chunkKey)) {
+				result[size++] = blockKey;
+			}
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+}
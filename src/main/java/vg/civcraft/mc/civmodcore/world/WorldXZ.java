@@ -5,6 +5,11 @@ import java.util.UUID;
 import org.bukkit.Location;
 import org.bukkit.World;
 
+/**
+ * @deprecated Use {@link ChunkKey} instead, which packs world, x and z into a single long and does not need an
+ *             allocation per lookup.
+ */
+@Deprecated
 public class WorldXZ {
 
 	private final UUID world;
@@ -0,0 +1,40 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings for periodically writing chunk data which has been modified for a
+ * while to the database, even though its chunk is still loaded
+ *
+ * @param interval    How often to checkpoint in milliseconds, 0 or less to
+ *                    disable checkpointing
+ * @param chunkBudget Maximum amount of chunks to write per checkpoint
+ * @param minDirtyAge How long in milliseconds data must have been modified
+ *                    before it is eligible for checkpointing
+ */
+public record CheckpointSettings(long interval, int chunkBudget, long minDirtyAge) {
+
+	public static final CheckpointSettings DEFAULT = new CheckpointSettings(30_000L, 200, 60_000L);
+	public static final CheckpointSettings DISABLED = new CheckpointSettings(0L, 0, 0L);
+
+	public boolean isEnabled() {
+		return interval > 0 && chunkBudget > 0;
+	}
+
+	/**
+	 * Parses checkpoint settings from the given config section, using defaults
+	 * for anything not specified
+	 *
+	 * @param section Section to parse, may be null
+	 * @return Parsed settings
+	 */
+	public static CheckpointSettings fromConfig(ConfigurationSection section) {
+		if (section == null) {
+			return DEFAULT;
+		}
+		return new CheckpointSettings(section.getLong("interval", DEFAULT.interval()),
+				section.getInt("chunks_per_interval", DEFAULT.chunkBudget()),
+				section.getLong("min_dirty_age", DEFAULT.minDirtyAge()));
+	}
+
+}
@@ -1,9 +1,11 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import org.bukkit.World;
@@ -12,6 +14,9 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaViewTrac
 
 public class ChunkCoord extends XZWCoord {
 
+	// this instance and its tree map
+	private static final long ESTIMATED_OVERHEAD = 128L;
+
 	/**
 	 * When was this chunk last loaded in Minecraft as UNIX timestamp
 	 */
@@ -21,7 +26,13 @@ public class ChunkCoord extends XZWCoord {
 	 */
 	private long lastUnloadingTime;
 	/**
-	 * Each ChunkMeta belongs to one plugin, they are identified by the plugin id
+	 * When was the data of this chunk last written to the database as UNIX timestamp, -1 if not known
+	 */
+	private long lastPersistTime;
+	/**
+	 * Each ChunkMeta belongs to one plugin, they are identified by the plugin id.
+	 * Metas are added by the loader thread while the main thread and the unloader
+	 * iterate, iteration sees a meta being added either fully or not at all
 	 */
 	private Map<Short, ChunkMeta<?>> chunkMetas;
 	/**
@@ -29,15 +40,20 @@ public class ChunkCoord extends XZWCoord {
 	 * the entire life time of this object
 	 */
 	private boolean isFullyLoaded;
+	/**
+	 * Pinned chunks keep their data in memory even while unloaded
+	 */
+	private volatile boolean pinned;
 	private World world;
 
 	ChunkCoord(int x, int z, short worldID, World world) {
 		super(x, z, worldID);
 		this.world = world;
-		this.chunkMetas = new TreeMap<>();
+		this.chunkMetas = new ConcurrentSkipListMap<>();
 		this.isFullyLoaded = false;
 		this.lastLoadingTime = -1;
 		this.lastUnloadingTime = -1;
+		this.lastPersistTime = -1;
 	}
 
 	/**
@@ -53,40 +69,107 @@ public class ChunkCoord extends XZWCoord {
 	}
 
 	/**
-	 * Writes all data held by this instance to the database
-	 *
+	 * Writes all data held by this instance to the database right away. Only to be
+	 * used for chunks which are not loaded, see {@link #prepareWrite(Short)}
 	 */
 	void fullyPersist() {
+		write(prepareWrite(null));
+	}
+
+	/**
+	 * Takes the changes made to data held by this instance, so they can be written
+	 * to the database from another thread while the main thread carries on. See
+	 * {@link ChunkMeta#prepareWrite()}, must be called from the main thread unless
+	 * the chunk is not loaded
+	 * 
+	 * @param pluginID Internal id of the plugin to take changes of, null for all
+	 *                 plugins
+	 * @return Data with changes to write, empty if there are none
+	 */
+	List<ChunkMeta<?>> prepareWrite(Short pluginID) {
+		List<ChunkMeta<?>> changed = new ArrayList<>();
 		for (ChunkMeta<?> chunkMeta : chunkMetas.values()) {
-			persistChunkMeta(chunkMeta);
+			if ((pluginID == null || chunkMeta.getPluginID() == pluginID) && chunkMeta.prepareWrite()) {
+				changed.add(chunkMeta);
+			}
 		}
+		return changed;
 	}
-	
+
 	/**
-	 * Writes all data held by this instance for one specific plugin to the database
-	 * @param id Internal id of the plugin to save data for
+	 * Writes the changes taken by {@link #prepareWrite(Short)} to the database. May
+	 * be called from any thread
+	 * 
+	 * @param changed Data with changes to write
 	 */
-	void persistPlugin(short id) {
-		ChunkMeta<?> chunkMeta = chunkMetas.get(id);
-		if (chunkMeta != null) {
-			persistChunkMeta(chunkMeta);
+	void write(List<ChunkMeta<?>> changed) {
+		synchronized (this) {
+			for (ChunkMeta<?> chunkMeta : changed) {
+				try {
+					chunkMeta.writeChanges();
+				} catch (Throwable e) {
+					// the changes were given back, so they are written next time
+					CivModCorePlugin.getInstance().getLogger().log(Level.SEVERE,
+							"Failed to save chunk data of " + chunkMeta, e);
+				}
+			}
 		}
+		this.lastPersistTime = System.currentTimeMillis();
 	}
-	
-	private static void persistChunkMeta(ChunkMeta<?> chunkMeta) {
-		switch (chunkMeta.getCacheState()) {
-		case NORMAL:
-			break;
-		case MODIFIED:
-			chunkMeta.update();
-			break;
-		case NEW:
-			chunkMeta.insert();
-			break;
-		case DELETED:
-			chunkMeta.delete();
+
+	/**
+	 * @return Whether changes to data held by this instance are being written right
+	 *         now, which is only the case between {@link #prepareWrite(Short)} and
+	 *         finishing the write
+	 */
+	boolean isWriting() {
+		for (ChunkMeta<?> chunkMeta : chunkMetas.values()) {
+			if (chunkMeta.isWriting()) {
+				return true;
+			}
 		}
-		chunkMeta.setCacheState(CacheState.NORMAL);
+		return false;
+	}
+
+	/**
+	 * @return Estimated heap retained by the data of all plugins in this chunk in
+	 *         bytes
+	 */
+	long getEstimatedSize() {
+		long size = ESTIMATED_OVERHEAD;
+		for (ChunkMeta<?> meta : chunkMetas.values()) {
+			size += meta.getEstimatedSize();
+		}
+		return size;
+	}
+
+	void collectMemoryUsage(ChunkMetaMemorySnapshot.Builder snapshot) {
+		ChunkMetaMemorySnapshot.Residency residency;
+		if (lastUnloadingTime > lastLoadingTime || lastLoadingTime == -1) {
+			residency = pinned ? ChunkMetaMemorySnapshot.Residency.PINNED
+					: ChunkMetaMemorySnapshot.Residency.UNLOADING;
+		} else {
+			residency = ChunkMetaMemorySnapshot.Residency.LOADED;
+		}
+		for (ChunkMeta<?> meta : chunkMetas.values()) {
+			snapshot.add(meta.getPluginID(), getWorldID(), residency, meta.getEntryCount(),
+					meta.getEstimatedSize());
+		}
+	}
+
+	/**
+	 * @return When the oldest unpersisted change to data held by this instance was
+	 *         made as UNIX timestamp, -1 if there are none
+	 */
+	long getDirtySince() {
+		long oldest = -1;
+		for (ChunkMeta<?> meta : chunkMetas.values()) {
+			long dirtySince = meta.getDirtySince();
+			if (dirtySince != -1 && (oldest == -1 || dirtySince < oldest)) {
+				oldest = dirtySince;
+			}
+		}
+		return oldest;
 	}
 
 	/**
@@ -98,10 +181,36 @@ public class ChunkCoord extends XZWCoord {
 			ChunkMeta<?> meta = iter.next().getValue();
 			if (!meta.loadAlways()) {
 				iter.remove();
+				meta.handleEviction();
 			}
 		}
 	}
 
+	/**
+	 * Called when all data of this chunk is dropped from memory
+	 */
+	void handleEviction() {
+		for (ChunkMeta<?> meta : chunkMetas.values()) {
+			meta.handleEviction();
+		}
+	}
+
+	/**
+	 * Storage engines can use this to decide whether the data of this chunk can be
+	 * safely loaded from a read replica, which may not have caught up with recent
+	 * writes yet
+	 * 
+	 * @return When was the data of this chunk last written to the database (UNIX
+	 *         timestamp), -1 if not known
+	 */
+	public long getLastPersistTime() {
+		return lastPersistTime;
+	}
+
+	void setLastPersistTime(long lastPersistTime) {
+		this.lastPersistTime = lastPersistTime;
+	}
+
 	/**
 	 * @return When was the minecraft chunk (the block data) this object is tied
 	 *         last loaded (UNIX timestamp)
@@ -138,6 +247,14 @@ public class ChunkCoord extends XZWCoord {
 		return chunkMetas.get(pluginID);
 	}
 
+	boolean isPinned() {
+		return pinned;
+	}
+
+	void setPinned(boolean pinned) {
+		this.pinned = pinned;
+	}
+
 	boolean hasPermanentlyLoadedData() {
 		for (ChunkMeta<?> meta : chunkMetas.values()) {
 			if (meta.loadAlways()) {
@@ -0,0 +1,165 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+
+/**
+ * Periodically deletes rows from cmc_chunk_data which no one will ever read
+ * again, in small batches and only while the server is not under load. In dry
+ * run mode the rows are only counted
+ */
+public class ChunkDataCleaner {
+
+	private static final long LOAD_CHECK_INTERVAL = 10_000L;
+
+	/**
+	 * Kinds of rows which are cleaned up
+	 */
+	public enum Orphan {
+		/**
+		 * Rows of worlds no longer in cmc_worlds
+		 */
+		UNKNOWN_WORLD("world_id not in (select id from cmc_worlds)"),
+		/**
+		 * Rows of plugins no longer in cmc_plugins
+		 */
+		UNKNOWN_PLUGIN("plugin_id not in (select id from cmc_plugins)"),
+		/**
+		 * Rows of plugins which have not registered for a while
+		 */
+		STALE_PLUGIN("plugin_id in (select id from cmc_plugins where last_registered < current_timestamp - interval ? day)");
+
+		private final String condition;
+
+		Orphan(String condition) {
+			this.condition = condition;
+		}
+	}
+
+	private final ManagedDatasource db;
+	private final Logger logger;
+	private final CleanupSettings settings;
+	private final ScheduledExecutorService executor;
+	private final Map<Orphan, Long> reclaimed;
+
+	public ChunkDataCleaner(ManagedDatasource db, Logger logger, CleanupSettings settings) {
+		this.db = db;
+		this.logger = logger;
+		this.settings = settings;
+		this.reclaimed = new EnumMap<>(Orphan.class);
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "CivModCore Chunk Data Cleaner");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public void start() {
+		if (settings.isEnabled()) {
+			executor.scheduleWithFixedDelay(this::sweep, settings.interval(), settings.interval(),
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return Rows deleted so far per kind, or found in dry run mode during the
+	 *         last sweep
+	 */
+	public synchronized Map<Orphan, Long> getReclaimed() {
+		return new EnumMap<>(reclaimed);
+	}
+
+	private void sweep() {
+		try {
+			for (Orphan orphan : Orphan.values()) {
+				if (orphan == Orphan.STALE_PLUGIN && settings.stalePluginDays() <= 0) {
+					continue;
+				}
+				if (settings.dryRun()) {
+					long count = count(orphan);
+					synchronized (this) {
+						reclaimed.put(orphan, count);
+					}
+					if (count > 0) {
+						logger.info("Chunk data cleanup (dry run) would delete " + count + " rows of kind " + orphan);
+					}
+					continue;
+				}
+				long deleted = delete(orphan);
+				if (deleted > 0) {
+					synchronized (this) {
+						reclaimed.merge(orphan, deleted, Long::sum);
+					}
+					logger.info("Chunk data cleanup deleted " + deleted + " rows of kind " + orphan);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (SQLException e) {
+			logger.log(Level.WARNING, "Chunk data cleanup failed, retrying next interval", e);
+		}
+	}
+
+	private long count(Orphan orphan) throws SQLException {
+		try (Connection conn = db.getReadConnection();
+				PreparedStatement count = conn
+						.prepareStatement("select count(*) from cmc_chunk_data where " + orphan.condition + ";")) {
+			bind(count, orphan);
+			try (ResultSet rs = count.executeQuery()) {
+				return rs.next() ? rs.getLong(1) : 0;
+			}
+		}
+	}
+
+	private long delete(Orphan orphan) throws SQLException, InterruptedException {
+		long total = 0;
+		try (Connection conn = db.getConnection();
+				PreparedStatement delete = conn.prepareStatement(
+						"delete from cmc_chunk_data where " + orphan.condition + " limit ?;")) {
+			while (true) {
+				waitForLowLoad();
+				int index = bind(delete, orphan);
+				delete.setInt(index, settings.batchSize());
+				int deleted = delete.executeUpdate();
+				total += deleted;
+				if (deleted < settings.batchSize()) {
+					return total;
+				}
+				Thread.sleep(settings.batchDelay());
+			}
+		}
+	}
+
+	/**
+	 * @return Index of the next unbound parameter
+	 */
+	private int bind(PreparedStatement statement, Orphan orphan) throws SQLException {
+		if (orphan == Orphan.STALE_PLUGIN) {
+			statement.setInt(1, settings.stalePluginDays());
+			return 2;
+		}
+		return 1;
+	}
+
+	private void waitForLowLoad() throws InterruptedException {
+		while (Bukkit.getTPS()[0] < settings.minTps()) {
+			Thread.sleep(LOAD_CHECK_INTERVAL);
+		}
+	}
+
+}
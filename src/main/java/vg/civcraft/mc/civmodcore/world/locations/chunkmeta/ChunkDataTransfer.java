@@ -0,0 +1,532 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+import vg.civcraft.mc.civmodcore.world.locations.global.CMCWorldDAO;
+
+/**
+ * Exports the rows of cmc_chunk_data into binary files and imports them back,
+ * to move chunk data between servers or to rebuild it. Exports write one file
+ * per region of 32x32 chunks from a pool of workers, along with a manifest
+ * holding the checksum and row count of each file and the worlds and plugins
+ * the rows belong to. Imports verify every file against its checksum before
+ * inserting any of its rows in batches and map worlds and plugins to their ids
+ * on the importing server. Each file is imported in a single transaction, so a
+ * file failing to import leaves none of its rows behind, while the files
+ * imported before it stay. Rows are inserted through batched statements rather
+ * than LOAD DATA, which needs local infile loading enabled on the driver.
+ *
+ * Only data in cmc_chunk_data is covered, which is the data of auto storage
+ * engines. Data held in memory is not, so flush it before exporting. Imported
+ * data is only seen in chunks loaded after the import, so import while the
+ * plugins owning the data are not running
+ */
+public class ChunkDataTransfer {
+
+	public static final int DEFAULT_THREADS = 4;
+	private static final String MANIFEST_FILE = "manifest.txt";
+	private static final String FILE_SUFFIX = ".cmcd";
+	private static final int MAGIC = 0x434D4344;
+	private static final int VERSION = 1;
+	private static final int REGION_SIZE = 32;
+	private static final int INSERT_BATCH_SIZE = 1000;
+	private static final int PROGRESS_INTERVAL = 100;
+	private static final String INSERT_DATA = "insert into cmc_chunk_data (chunk_x, chunk_z, world_id, plugin_id, "
+			+ "x_offset, y, z_offset, data) values(?,?,?,?,?,?,?,?) on duplicate key update data = values(data);";
+
+	private final ManagedDatasource db;
+	private final CMCWorldDAO dao;
+	private final Logger logger;
+	private final int threads;
+
+	public ChunkDataTransfer(ManagedDatasource db, CMCWorldDAO dao, Logger logger, int threads) {
+		this.db = db;
+		this.dao = dao;
+		this.logger = logger;
+		this.threads = threads;
+	}
+
+	/**
+	 * Outcome of an export or import
+	 *
+	 * @param rows     Rows exported or imported
+	 * @param files    Files written or read successfully
+	 * @param bytes    Size of those files in bytes
+	 * @param millis   How long the transfer took in milliseconds
+	 * @param failures Description of each file which failed
+	 */
+	public record Result(long rows, int files, long bytes, long millis, List<String> failures) {
+
+		public long getRowsPerSecond() {
+			return rows * 1000 / Math.max(1, millis);
+		}
+
+		public boolean isSuccess() {
+			return failures.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,d rows in %,d files (%,d KiB) in %,d ms, %,d rows/s%s", rows, files, bytes / 1024,
+					millis, getRowsPerSecond(), failures.isEmpty() ? "" : ", " + failures.size() + " failures");
+		}
+
+	}
+
+	private record Region(short worldID, int x, int z) {
+
+		private String getFileName() {
+			return worldID + "." + x + "." + z + FILE_SUFFIX;
+		}
+
+	}
+
+	private record FileSummary(String name, long rows, long bytes, long checksum) {
+	}
+
+	/**
+	 * Exports chunk data into the given directory, which should be empty
+	 *
+	 * @param directory Directory to write the files to
+	 * @param pluginID  Internal id of the plugin to export data of, null for all
+	 * @param worldID   Internal id of the world to export data of, null for all
+	 * @return Outcome of the export
+	 */
+	public Result exportData(File directory, Short pluginID, Short worldID) throws SQLException, IOException {
+		long start = System.currentTimeMillis();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		List<Region> regions = getRegions(pluginID, worldID);
+		logger.info("Exporting chunk data of " + regions.size() + " regions to " + directory);
+		AtomicInteger done = new AtomicInteger();
+		List<Future<FileSummary>> futures = new ArrayList<>(regions.size());
+		ExecutorService pool = createPool("Export");
+		try {
+			for (Region region : regions) {
+				futures.add(pool.submit(() -> {
+					FileSummary summary = exportRegion(new File(directory, region.getFileName()), region, pluginID);
+					logProgress("Exported", done.incrementAndGet(), regions.size());
+					return summary;
+				}));
+			}
+			List<FileSummary> summaries = new ArrayList<>(regions.size());
+			List<String> failures = new ArrayList<>();
+			collect(futures, regions, summaries, failures);
+			writeManifest(new File(directory, MANIFEST_FILE), pluginID, summaries);
+			Result result = summarize(summaries, failures, start);
+			logger.info("Exported chunk data: " + result);
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Imports chunk data previously exported into the given directory. Rows which
+	 * already exist are overwritten
+	 *
+	 * @param directory Directory holding the export
+	 * @return Outcome of the import, counting only the rows of files which were
+	 *         committed. Files which failed are listed and left no rows behind
+	 */
+	public Result importData(File directory) throws SQLException, IOException {
+		long start = System.currentTimeMillis();
+		Map<Short, Short> worldIDs = new HashMap<>();
+		Map<Short, Short> pluginIDs = new HashMap<>();
+		List<FileSummary> expected = readManifest(new File(directory, MANIFEST_FILE), worldIDs, pluginIDs);
+		logger.info("Importing chunk data from " + expected.size() + " files in " + directory);
+		AtomicInteger done = new AtomicInteger();
+		List<Future<FileSummary>> futures = new ArrayList<>(expected.size());
+		ExecutorService pool = createPool("Import");
+		try {
+			for (FileSummary file : expected) {
+				futures.add(pool.submit(() -> {
+					FileSummary summary = importFile(new File(directory, file.name()), file, worldIDs, pluginIDs);
+					logProgress("Imported", done.incrementAndGet(), expected.size());
+					return summary;
+				}));
+			}
+			List<FileSummary> summaries = new ArrayList<>(expected.size());
+			List<String> failures = new ArrayList<>();
+			collect(futures, expected, summaries, failures);
+			Result result = summarize(summaries, failures, start);
+			logger.info("Imported chunk data: " + result);
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Looks up the internal id of a plugin without registering it
+	 *
+	 * @param name Identifier the plugin registered its data with
+	 * @return Internal id of the plugin, null if it never registered
+	 */
+	public Short findPluginID(String name) throws SQLException {
+		try (Connection conn = db.getReadConnection();
+				PreparedStatement statement = conn.prepareStatement("select id from cmc_plugins where name = ?;")) {
+			statement.setString(1, name);
+			try (ResultSet rs = statement.executeQuery()) {
+				return rs.next() ? rs.getShort(1) : null;
+			}
+		}
+	}
+
+	private List<Region> getRegions(Short pluginID, Short worldID) throws SQLException {
+		List<Region> regions = new ArrayList<>();
+		try (Connection conn = db.getReadConnection();
+				PreparedStatement statement = conn.prepareStatement("select distinct world_id, floor(chunk_x / "
+						+ REGION_SIZE + "), floor(chunk_z / " + REGION_SIZE + ") from cmc_chunk_data"
+						+ getFilter(pluginID, worldID) + ";")) {
+			bindFilter(statement, 1, pluginID, worldID);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					regions.add(new Region(rs.getShort(1), rs.getInt(2), rs.getInt(3)));
+				}
+			}
+		}
+		return regions;
+	}
+
+	private FileSummary exportRegion(File file, Region region, Short pluginID) throws SQLException, IOException {
+		int minX = region.x() * REGION_SIZE;
+		int minZ = region.z() * REGION_SIZE;
+		CRC32 crc = new CRC32();
+		long rows;
+		try (OutputStream raw = new BufferedOutputStream(new FileOutputStream(file));
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeShort(region.worldID());
+			rows = db.stream("select plugin_id, chunk_x, chunk_z, x_offset, y, z_offset, data from cmc_chunk_data "
+					+ "where world_id = ? and chunk_x between ? and ? and chunk_z between ? and ?"
+					+ (pluginID == null ? "" : " and plugin_id = ?") + ";", rs -> {
+						try {
+							out.writeBoolean(true);
+							out.writeShort(rs.getShort(1));
+							out.writeInt(rs.getInt(2));
+							out.writeInt(rs.getInt(3));
+							out.writeByte(rs.getByte(4));
+							out.writeShort(rs.getShort(5));
+							out.writeByte(rs.getByte(6));
+							byte[] data = rs.getString(7).getBytes(StandardCharsets.UTF_8);
+							out.writeInt(data.length);
+							out.write(data);
+						} catch (IOException e) {
+							throw new SQLException("Failed to write " + file, e);
+						}
+						return null;
+					}).bind(statement -> {
+						statement.setShort(1, region.worldID());
+						statement.setInt(2, minX);
+						statement.setInt(3, minX + REGION_SIZE - 1);
+						statement.setInt(4, minZ);
+						statement.setInt(5, minZ + REGION_SIZE - 1);
+						if (pluginID != null) {
+							statement.setShort(6, pluginID);
+						}
+					}).forEach(row -> {
+					});
+			out.writeBoolean(false);
+			out.writeLong(rows);
+			out.flush();
+			// the checksum itself is written past the checked stream
+			new DataOutputStream(raw).writeLong(crc.getValue());
+		}
+		return new FileSummary(file.getName(), rows, file.length(), crc.getValue());
+	}
+
+	private FileSummary importFile(File file, FileSummary expected, Map<Short, Short> worldIDs,
+			Map<Short, Short> pluginIDs) throws SQLException, IOException {
+		// verify everything first, so a damaged file is not partially imported
+		readFile(file, expected, null);
+		long rows;
+		try (Connection conn = db.getConnection();
+				PreparedStatement insert = conn.prepareStatement(INSERT_DATA)) {
+			conn.setAutoCommit(false);
+			try {
+				BatchInserter inserter = new BatchInserter(insert, worldIDs, pluginIDs);
+				rows = readFile(file, expected, inserter);
+				inserter.flush();
+				conn.commit();
+			} catch (SQLException | IOException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		}
+		return new FileSummary(file.getName(), rows, file.length(), expected.checksum());
+	}
+
+	/**
+	 * Inserts rows in batches, all within the transaction of the file being
+	 * imported, which is committed once the whole file is inserted
+	 */
+	private static final class BatchInserter implements RowConsumer {
+
+		private final PreparedStatement insert;
+		private final Map<Short, Short> worldIDs;
+		private final Map<Short, Short> pluginIDs;
+		private int batched;
+
+		private BatchInserter(PreparedStatement insert, Map<Short, Short> worldIDs, Map<Short, Short> pluginIDs) {
+			this.insert = insert;
+			this.worldIDs = worldIDs;
+			this.pluginIDs = pluginIDs;
+		}
+
+		@Override
+		public void accept(short worldID, short pluginID, int chunkX, int chunkZ, byte xOffset, short y,
+				byte zOffset, String data) throws SQLException {
+			insert.setInt(1, chunkX);
+			insert.setInt(2, chunkZ);
+			insert.setShort(3, map(worldIDs, worldID, "world"));
+			insert.setShort(4, map(pluginIDs, pluginID, "plugin"));
+			insert.setByte(5, xOffset);
+			insert.setShort(6, y);
+			insert.setByte(7, zOffset);
+			insert.setString(8, data);
+			insert.addBatch();
+			if (++batched >= INSERT_BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		private void flush() throws SQLException {
+			if (batched > 0) {
+				insert.executeBatch();
+				batched = 0;
+			}
+		}
+
+	}
+
+	@FunctionalInterface
+	private interface RowConsumer {
+		void accept(short worldID, short pluginID, int chunkX, int chunkZ, byte xOffset, short y, byte zOffset,
+				String data) throws SQLException;
+	}
+
+	/**
+	 * Reads an exported file, verifying its structure and checksum
+	 *
+	 * @param consumer Consumer for the rows read, null to only verify the file
+	 * @return Rows read
+	 */
+	private long readFile(File file, FileSummary expected, RowConsumer consumer) throws SQLException, IOException {
+		CRC32 crc = new CRC32();
+		try (InputStream raw = new BufferedInputStream(new FileInputStream(file));
+				DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file.getName() + " is not a chunk data export");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException(file.getName() + " has unsupported version " + version);
+			}
+			short worldID = in.readShort();
+			long rows = 0;
+			while (in.readBoolean()) {
+				short pluginID = in.readShort();
+				int chunkX = in.readInt();
+				int chunkZ = in.readInt();
+				byte xOffset = in.readByte();
+				short y = in.readShort();
+				byte zOffset = in.readByte();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				rows++;
+				if (consumer != null) {
+					consumer.accept(worldID, pluginID, chunkX, chunkZ, xOffset, y, zOffset,
+							new String(data, StandardCharsets.UTF_8));
+				}
+			}
+			if (in.readLong() != rows) {
+				throw new IOException(file.getName() + " is truncated");
+			}
+			long checksum = crc.getValue();
+			if (new DataInputStream(raw).readLong() != checksum || checksum != expected.checksum()
+					|| rows != expected.rows()) {
+				throw new IOException(file.getName() + " does not match its checksum");
+			}
+			return rows;
+		} catch (EOFException e) {
+			throw new IOException(file.getName() + " is truncated", e);
+		}
+	}
+
+	private static short map(Map<Short, Short> ids, short id, String kind) throws SQLException {
+		Short mapped = ids.get(id);
+		if (mapped == null) {
+			throw new SQLException("Unknown " + kind + " id " + id + " not listed in the manifest");
+		}
+		return mapped;
+	}
+
+	private void writeManifest(File file, Short pluginID, List<FileSummary> summaries) throws SQLException,
+			IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("version\t" + VERSION);
+		try (Connection conn = db.getReadConnection()) {
+			try (PreparedStatement statement = conn.prepareStatement("select id, uuid, name from cmc_worlds;");
+					ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					lines.add("world\t" + rs.getShort(1) + "\t" + rs.getString(2) + "\t" + rs.getString(3));
+				}
+			}
+			try (PreparedStatement statement = conn.prepareStatement("select id, name from cmc_plugins"
+					+ (pluginID == null ? "" : " where id = ?") + ";")) {
+				if (pluginID != null) {
+					statement.setShort(1, pluginID);
+				}
+				try (ResultSet rs = statement.executeQuery()) {
+					while (rs.next()) {
+						lines.add("plugin\t" + rs.getShort(1) + "\t" + rs.getString(2));
+					}
+				}
+			}
+		}
+		for (FileSummary summary : summaries) {
+			lines.add("file\t" + summary.name() + "\t" + summary.rows() + "\t" + Long.toHexString(summary.checksum()));
+		}
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+	}
+
+	private List<FileSummary> readManifest(File file, Map<Short, Short> worldIDs, Map<Short, Short> pluginIDs)
+			throws IOException {
+		if (!file.isFile()) {
+			throw new IOException("No export found in " + file.getParentFile());
+		}
+		List<FileSummary> files = new ArrayList<>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			String[] parts = line.split("\t");
+			switch (parts[0]) {
+			case "version":
+				if (Integer.parseInt(parts[1]) != VERSION) {
+					throw new IOException("Unsupported export version " + parts[1]);
+				}
+				break;
+			case "world":
+				short worldID = dao.getOrCreateWorldID(UUID.fromString(parts[2]), parts.length > 3 ? parts[3] : "");
+				if (worldID == -1) {
+					throw new IOException("Could not register world " + parts[2]);
+				}
+				worldIDs.put(Short.parseShort(parts[1]), worldID);
+				break;
+			case "plugin":
+				short pluginID = dao.getOrCreatePluginID(parts[2]);
+				if (pluginID == -1) {
+					throw new IOException("Could not register plugin " + parts[2]);
+				}
+				pluginIDs.put(Short.parseShort(parts[1]), pluginID);
+				break;
+			case "file":
+				files.add(new FileSummary(parts[1], Long.parseLong(parts[2]), 0, Long.parseUnsignedLong(parts[3], 16)));
+				break;
+			default:
+				throw new IOException("Malformed manifest line: " + line);
+			}
+		}
+		return files;
+	}
+
+	private String getFilter(Short pluginID, Short worldID) {
+		if (pluginID == null && worldID == null) {
+			return "";
+		}
+		if (pluginID == null) {
+			return " where world_id = ?";
+		}
+		if (worldID == null) {
+			return " where plugin_id = ?";
+		}
+		return " where plugin_id = ? and world_id = ?";
+	}
+
+	private void bindFilter(PreparedStatement statement, int index, Short pluginID, Short worldID)
+			throws SQLException {
+		if (pluginID != null) {
+			statement.setShort(index++, pluginID);
+		}
+		if (worldID != null) {
+			statement.setShort(index, worldID);
+		}
+	}
+
+	private ExecutorService createPool(String kind) {
+		AtomicInteger counter = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "CivModCore Chunk Data " + kind + " " + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private void logProgress(String action, int done, int total) {
+		if (done % PROGRESS_INTERVAL == 0) {
+			logger.info(action + " " + done + " of " + total + " chunk data files");
+		}
+	}
+
+	private <T> void collect(List<Future<FileSummary>> futures, List<T> sources, List<FileSummary> summaries,
+			List<String> failures) throws IOException {
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				summaries.add(futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while transferring chunk data", e);
+			} catch (ExecutionException e) {
+				String failure = sources.get(i) + ": " + e.getCause();
+				logger.severe("Failed to transfer chunk data of " + failure);
+				failures.add(failure);
+			}
+		}
+	}
+
+	private static Result summarize(List<FileSummary> summaries, List<String> failures, long start) {
+		long rows = 0;
+		long bytes = 0;
+		for (FileSummary summary : summaries) {
+			rows += summary.rows();
+			bytes += summary.bytes();
+		}
+		return new Result(rows, summaries.size(), bytes, System.currentTimeMillis() - start,
+				Collections.unmodifiableList(failures));
+	}
+
+}
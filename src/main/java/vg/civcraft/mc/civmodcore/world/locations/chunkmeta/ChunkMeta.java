@@ -15,12 +15,25 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.StorageEngine;
  */
 public abstract class ChunkMeta<S extends StorageEngine> {
 
+	private static final long DEFAULT_ESTIMATED_SIZE = 256L;
+
 	protected short pluginID;
 	protected World world;
 	protected final S storage;
 	protected ChunkCoord chunkCoord;
 
 	private CacheState cacheState;
+	/**
+	 * When this instance was first changed since it was last persisted as UNIX
+	 * timestamp, -1 if it has no unpersisted changes
+	 */
+	private volatile long dirtySince;
+	/**
+	 * State and age of the changes taken for writing, null while no write is in
+	 * progress
+	 */
+	private CacheState writingState;
+	private long writingDirtySince;
 
 	/**
 	 * 
@@ -30,6 +43,7 @@ public abstract class ChunkMeta<S extends StorageEngine> {
 	 */
 	public ChunkMeta(boolean isNew, S storage) {
 		this.cacheState = isNew ? CacheState.NEW : CacheState.NORMAL;
+		this.dirtySince = isNew ? System.currentTimeMillis() : -1;
 		this.storage = storage;
 	}
 
@@ -88,6 +102,26 @@ public abstract class ChunkMeta<S extends StorageEngine> {
 	 */
 	public abstract boolean isEmpty();
 
+	/**
+	 * Estimates how much heap this instance retains, used to budget the memory
+	 * spent on keeping data of unloaded chunks around. Subclasses holding a
+	 * variable amount of data should override this with a cheap estimate, it is
+	 * called frequently
+	 * 
+	 * @return Estimated retained size in bytes
+	 */
+	public long getEstimatedSize() {
+		return DEFAULT_ESTIMATED_SIZE;
+	}
+
+	/**
+	 * @return How many entries this instance holds, for memory accounting. 1 by
+	 *         default, subclasses holding several entries should override this
+	 */
+	public int getEntryCount() {
+		return 1;
+	}
+
 	/**
 	 * Loads this instances data from the storage engine
 	 * 
@@ -100,8 +134,136 @@ public abstract class ChunkMeta<S extends StorageEngine> {
 	 * 
 	 * @param state New dirty state
 	 */
-	public void setCacheState(CacheState state) {
+	public synchronized void setCacheState(CacheState state) {
 		this.cacheState = this.cacheState.progress(state);
+		if (this.cacheState == CacheState.NORMAL) {
+			this.dirtySince = -1;
+		} else if (this.dirtySince == -1) {
+			this.dirtySince = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @return When this instance was first changed since it was last persisted as
+	 *         UNIX timestamp, -1 if it has no unpersisted changes
+	 */
+	long getDirtySince() {
+		return dirtySince;
+	}
+
+	/**
+	 * Takes the changes of this instance for writing them to the database through
+	 * {@link #writeChanges()}, after which this instance counts as unchanged. Any
+	 * change made from here on marks it dirty again and is left for the next write.
+	 * Must be called from the main thread, unless the chunk is not loaded
+	 * 
+	 * @return Whether there are changes to write. False as well while changes taken
+	 *         earlier are still being written, the new ones are taken once that is
+	 *         done
+	 */
+	synchronized boolean prepareWrite() {
+		if (this.writingState != null || this.cacheState == CacheState.NORMAL) {
+			return false;
+		}
+		this.writingState = this.cacheState;
+		this.writingDirtySince = this.dirtySince;
+		this.cacheState = CacheState.NORMAL;
+		this.dirtySince = -1;
+		takeChanges();
+		return true;
+	}
+
+	/**
+	 * Writes the changes taken by {@link #prepareWrite()} to the database. May be
+	 * called from any thread
+	 */
+	void writeChanges() {
+		boolean written = false;
+		try {
+			switch (this.writingState) {
+			case MODIFIED:
+				update();
+				break;
+			case NEW:
+				insert();
+				break;
+			case DELETED:
+				delete();
+				break;
+			default:
+				break;
+			}
+			written = true;
+		} finally {
+			finishWrite(written);
+		}
+	}
+
+	/**
+	 * Spills the changes taken by {@link #prepareWrite()} instead of writing them,
+	 * see {@link #spill()}
+	 * 
+	 * @return Whether the changes were spilled, they are kept otherwise
+	 */
+	boolean spillChanges() {
+		boolean spilled = false;
+		try {
+			spilled = spill();
+		} finally {
+			finishWrite(spilled);
+		}
+		return spilled;
+	}
+
+	/**
+	 * Gives back the changes taken by {@link #prepareWrite()} without writing them,
+	 * so they are written next time
+	 */
+	void abortWrite() {
+		finishWrite(false);
+	}
+
+	private synchronized void finishWrite(boolean written) {
+		if (!written) {
+			restoreChanges();
+			this.cacheState = this.cacheState == CacheState.NORMAL ? this.writingState
+					: this.writingState.progress(this.cacheState);
+			if (this.cacheState != CacheState.NORMAL) {
+				this.dirtySince = this.dirtySince == -1 ? this.writingDirtySince
+						: Math.min(this.dirtySince, this.writingDirtySince);
+			}
+		}
+		this.writingState = null;
+	}
+
+	/**
+	 * @return Whether changes taken by {@link #prepareWrite()} are being written
+	 */
+	synchronized boolean isWriting() {
+		return this.writingState != null;
+	}
+
+	/**
+	 * Called while this instance is locked when its changes are taken for writing,
+	 * see {@link #prepareWrite()}. Implementations tracking changes per entry should
+	 * move the changes made so far aside here, so {@link #insert()},
+	 * {@link #update()}, {@link #delete()} and {@link #spill()} only write those,
+	 * while changes made in the mean time are left for the next write. Runs on the
+	 * main thread, unlike the writing itself. No op by default, in which case the
+	 * current data is written
+	 */
+	protected void takeChanges() {
+		// NO OP by default
+	}
+
+	/**
+	 * Called while this instance is locked when the changes moved aside by
+	 * {@link #takeChanges()} were not written after all, for example because the
+	 * server shut down before getting to it. Implementations should add those
+	 * changes back, so they are taken again by the next write. No op by default
+	 */
+	protected void restoreChanges() {
+		// NO OP by default
 	}
 
 	void setChunkCoord(ChunkCoord chunk) {
@@ -145,6 +307,19 @@ public abstract class ChunkMeta<S extends StorageEngine> {
 		//NO OP by default
 	}
 	
+	/**
+	 * Called on shutdown when there is no time left to write the changes of this
+	 * instance to the database, instead of {@link #insert()} or {@link #update()}.
+	 * Implementations able to preserve their changes some other way, for example in
+	 * a local file which is replayed into the database on the next start, should do
+	 * so and return true
+	 * 
+	 * @return Whether the changes were preserved, false by default
+	 */
+	public boolean spill() {
+		return false;
+	}
+
 	/**
 	 * Called when the chunk this data is in is unloaded. No data has been written the to DB at this point
 	 */
@@ -152,4 +327,12 @@ public abstract class ChunkMeta<S extends StorageEngine> {
 		//NO OP by default
 	}
 
+	/**
+	 * Called when this instance is dropped from memory, after its data was written
+	 * to the database
+	 */
+	public void handleEviction() {
+		//NO OP by default
+	}
+
 }
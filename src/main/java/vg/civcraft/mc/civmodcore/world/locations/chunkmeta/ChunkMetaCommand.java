@@ -0,0 +1,176 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import co.aikar.commands.BaseCommand;
+import co.aikar.commands.annotation.CommandAlias;
+import co.aikar.commands.annotation.CommandPermission;
+import co.aikar.commands.annotation.Description;
+import co.aikar.commands.annotation.Optional;
+import co.aikar.commands.annotation.Subcommand;
+import co.aikar.commands.annotation.Syntax;
+import java.io.File;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaView;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaViewTracker;
+import vg.civcraft.mc.civmodcore.world.locations.global.WorldIDManager;
+
+@CommandAlias("chunkmeta")
+@CommandPermission("cmc.debug")
+public final class ChunkMetaCommand extends BaseCommand {
+
+	private static final Pattern EXPORT_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+	@Subcommand("memory")
+	@Description("Shows the estimated memory used by chunk metadata per plugin and world")
+	public void showMemory(final CommandSender sender) {
+		final CivModCorePlugin plugin = CivModCorePlugin.getInstance();
+		final GlobalChunkMetaManager manager = plugin.getChunkMetaManager();
+		if (manager == null) {
+			sender.sendMessage(ChatColor.RED + "Chunk metadata is not available, is the database set up?");
+			return;
+		}
+		final ChunkMetaMemorySnapshot snapshot = manager.getMemorySnapshot();
+		sender.sendMessage(ChatColor.GOLD + "Chunk metadata memory: " + format(snapshot.getTotal()));
+		for (final Map.Entry<ChunkMetaMemorySnapshot.Residency, ChunkMetaMemorySnapshot.Usage> entry
+				: snapshot.getUsageByResidency().entrySet()) {
+			sender.sendMessage(ChatColor.GRAY + "  " + entry.getKey().name().toLowerCase() + ": "
+					+ format(entry.getValue()));
+		}
+		sender.sendMessage(ChatColor.GOLD + "Per plugin:");
+		for (final Map.Entry<Short, ChunkMetaMemorySnapshot.Usage> entry : snapshot.getUsageByPlugin().entrySet()) {
+			final ChunkMetaView<?> view = ChunkMetaViewTracker.getInstance().get(entry.getKey());
+			final String name = view == null ? "#" + entry.getKey() : view.getPlugin().getName();
+			sender.sendMessage(ChatColor.GRAY + "  " + name + ": " + format(entry.getValue()));
+		}
+		sender.sendMessage(ChatColor.GOLD + "Per world:");
+		final WorldIDManager worldIdManager = plugin.getWorldIdManager();
+		for (final Map.Entry<Short, ChunkMetaMemorySnapshot.Usage> entry : snapshot.getUsageByWorld().entrySet()) {
+			final World world = worldIdManager.getWorldByInternalID(entry.getKey());
+			final String name = world == null ? "#" + entry.getKey() : world.getName();
+			sender.sendMessage(ChatColor.GRAY + "  " + name + ": " + format(entry.getValue()));
+		}
+	}
+
+	@Subcommand("export")
+	@Description("Exports chunk data into files, optionally only of one plugin or world")
+	@Syntax("chunkmeta export <name> [plugin|*] [world]")
+	@CommandPermission("cmc.chunkmeta.transfer")
+	public void exportData(final CommandSender sender,
+						   final String name,
+						   @Optional final String pluginName,
+						   @Optional final String worldName) {
+		final CivModCorePlugin plugin = CivModCorePlugin.getInstance();
+		final GlobalChunkMetaManager manager = plugin.getChunkMetaManager();
+		if (manager == null) {
+			sender.sendMessage(ChatColor.RED + "Chunk metadata is not available, is the database set up?");
+			return;
+		}
+		final File directory = getExportDirectory(sender, name);
+		if (directory == null) {
+			return;
+		}
+		if (directory.exists()) {
+			sender.sendMessage(ChatColor.RED + "An export called " + name + " already exists");
+			return;
+		}
+		Short worldID = null;
+		if (worldName != null) {
+			final World world = Bukkit.getWorld(worldName);
+			if (world == null) {
+				sender.sendMessage(ChatColor.RED + "Unknown world " + worldName);
+				return;
+			}
+			worldID = plugin.getWorldIdManager().getInternalWorldId(world);
+		}
+		final Short finalWorldID = worldID;
+		final ChunkDataTransfer transfer = createTransfer(manager);
+		sender.sendMessage(ChatColor.GOLD + "Exporting chunk data, this may take a while");
+		// data in memory is not exported, so take its changes here on the main thread and write them out first. The
+		// plugin to export is only looked up afterwards, so the changes of all plugins are written
+		manager.flushAsync(null).whenComplete((ignored, failure) -> {
+			if (failure != null) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to save chunk data before exporting", failure);
+				reply(sender, ChatColor.RED + "Export failed: " + failure.getMessage());
+				return;
+			}
+			Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+				try {
+					Short pluginID = null;
+					if (pluginName != null && !pluginName.equals("*")) {
+						pluginID = transfer.findPluginID(pluginName);
+						if (pluginID == null) {
+							reply(sender, ChatColor.RED + "No chunk data registered for plugin " + pluginName);
+							return;
+						}
+					}
+					final ChunkDataTransfer.Result result = transfer.exportData(directory, pluginID, finalWorldID);
+					reply(sender, (result.isSuccess() ? ChatColor.GREEN : ChatColor.RED) + "Exported " + result);
+				} catch (final Exception exception) {
+					plugin.getLogger().log(Level.SEVERE, "Failed to export chunk data", exception);
+					reply(sender, ChatColor.RED + "Export failed: " + exception.getMessage());
+				}
+			});
+		});
+	}
+
+	@Subcommand("import")
+	@Description("Imports chunk data previously exported, overwriting existing data at the same locations")
+	@Syntax("chunkmeta import <name>")
+	@CommandPermission("cmc.chunkmeta.transfer")
+	public void importData(final CommandSender sender, final String name) {
+		final CivModCorePlugin plugin = CivModCorePlugin.getInstance();
+		final GlobalChunkMetaManager manager = plugin.getChunkMetaManager();
+		if (manager == null) {
+			sender.sendMessage(ChatColor.RED + "Chunk metadata is not available, is the database set up?");
+			return;
+		}
+		final File directory = getExportDirectory(sender, name);
+		if (directory == null) {
+			return;
+		}
+		if (!directory.isDirectory()) {
+			sender.sendMessage(ChatColor.RED + "No export called " + name + " exists");
+			return;
+		}
+		final ChunkDataTransfer transfer = createTransfer(manager);
+		sender.sendMessage(ChatColor.GOLD + "Importing chunk data, this may take a while");
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			try {
+				final ChunkDataTransfer.Result result = transfer.importData(directory);
+				reply(sender, (result.isSuccess() ? ChatColor.GREEN : ChatColor.RED) + "Imported " + result);
+			} catch (final Exception exception) {
+				plugin.getLogger().log(Level.SEVERE, "Failed to import chunk data", exception);
+				reply(sender, ChatColor.RED + "Import failed: " + exception.getMessage());
+			}
+		});
+	}
+
+	private static File getExportDirectory(final CommandSender sender, final String name) {
+		if (!EXPORT_NAME.matcher(name).matches()) {
+			sender.sendMessage(ChatColor.RED + "Export names may only contain letters, digits, - and _");
+			return null;
+		}
+		return new File(new File(CivModCorePlugin.getInstance().getDataFolder(), "chunkdata-exports"), name);
+	}
+
+	private static ChunkDataTransfer createTransfer(final GlobalChunkMetaManager manager) {
+		final CivModCorePlugin plugin = CivModCorePlugin.getInstance();
+		return new ChunkDataTransfer(plugin.getDatabase(), manager.getChunkDAO(), plugin.getLogger(),
+				ChunkDataTransfer.DEFAULT_THREADS);
+	}
+
+	private static void reply(final CommandSender sender, final String message) {
+		Bukkit.getScheduler().runTask(CivModCorePlugin.getInstance(), () -> sender.sendMessage(message));
+	}
+
+	private static String format(final ChunkMetaMemorySnapshot.Usage usage) {
+		return String.format("%,d entries, ~%,d KiB", usage.entries(), usage.bytes() / 1024);
+	}
+
+}
@@ -6,17 +6,19 @@ import org.bukkit.Chunk;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.world.ChunkLoadEvent;
-import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
-import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaViewTracker;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
 import vg.civcraft.mc.civmodcore.world.locations.global.WorldIDManager;
 
-public class ChunkMetaListener implements Listener {
+/**
+ * Loads and unloads chunk data as chunks load and unload. Chunk lifecycle
+ * callbacks are received through the {@link ChunkLifecycleDispatcher}, which
+ * calls this before anything else interested in the chunk
+ */
+public class ChunkMetaListener implements Listener, ChunkLifecycleDispatcher.Subscriber {
 
 	private final GlobalChunkMetaManager manager;
-	private final ChunkMetaViewTracker viewTracker;
 	// unloading is offloaded to another thread at this level, because it requires
 	// inserting the ChunkCoord into the unloading queue, which requires the
 	// executing thread to acquire the lock on the unloading queue. During unloading
@@ -27,9 +29,8 @@ public class ChunkMetaListener implements Listener {
 	private Thread unloadConsumer;
 	private final Queue<Chunk> unloadQueue;
 
-	public ChunkMetaListener(GlobalChunkMetaManager manager, ChunkMetaViewTracker viewTracker) {
+	public ChunkMetaListener(GlobalChunkMetaManager manager) {
 		this.manager = manager;
-		this.viewTracker = viewTracker;
 		this.unloadQueue = new LinkedBlockingQueue<>();
 		unloadConsumer = new Thread(() -> {
 			while (true) {
@@ -56,20 +57,22 @@ public class ChunkMetaListener implements Listener {
 		unloadConsumer.start();
 	}
 
-	// LOWEST = we go first
-	@EventHandler(priority = EventPriority.LOWEST)
-	public void chunkLoad(ChunkLoadEvent e) {
-		manager.loadChunkData(e.getChunk());
-		viewTracker.applyToAllSingleBlockViews(s -> s.handleChunkLoad(e.getChunk()));
+	@Override
+	public void onChunkLoad(Chunk chunk) {
+		manager.loadChunkData(chunk);
 	}
 
-	@EventHandler(priority = EventPriority.LOWEST)
-	public void chunkUnload(ChunkUnloadEvent e) {
+	@Override
+	public void onChunkUnload(Chunk chunk) {
 		synchronized (unloadQueue) {
-			unloadQueue.add(e.getChunk());
+			unloadQueue.add(chunk);
 			unloadQueue.notifyAll();
 		}
-		viewTracker.applyToAllSingleBlockViews(s -> s.handleChunkUnload(e.getChunk()));
+	}
+
+	@Override
+	public String getSubscriberName() {
+		return "Chunk meta";
 	}
 
 	@EventHandler(priority = EventPriority.LOWEST)
@@ -0,0 +1,111 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Estimated memory used by chunk metadata at one point in time, broken down by
+ * plugin, world and whether the data belongs to a loaded chunk, an unloaded
+ * chunk which is still cached, an unloaded but pinned chunk or the fallback
+ * tracker used for single blocks in unloaded chunks. Sizes are estimates as reported by
+ * {@link ChunkMeta#getEstimatedSize()}, good for comparing plugins and spotting
+ * growth, but not exact
+ */
+public final class ChunkMetaMemorySnapshot {
+
+	public enum Residency {
+		LOADED, UNLOADING, PINNED, FALLBACK
+	}
+
+	public record Key(short pluginID, short worldID, Residency residency) {
+	}
+
+	public record Usage(long entries, long bytes) {
+
+		public static final Usage NONE = new Usage(0, 0);
+
+		public Usage plus(Usage other) {
+			return new Usage(entries + other.entries, bytes + other.bytes);
+		}
+	}
+
+	private final long timestamp;
+	private final Map<Key, Usage> usage;
+
+	private ChunkMetaMemorySnapshot(long timestamp, Map<Key, Usage> usage) {
+		this.timestamp = timestamp;
+		this.usage = Collections.unmodifiableMap(usage);
+	}
+
+	/**
+	 * @return When this snapshot was taken as UNIX timestamp
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return Usage per plugin, world and residency
+	 */
+	public Map<Key, Usage> getUsage() {
+		return usage;
+	}
+
+	/**
+	 * @return Usage per internal plugin id, sorted by id
+	 */
+	public Map<Short, Usage> getUsageByPlugin() {
+		return sum(Key::pluginID);
+	}
+
+	/**
+	 * @return Usage per internal world id, sorted by id
+	 */
+	public Map<Short, Usage> getUsageByWorld() {
+		return sum(Key::worldID);
+	}
+
+	/**
+	 * @return Usage per residency
+	 */
+	public Map<Residency, Usage> getUsageByResidency() {
+		return sum(Key::residency);
+	}
+
+	public Usage getTotal() {
+		Usage total = Usage.NONE;
+		for (Usage value : usage.values()) {
+			total = total.plus(value);
+		}
+		return total;
+	}
+
+	private <K extends Comparable<K>> Map<K, Usage> sum(Function<Key, K> keyFunction) {
+		Map<K, Usage> result = new TreeMap<>();
+		for (Map.Entry<Key, Usage> entry : usage.entrySet()) {
+			result.merge(keyFunction.apply(entry.getKey()), entry.getValue(), Usage::plus);
+		}
+		return result;
+	}
+
+	static final class Builder {
+
+		private final Map<Key, long[]> usage = new HashMap<>();
+
+		void add(short pluginID, short worldID, Residency residency, long entries, long bytes) {
+			long[] values = usage.computeIfAbsent(new Key(pluginID, worldID, residency), k -> new long[2]);
+			values[0] += entries;
+			values[1] += bytes;
+		}
+
+		ChunkMetaMemorySnapshot build() {
+			Map<Key, Usage> result = new HashMap<>();
+			usage.forEach((key, values) -> result.put(key, new Usage(values[0], values[1])));
+			return new ChunkMetaMemorySnapshot(System.currentTimeMillis(), result);
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Changes made to the data of one chunk, taken on the main thread so they can be
+ * written to the database from another thread. Changes made after they were
+ * taken are left for the next write. Each instance is either written, spilled or
+ * aborted exactly once, by whichever thread claims it first
+ */
+final class ChunkWrite {
+
+	private final ChunkCoord coord;
+	private final List<ChunkMeta<?>> changed;
+	private final AtomicBoolean claimed;
+
+	private ChunkWrite(ChunkCoord coord, List<ChunkMeta<?>> changed) {
+		this.coord = coord;
+		this.changed = changed;
+		this.claimed = new AtomicBoolean();
+	}
+
+	/**
+	 * Takes the changes made to the data of the given chunk. Must be called from
+	 * the main thread
+	 *
+	 * @param coord    Chunk to take changes of
+	 * @param pluginID Internal id of the plugin to take changes of, null for all
+	 *                 plugins
+	 * @return Changes to write, null if there are none
+	 */
+	static ChunkWrite prepare(ChunkCoord coord, Short pluginID) {
+		List<ChunkMeta<?>> changed = coord.prepareWrite(pluginID);
+		return changed.isEmpty() ? null : new ChunkWrite(coord, changed);
+	}
+
+	ChunkCoord getCoord() {
+		return coord;
+	}
+
+	/**
+	 * Writes the changes to the database, unless they were claimed already
+	 *
+	 * @return Whether the changes were written by this call
+	 */
+	boolean write() {
+		if (!claimed.compareAndSet(false, true)) {
+			return false;
+		}
+		coord.write(changed);
+		return true;
+	}
+
+	/**
+	 * Spills the changes instead of writing them, unless they were claimed already,
+	 * see {@link ChunkMeta#spill()}
+	 *
+	 * @return How many chunk metas had changes which could not be spilled
+	 */
+	int spill() {
+		if (!claimed.compareAndSet(false, true)) {
+			return 0;
+		}
+		int failed = 0;
+		for (ChunkMeta<?> chunkMeta : changed) {
+			if (!chunkMeta.spillChanges()) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Gives the changes back without writing them, unless they were claimed
+	 * already, so they are taken again by the next write
+	 */
+	void abort() {
+		if (!claimed.compareAndSet(false, true)) {
+			return;
+		}
+		for (ChunkMeta<?> chunkMeta : changed) {
+			chunkMeta.abortWrite();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return coord.toString();
+	}
+
+}
@@ -0,0 +1,49 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings for the background cleanup of chunk data rows which are no longer
+ * of use to anyone
+ *
+ * @param interval        How often to look for rows to clean up in
+ *                        milliseconds, 0 or less to disable the cleanup
+ * @param batchSize       Maximum amount of rows deleted per query
+ * @param batchDelay      Pause between two batches in milliseconds
+ * @param minTps          Only clean up while the server runs at least at this
+ *                        many ticks per second
+ * @param stalePluginDays After how many days without a plugin registering
+ *                        its data is considered abandoned, 0 or less to never
+ *                        consider data abandoned
+ * @param dryRun          Only count the rows which would be deleted, without
+ *                        deleting them
+ */
+public record CleanupSettings(long interval, int batchSize, long batchDelay, double minTps, int stalePluginDays,
+		boolean dryRun) {
+
+	public static final CleanupSettings DEFAULT = new CleanupSettings(3_600_000L, 500, 1_000L, 19.0, 0, true);
+
+	public boolean isEnabled() {
+		return interval > 0 && batchSize > 0;
+	}
+
+	/**
+	 * Parses cleanup settings from the given config section, using defaults for
+	 * anything not specified
+	 *
+	 * @param section Section to parse, may be null
+	 * @return Parsed settings
+	 */
+	public static CleanupSettings fromConfig(ConfigurationSection section) {
+		if (section == null) {
+			return DEFAULT;
+		}
+		return new CleanupSettings(section.getLong("interval", DEFAULT.interval()),
+				section.getInt("batch_size", DEFAULT.batchSize()),
+				section.getLong("batch_delay", DEFAULT.batchDelay()),
+				section.getDouble("min_tps", DEFAULT.minTps()),
+				section.getInt("stale_plugin_days", DEFAULT.stalePluginDays()),
+				section.getBoolean("dry_run", DEFAULT.dryRun()));
+	}
+
+}
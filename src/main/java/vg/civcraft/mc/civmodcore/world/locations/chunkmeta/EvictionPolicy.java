@@ -0,0 +1,93 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides how long data of unloaded chunks is kept in memory across all worlds,
+ * based on the estimated size of that data and on how full the heap is
+ */
+class EvictionPolicy {
+
+	/**
+	 * Below this pressure data is kept for the maximum retention, above it the
+	 * retention shrinks linearly until it reaches the minimum at a pressure of 1
+	 */
+	private static final double RELAXED_PRESSURE = 0.5;
+
+	private final EvictionSettings settings;
+	private final Map<Short, Long> cachedPerWorld;
+
+	EvictionPolicy(EvictionSettings settings) {
+		this.settings = settings;
+		this.cachedPerWorld = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Updates how much memory the data of unloaded chunks of a world takes up
+	 * 
+	 * @param worldID     Internal id of the world
+	 * @param cachedBytes Estimated size of the world's unloaded chunk data
+	 */
+	void report(short worldID, long cachedBytes) {
+		cachedPerWorld.put(worldID, cachedBytes);
+	}
+
+	/**
+	 * @return Estimated size of the data of unloaded chunks across all worlds
+	 */
+	long getCachedBytes() {
+		long total = 0;
+		for (long bytes : cachedPerWorld.values()) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	/**
+	 * @return How tight memory is, 1 or more meaning either the memory budget or
+	 *         the heap threshold are exceeded
+	 */
+	double getPressure() {
+		Runtime runtime = Runtime.getRuntime();
+		double heapUsage = (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+		double budgetUsage = settings.memoryBudget() > 0 ? (double) getCachedBytes() / settings.memoryBudget() : 0;
+		return Math.max(budgetUsage, heapUsage / settings.heapThreshold());
+	}
+
+	/**
+	 * @return How long in milliseconds data of unloaded chunks should currently be
+	 *         kept
+	 */
+	long getRetention() {
+		double pressure = getPressure();
+		if (pressure <= RELAXED_PRESSURE) {
+			return settings.maxRetention();
+		}
+		if (pressure >= 1) {
+			return settings.minRetention();
+		}
+		double tightness = (pressure - RELAXED_PRESSURE) / (1 - RELAXED_PRESSURE);
+		return settings.maxRetention()
+				- (long) ((settings.maxRetention() - settings.minRetention()) * tightness);
+	}
+
+	/**
+	 * @param worldID Internal id of the world
+	 * @return How many bytes of unloaded chunk data the given world should drop
+	 *         right away to get back under the memory budget, proportional to its
+	 *         share of all unloaded chunk data
+	 */
+	long getExcess(short worldID) {
+		if (settings.memoryBudget() <= 0) {
+			return 0;
+		}
+		long total = getCachedBytes();
+		if (total <= settings.memoryBudget()) {
+			return 0;
+		}
+		long worldBytes = cachedPerWorld.getOrDefault(worldID, 0L);
+		return (long) ((double) (total - settings.memoryBudget()) * worldBytes / total);
+	}
+
+}
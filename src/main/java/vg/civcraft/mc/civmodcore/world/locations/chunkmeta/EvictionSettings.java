@@ -0,0 +1,43 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings for how long data of unloaded chunks is kept in memory, in case the
+ * chunk is loaded again soon. Data is kept for longer while there is memory to
+ * spare and for shorter once memory runs low
+ *
+ * @param minRetention  How long in milliseconds data is kept while memory is
+ *                      tight
+ * @param maxRetention  How long in milliseconds data is kept while memory is
+ *                      plentiful
+ * @param memoryBudget  How many bytes the data of unloaded chunks may take up in
+ *                      total, as estimated. Once exceeded, the data of chunks
+ *                      unloaded longest ago is dropped right away
+ * @param heapThreshold Share of the maximum heap above which memory is
+ *                      considered tight
+ */
+public record EvictionSettings(long minRetention, long maxRetention, long memoryBudget, double heapThreshold) {
+
+	public static final EvictionSettings DEFAULT = new EvictionSettings(30_000L, 15L * 60L * 1000L,
+			256L * 1024L * 1024L, 0.85);
+
+	/**
+	 * Parses eviction settings from the given config section, using defaults for
+	 * anything not specified
+	 *
+	 * @param section Section to parse, may be null
+	 * @return Parsed settings
+	 */
+	public static EvictionSettings fromConfig(ConfigurationSection section) {
+		if (section == null) {
+			return DEFAULT;
+		}
+		long minRetention = section.getLong("min_retention", DEFAULT.minRetention());
+		return new EvictionSettings(minRetention,
+				Math.max(minRetention, section.getLong("max_retention", DEFAULT.maxRetention())),
+				section.getLong("memory_budget_mb", DEFAULT.memoryBudget() / 1024L / 1024L) * 1024L * 1024L,
+				section.getDouble("heap_threshold", DEFAULT.heapThreshold()));
+	}
+
+}
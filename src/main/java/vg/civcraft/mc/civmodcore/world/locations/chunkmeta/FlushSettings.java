@@ -0,0 +1,38 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Settings for writing all chunk data to the database at once, as is done on
+ * shutdown
+ *
+ * @param threads  How many threads to write with
+ * @param deadline How long in milliseconds saving chunk data on shutdown may take
+ *                 at most, including data saved by plugins as they disable. Data
+ *                 not written by then is spilled to local files where possible
+ *                 and written on the next start, 0 or less to never give up
+ */
+public record FlushSettings(int threads, long deadline) {
+
+	public static final FlushSettings DEFAULT = new FlushSettings(4, 60_000L);
+
+	public boolean hasDeadline() {
+		return deadline > 0;
+	}
+
+	/**
+	 * Parses flush settings from the given config section, using defaults for
+	 * anything not specified
+	 *
+	 * @param section Section to parse, may be null
+	 * @return Parsed settings
+	 */
+	public static FlushSettings fromConfig(ConfigurationSection section) {
+		if (section == null) {
+			return DEFAULT;
+		}
+		return new FlushSettings(Math.max(1, section.getInt("threads", DEFAULT.threads())),
+				section.getLong("deadline", DEFAULT.deadline()));
+	}
+
+}
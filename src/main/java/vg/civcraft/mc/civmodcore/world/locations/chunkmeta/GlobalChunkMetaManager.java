@@ -1,35 +1,204 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.BlockBasedChunkMetaView;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api.ChunkMetaViewTracker;
 import vg.civcraft.mc.civmodcore.world.locations.global.CMCWorldDAO;
 import vg.civcraft.mc.civmodcore.world.locations.global.WorldIDManager;
 
 public class GlobalChunkMetaManager {
+	private static final int FLUSH_BATCH_SIZE = 32;
+	private static final long FLUSH_PROGRESS_INTERVAL = 5_000L;
+	// block data plus a hash map entry keyed by its location
+	private static final long ESTIMATED_FALLBACK_ENTRY_SIZE = 192L;
+
 	private final CMCWorldDAO chunkDao;
 	private final Map<UUID, WorldChunkMetaManager> worldToManager;
+	private final CheckpointSettings checkpointSettings;
+	/**
+	 * Picks the chunks to checkpoint and takes their changes on the main thread
+	 */
+	private final BukkitTask checkpointer;
+	/**
+	 * Writes the changes taken by the checkpointer, one checkpoint after the other
+	 */
+	private final ExecutorService checkpointWriter;
+	private final FlushSettings flushSettings;
+	/**
+	 * UNIX timestamp by which all data has to be saved once shutting down, -1
+	 * while not shutting down. Starts with the first flush while the server is
+	 * stopping, which usually is a plugin disabling before CivModCore does
+	 */
+	private long shutdownDeadline = -1;
+	private final EvictionPolicy evictionPolicy;
+	private final List<PinnedRegion> pinnedRegions;
+	/**
+	 * Set once all plugins had the chance to register, before that no chunk data
+	 * is loaded
+	 */
+	private boolean started;
 
 	public GlobalChunkMetaManager(CMCWorldDAO chunkDao, WorldIDManager idManager) {
+		this(chunkDao, idManager, CheckpointSettings.DEFAULT, FlushSettings.DEFAULT, EvictionSettings.DEFAULT);
+	}
+
+	public GlobalChunkMetaManager(CMCWorldDAO chunkDao, WorldIDManager idManager,
+			CheckpointSettings checkpointSettings, FlushSettings flushSettings, EvictionSettings evictionSettings) {
 		this.chunkDao = chunkDao;
-		this.worldToManager = new TreeMap<>();
+		this.worldToManager = new ConcurrentHashMap<>();
+		this.checkpointSettings = checkpointSettings;
+		this.flushSettings = flushSettings;
+		this.evictionPolicy = new EvictionPolicy(evictionSettings);
+		this.pinnedRegions = new ArrayList<>();
 		for (World world : Bukkit.getWorlds()) {
 			registerWorld(idManager.getInternalWorldId(world), world);
 		}
-		Bukkit.getPluginManager().registerEvents(new ChunkMetaListener(this, ChunkMetaViewTracker.getInstance()), CivModCorePlugin.getInstance());
+		ChunkMetaListener listener = new ChunkMetaListener(this);
+		Bukkit.getPluginManager().registerEvents(listener, CivModCorePlugin.getInstance());
+		// subscribed before anything else, so chunk data is available to everyone else interested in the chunk
+		ChunkLifecycleDispatcher.INSTANCE.subscribeAll(listener);
 		Bukkit.getScheduler().scheduleSyncDelayedTask(CivModCorePlugin.getInstance(), () -> {
 			for (World world : Bukkit.getWorlds()) {
 				for (Chunk chunk : world.getLoadedChunks()) {
 					loadChunkData(chunk);
 				}
 			}
+			started = true;
+			for (PinnedRegion region : pinnedRegions) {
+				setPinned(region, true);
+			}
 		}, 1L);
+		if (checkpointSettings.isEnabled()) {
+			this.checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "CivModCore Chunk Meta Checkpointer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long ticks = Math.max(1L, checkpointSettings.interval() / 50L);
+			this.checkpointer = Bukkit.getScheduler().runTaskTimer(CivModCorePlugin.getInstance(), this::checkpoint,
+					ticks, ticks);
+		} else {
+			this.checkpointWriter = null;
+			this.checkpointer = null;
+		}
+	}
+
+	/**
+	 * Writes data of loaded chunks which has been modified for a while to the
+	 * database, oldest modifications first and up to the configured amount of
+	 * chunks. Chunks which never unload would otherwise pile up modifications
+	 * until shutdown. The changes are taken on the main thread, which is the only
+	 * one modifying data of loaded chunks, and then written on the checkpoint
+	 * writer
+	 */
+	private void checkpoint() {
+		long dirtyBefore = System.currentTimeMillis() - checkpointSettings.minDirtyAge();
+		List<WorldChunkMetaManager.CheckpointCandidate> candidates = new ArrayList<>();
+		for (WorldChunkMetaManager man : worldToManager.values()) {
+			man.collectCheckpointCandidates(dirtyBefore, candidates);
+		}
+		candidates.sort(Comparator.comparingLong(WorldChunkMetaManager.CheckpointCandidate::dirtySince));
+		int budget = Math.min(candidates.size(), checkpointSettings.chunkBudget());
+		List<ChunkWrite> writes = new ArrayList<>(budget);
+		for (int i = 0; i < budget; i++) {
+			ChunkWrite write = ChunkWrite.prepare(candidates.get(i).coord(), null);
+			if (write != null) {
+				writes.add(write);
+			}
+		}
+		if (!writes.isEmpty()) {
+			checkpointWriter.execute(new CheckpointTask(writes));
+		}
+	}
+
+	/**
+	 * Finishes shutting down by saving all data of all plugins left out to the
+	 * database. The configured flush deadline starts counting down here, unless
+	 * plugins disabling earlier in the shutdown started it already when saving
+	 * their data. Should only be called on server shutdown
+	 */
+	public void shutdown() {
+		startShutdownDeadline();
+		stopCheckpointing();
+		flushAll();
+	}
+
+	private void startShutdownDeadline() {
+		if (shutdownDeadline == -1) {
+			shutdownDeadline = flushSettings.hasDeadline()
+					? System.currentTimeMillis() + flushSettings.deadline()
+					: Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Stops checkpointing. Checkpoints not yet written are given back, so the next
+	 * flush picks them up, the one in progress is waited for up to the shutdown
+	 * deadline
+	 */
+	private void stopCheckpointing() {
+		if (checkpointer == null) {
+			return;
+		}
+		checkpointer.cancel();
+		for (Runnable pending : checkpointWriter.shutdownNow()) {
+			((CheckpointTask) pending).abort();
+		}
+		try {
+			long timeout = shutdownDeadline - System.currentTimeMillis();
+			if (!checkpointWriter.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				CivModCorePlugin.getInstance().getLogger().warning("Checkpoint still in progress, changes made to "
+						+ "its chunks since it began may not be saved");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Changes of the chunks picked by one checkpoint, written in order. Stops
+	 * between chunks when interrupted and gives back the changes of the remaining
+	 * chunks
+	 */
+	private record CheckpointTask(List<ChunkWrite> writes) implements Runnable {
+
+		@Override
+		public void run() {
+			for (ChunkWrite write : writes) {
+				if (Thread.currentThread().isInterrupted()) {
+					write.abort();
+				} else {
+					write.write();
+				}
+			}
+		}
+
+		private void abort() {
+			writes.forEach(ChunkWrite::abort);
+		}
+
 	}
 
 	/**
@@ -51,22 +220,164 @@ public class GlobalChunkMetaManager {
 	}
 
 	/**
-	 * Saves all data out to the database
+	 * Applies the given function to the data of the given plugin in all chunks
+	 * held in memory in any world. Chunks loaded concurrently may be missed
+	 * 
+	 * @param pluginID Internal id of the plugin
+	 * @param function Function to apply
 	 */
-	public void flushAll() {
+	public void forEachChunkMeta(short pluginID, Consumer<ChunkMeta<?>> function) {
 		for (WorldChunkMetaManager man : worldToManager.values()) {
-			man.flushAll();
+			man.forEachChunkMeta(pluginID, function);
 		}
 	}
+
+	/**
+	 * Saves all data out to the database. Must be called from the main thread
+	 */
+	public void flushAll() {
+		flush(null);
+	}
 	
 	/**
-	 * Saves all data for one specific plugin out to the database
+	 * Saves all data for one specific plugin out to the database. Must be called
+	 * from the main thread
 	 * @param pluginID Internal id of the plugin to save data for
 	 */
 	public void flushPlugin(short pluginID) {
+		flush(pluginID);
+	}
+
+	/**
+	 * Takes the changes of all data on the calling thread, which must be the main
+	 * thread, and writes them to the database in the background. Changes being
+	 * checkpointed already are written before the returned future completes as
+	 * well, so afterwards the database holds all changes made before this call
+	 * 
+	 * @param pluginID Internal id of the plugin to save data for, null for all
+	 *                 plugins
+	 * @return Future completed once the changes are written
+	 */
+	public CompletableFuture<Void> flushAsync(Short pluginID) {
+		List<ChunkWrite> writes = new ArrayList<>();
 		for (WorldChunkMetaManager man : worldToManager.values()) {
-			man.flushPluginData(pluginID);
+			man.prepareWrites(pluginID, writes);
 		}
+		// checkpoints are written one after the other, so queueing behind them waits for those in progress
+		Executor executor = checkpointWriter != null ? checkpointWriter
+				: runnable -> Bukkit.getScheduler().runTaskAsynchronously(CivModCorePlugin.getInstance(), runnable);
+		return CompletableFuture.runAsync(() -> writes.forEach(ChunkWrite::write), executor);
+	}
+
+	/**
+	 * Writes all modified chunks of all worlds to the database, spread across a
+	 * pool of threads in batches of chunks. Should the shutdown deadline pass
+	 * before all chunks are written, the remaining ones are spilled to local files
+	 * where possible, which are written to the database on the next start. Changes
+	 * of metas which can not spill, such as table based ones, are lost then. The
+	 * deadline starts with the first flush while the server is stopping, outside
+	 * of that there is no deadline. Changes are taken on the calling thread, which
+	 * must be the main thread
+	 * 
+	 * @param pluginID Internal id of the plugin to save data for, null for all
+	 *                 plugins
+	 */
+	private void flush(Short pluginID) {
+		Logger logger = CivModCorePlugin.getInstance().getLogger();
+		List<ChunkWrite> writes = new ArrayList<>();
+		for (WorldChunkMetaManager man : worldToManager.values()) {
+			man.prepareWrites(pluginID, writes);
+		}
+		if (writes.isEmpty()) {
+			return;
+		}
+		if (Bukkit.isStopping()) {
+			startShutdownDeadline();
+		}
+		long start = System.currentTimeMillis();
+		long deadline = shutdownDeadline == -1 ? Long.MAX_VALUE : shutdownDeadline;
+		String what = pluginID == null ? "all plugins" : "plugin " + pluginID;
+		if (start >= deadline) {
+			logger.warning("Out of time to save chunk data of " + what + ", spilling " + writes.size()
+					+ " chunks to disk");
+			spill(writes);
+			return;
+		}
+		logger.info("Saving chunk data of " + what + " in " + writes.size() + " chunks");
+		AtomicInteger saved = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(flushSettings.threads(), runnable -> {
+			Thread thread = new Thread(runnable, "CivModCore Chunk Meta Flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < writes.size(); i += FLUSH_BATCH_SIZE) {
+			List<ChunkWrite> batch = writes.subList(i, Math.min(writes.size(), i + FLUSH_BATCH_SIZE));
+			pool.execute(() -> {
+				for (ChunkWrite write : batch) {
+					if (System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted()) {
+						return;
+					}
+					if (write.write()) {
+						saved.incrementAndGet();
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(Math.min(FLUSH_PROGRESS_INTERVAL,
+					Math.max(1, deadline - System.currentTimeMillis())), TimeUnit.MILLISECONDS)) {
+				if (System.currentTimeMillis() >= deadline) {
+					break;
+				}
+				logger.info("Saved " + saved.get() + "/" + writes.size() + " chunks so far");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (pool.isTerminated()) {
+			logger.info("Saved " + saved.get() + " chunks in " + (System.currentTimeMillis() - start) + " ms");
+			return;
+		}
+		pool.shutdownNow();
+		logger.warning("Ran out of time saving chunk data after " + saved.get() + "/" + writes.size()
+				+ " chunks, spilling the rest to disk");
+		spill(writes);
+	}
+
+	private static void spill(List<ChunkWrite> writes) {
+		int unspilled = 0;
+		for (ChunkWrite write : writes) {
+			// chunks still being written are claimed by their writer already
+			unspilled += write.spill();
+		}
+		if (unspilled > 0) {
+			CivModCorePlugin.getInstance().getLogger().severe(unspilled + " chunk metas could neither be saved in "
+					+ "time nor spilled to disk, their changes will be lost unless saved later on");
+		}
+	}
+
+	/**
+	 * Estimates the memory currently used by chunk metadata of all plugins in all
+	 * worlds. Iterates over all cached chunks, so avoid calling this every tick.
+	 * Must be called from the main thread, as data kept outside of chunks may
+	 * only be accessed from there
+	 * 
+	 * @return Snapshot of the current memory usage
+	 */
+	public ChunkMetaMemorySnapshot getMemorySnapshot() {
+		ChunkMetaMemorySnapshot.Builder snapshot = new ChunkMetaMemorySnapshot.Builder();
+		for (WorldChunkMetaManager man : worldToManager.values()) {
+			man.collectMemoryUsage(snapshot);
+		}
+		ChunkMetaViewTracker.getInstance().applyToAllViews(view -> {
+			if (view instanceof BlockBasedChunkMetaView<?, ?, ?> blockView) {
+				blockView.getFallbackCountPerWorld().forEach((worldID, count) -> snapshot.add(view.getPluginID(),
+						worldID, ChunkMetaMemorySnapshot.Residency.FALLBACK, count,
+						count * ESTIMATED_FALLBACK_ENTRY_SIZE));
+			}
+		});
+		return snapshot.build();
 	}
 
 	public CMCWorldDAO getChunkDAO() {
@@ -122,8 +433,77 @@ public class GlobalChunkMetaManager {
 	}
 	
 	public void registerWorld(short id, World world) {
-		WorldChunkMetaManager manager = new WorldChunkMetaManager(world, id);
+		WorldChunkMetaManager manager = new WorldChunkMetaManager(world, id, evictionPolicy);
 		worldToManager.put(world.getUID(), manager);
+		if (started) {
+			for (PinnedRegion region : pinnedRegions) {
+				if (region.world().equals(world.getName())) {
+					setPinned(region, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pins all chunks in the given region. Their data is loaded right away and
+	 * kept in memory until the region is unpinned, even while the chunks are
+	 * unloaded, so players returning to busy areas never wait on the database.
+	 * Modified data is still written to the database by checkpoints and on
+	 * shutdown. Regions in worlds not loaded yet are pinned once the world loads.
+	 * Must be called from the main thread
+	 * 
+	 * @param region Region to pin
+	 */
+	public void pinRegion(PinnedRegion region) {
+		pinnedRegions.add(region);
+		if (started) {
+			setPinned(region, true);
+		}
+	}
+
+	/**
+	 * Unpins all chunks in the given region, which must have been pinned before.
+	 * Data of chunks in the region which are not loaded is dropped from memory as
+	 * usual afterwards. Chunks also in another pinned region stay pinned. Must be
+	 * called from the main thread
+	 * 
+	 * @param region Region to unpin
+	 */
+	public void unpinRegion(PinnedRegion region) {
+		if (!pinnedRegions.remove(region) || !started) {
+			return;
+		}
+		setPinned(region, false);
+		// chunks may overlap with other regions, which should keep them pinned
+		for (PinnedRegion other : pinnedRegions) {
+			if (other.world().equals(region.world())) {
+				setPinned(other, true);
+			}
+		}
+	}
+
+	public List<PinnedRegion> getPinnedRegions() {
+		return Collections.unmodifiableList(pinnedRegions);
+	}
+
+	private void setPinned(PinnedRegion region, boolean pinned) {
+		World world = Bukkit.getWorld(region.world());
+		if (world == null) {
+			return;
+		}
+		WorldChunkMetaManager manager = getWorldManager(world);
+		if (manager == null) {
+			return;
+		}
+		for (int x = region.minChunkX(); x <= region.maxChunkX(); x++) {
+			for (int z = region.minChunkZ(); z <= region.maxChunkZ(); z++) {
+				if (pinned) {
+					manager.pinChunk(x, z);
+				} else {
+					manager.unpinChunk(x, z);
+				}
+			}
+		}
 	}
 
 }
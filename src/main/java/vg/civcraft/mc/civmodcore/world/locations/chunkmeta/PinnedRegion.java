@@ -0,0 +1,64 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.bukkit.configuration.ConfigurationSection;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
+
+/**
+ * A rectangular region of chunks whose metadata is kept in memory at all times,
+ * see {@link GlobalChunkMetaManager#pinRegion(PinnedRegion)}
+ *
+ * @param world     Name of the world the region is in
+ * @param minChunkX Lowest chunk x-coordinate in the region, inclusive
+ * @param minChunkZ Lowest chunk z-coordinate in the region, inclusive
+ * @param maxChunkX Highest chunk x-coordinate in the region, inclusive
+ * @param maxChunkZ Highest chunk z-coordinate in the region, inclusive
+ */
+public record PinnedRegion(String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+
+	public PinnedRegion {
+		if (minChunkX > maxChunkX || minChunkZ > maxChunkZ) {
+			throw new IllegalArgumentException("Minimum of pinned region may not exceed its maximum");
+		}
+	}
+
+	/**
+	 * @return Amount of chunks in this region
+	 */
+	public long getChunkCount() {
+		return (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+	}
+
+	/**
+	 * Parses pinned regions from the given config section. Each key in the section
+	 * is one region, given by its world and the block coordinates min_x, min_z,
+	 * max_x and max_z of two opposite corners
+	 *
+	 * @param section Section to parse, may be null
+	 * @param logger  Logger to report invalid regions to
+	 * @return Parsed regions
+	 */
+	public static List<PinnedRegion> fromConfig(ConfigurationSection section, Logger logger) {
+		List<PinnedRegion> regions = new ArrayList<>();
+		if (section == null) {
+			return regions;
+		}
+		for (String key : section.getKeys(false)) {
+			ConfigurationSection current = section.getConfigurationSection(key);
+			if (current == null || !current.isString("world")) {
+				logger.warning("Pinned region " + key + " does not specify a world, ignoring it");
+				continue;
+			}
+			int x1 = BlockBasedChunkMeta.toChunkCoord(current.getInt("min_x"));
+			int z1 = BlockBasedChunkMeta.toChunkCoord(current.getInt("min_z"));
+			int x2 = BlockBasedChunkMeta.toChunkCoord(current.getInt("max_x"));
+			int z2 = BlockBasedChunkMeta.toChunkCoord(current.getInt("max_z"));
+			regions.add(new PinnedRegion(current.getString("world"), Math.min(x1, x2), Math.min(z1, z2),
+					Math.max(x1, x2), Math.max(z1, z2)));
+		}
+		return regions;
+	}
+
+}
@@ -1,9 +1,13 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
 
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
@@ -11,27 +15,34 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 
 /**
  * Stores Chunk metadata for all plugins for one specific world. Metadata is
  * kept in a cache, into which is inserted when a chunk is loaded. When a chunk
  * is unloaded, it is placed in an unloading queue and will be unloaded after a
- * certain interval if it hasn't been reloaded in the mean time
+ * certain interval if it hasn't been reloaded in the mean time. That interval
+ * is decided by the {@link EvictionPolicy} based on available memory
  *
  */
 public class WorldChunkMetaManager {
 
+	private static final long UNLOAD_CHECK_INTERVAL = 1000L;
 	/**
-	 * How long should chunk data be kept in memory after the chunk is unloaded? 5
-	 * minutes
+	 * How long should we remember when data of a chunk was written to the
+	 * database after the chunk was dropped from the cache? Storage engines use this
+	 * to avoid loading data from read replicas which haven't caught up yet
 	 */
-	private static final long UNLOAD_DELAY = 5L * 60L * 1000L;
-	private static final long UNLOAD_CHECK_INTERVAL = 1000L;
+	private static final long PERSIST_TIME_RETENTION = 5L * 60L * 1000L;
 
 	private final short worldID;
-	private final Map<ChunkCoord, ChunkCoord> metas;
+	/**
+	 * All chunks with data in memory by their packed key, see {@link ChunkKey}
+	 */
+	private final Long2ObjectMap<ChunkCoord> metas;
 	/**
 	 * A synchronized TreeSet holding all chunk metadata belonging to unloaded
 	 * chunks. A comparator based on when the chunk was unloaded is used to
@@ -39,18 +50,32 @@ public class WorldChunkMetaManager {
 	 * cleanup trivial
 	 */
 	private final Set<ChunkCoord> unloadingQueue;
+	/**
+	 * Insertion ordered, so the oldest entries come first. Only accessed while
+	 * holding the monitor of metas
+	 */
+	private final Long2LongLinkedOpenHashMap recentlyPersisted;
+	private final EvictionPolicy evictionPolicy;
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 	private Thread chunkLoadingConsumer;
 	private Queue<ChunkCoord> chunkLoadingQueue;
 	private World world;
 
 	public WorldChunkMetaManager(World world, short worldID) {
+		this(world, worldID, new EvictionPolicy(EvictionSettings.DEFAULT));
+	}
+
+	WorldChunkMetaManager(World world, short worldID, EvictionPolicy evictionPolicy) {
 		this.worldID = worldID;
 		this.world = world;
-		this.metas = new HashMap<>();
-		this.unloadingQueue = Collections.synchronizedSet(new TreeSet<>((a, b) -> {
-			return Math.toIntExact(a.getLastMCUnloadingTime() - b.getLastMCUnloadingTime());
-		}));
+		this.metas = new Long2ObjectOpenHashMap<>();
+		this.recentlyPersisted = new Long2LongLinkedOpenHashMap();
+		this.recentlyPersisted.defaultReturnValue(-1);
+		this.evictionPolicy = evictionPolicy;
+		// chunks unloaded in the same millisecond must not be considered equal
+		this.unloadingQueue = Collections.synchronizedSet(new TreeSet<>(
+				Comparator.comparingLong(ChunkCoord::getLastMCUnloadingTime)
+						.thenComparingLong(ChunkCoord::getKey)));
 		registerUnloadRunnable();
 		startChunkLoadingConsumer();
 	}
@@ -69,28 +94,78 @@ public class WorldChunkMetaManager {
 	}
 
 	/**
-	 * Saves all entries to the database
+	 * Takes the changes of all chunks holding data not yet written to the database,
+	 * see {@link ChunkWrite}. Must be called from the main thread
+	 * 
+	 * @param pluginID Internal id of the plugin to take changes of, null for all
+	 *                 plugins
+	 * @param writes   List to add the changes to
 	 */
-	void flushAll() {
-		synchronized (metas) {
-			for (ChunkCoord coord : metas.keySet()) {
-				synchronized (coord) {
-					coord.fullyPersist();
-				}
+	void prepareWrites(Short pluginID, List<ChunkWrite> writes) {
+		for (ChunkCoord coord : snapshotCoords()) {
+			ChunkWrite write = ChunkWrite.prepare(coord, pluginID);
+			if (write != null) {
+				writes.add(write);
 			}
 		}
 	}
 
-	void flushPluginData(short pluginID) {
+	/**
+	 * Adds all chunks holding data which has been modified since before the given
+	 * time to the given list. Must be called from the main thread
+	 * 
+	 * @param dirtyBefore UNIX timestamp data must have been modified before
+	 * @param candidates  List to add the chunks to
+	 */
+	void collectCheckpointCandidates(long dirtyBefore, List<CheckpointCandidate> candidates) {
+		for (ChunkCoord coord : snapshotCoords()) {
+			if (coord.getLastMCUnloadingTime() > coord.getLastMCLoadingTime() && !coord.isPinned()) {
+				// written when evicted, which must not race with a checkpoint
+				continue;
+			}
+			long dirtySince = coord.getDirtySince();
+			if (dirtySince != -1 && dirtySince <= dirtyBefore) {
+				candidates.add(new CheckpointCandidate(coord, dirtySince));
+			}
+		}
+	}
+
+	/**
+	 * Copies the registry, so it can be iterated without holding its lock while
+	 * doing I/O. Chunks being dropped from the registry in the mean time are
+	 * persisted when being dropped, after any write already in progress
+	 */
+	private List<ChunkCoord> snapshotCoords() {
 		synchronized (metas) {
-			for (ChunkCoord coord : metas.keySet()) {
-				synchronized (coord) {
-					coord.persistPlugin(pluginID);
-				}
+			return new ArrayList<>(metas.values());
+		}
+	}
+
+	/**
+	 * Applies the given function to the data of the given plugin in all chunks
+	 * held in memory
+	 * 
+	 * @param pluginID Internal id of the plugin
+	 * @param function Function to apply
+	 */
+	void forEachChunkMeta(short pluginID, Consumer<ChunkMeta<?>> function) {
+		for (ChunkCoord coord : snapshotCoords()) {
+			ChunkMeta<?> meta = coord.getMeta(pluginID, true);
+			if (meta != null) {
+				function.accept(meta);
 			}
 		}
 	}
 
+	void collectMemoryUsage(ChunkMetaMemorySnapshot.Builder snapshot) {
+		for (ChunkCoord coord : snapshotCoords()) {
+			coord.collectMemoryUsage(snapshot);
+		}
+	}
+
+	record CheckpointCandidate(ChunkCoord coord, long dirtySince) {
+	}
+
 	/**
 	 * Retrieves or generates a new ChunkCoord instance. ChunkCoord are each
 	 * singletons for their location, which is enforced through this method
@@ -105,16 +180,21 @@ public class WorldChunkMetaManager {
 	 *         supposed to be generated
 	 */
 	private ChunkCoord getChunkCoord(int x, int z, boolean gen, boolean populate) {
-		ChunkCoord coord = new ChunkCoord(x, z, worldID, world);
+		long key = ChunkKey.of(worldID, x, z);
 		synchronized (metas) {
-			ChunkCoord value = metas.get(coord);
-			if (value != null) {
-				return value;
+			ChunkCoord coord = metas.get(key);
+			if (coord != null) {
+				return coord;
 			}
 			if (!gen) {
 				return null;
 			}
-			metas.put(coord, coord);
+			coord = new ChunkCoord(x, z, worldID, world);
+			metas.put(key, coord);
+			long lastPersisted = recentlyPersisted.remove(key);
+			if (lastPersisted != -1) {
+				coord.setLastPersistTime(lastPersisted);
+			}
 			if (populate) {
 				// up until here we are still sync from the ChunkLoadEvent, so we need to
 				// offload the actual db load to another thread
@@ -176,38 +256,40 @@ public class WorldChunkMetaManager {
 
 	private void registerUnloadRunnable() {
 		scheduler.scheduleWithFixedDelay(() -> {
-			if (unloadingQueue.isEmpty()) {
-				return;
-			}
 			long currentTime = System.currentTimeMillis();
+			synchronized (metas) {
+				while (!recentlyPersisted.isEmpty()
+						&& currentTime - recentlyPersisted.get(recentlyPersisted.firstLongKey()) > PERSIST_TIME_RETENTION) {
+					recentlyPersisted.removeFirstLong();
+				}
+			}
+			long retention = evictionPolicy.getRetention();
 			synchronized (unloadingQueue) {
+				long cachedBytes = 0;
+				for (ChunkCoord coord : unloadingQueue) {
+					if (!coord.isPinned()) {
+						cachedBytes += coord.getEstimatedSize();
+					}
+				}
+				evictionPolicy.report(worldID, cachedBytes);
+				// over the memory budget, drop the chunks unloaded longest ago regardless of retention
+				long excess = evictionPolicy.getExcess(worldID);
 				Iterator<ChunkCoord> iter = unloadingQueue.iterator();
 				while (iter.hasNext()) {
 					ChunkCoord coord = iter.next();
 					// Is time up?
-					if (currentTime - coord.getLastMCUnloadingTime() > UNLOAD_DELAY) {
-						// make sure chunk hasnt loaded again since
-						if (coord.getLastMCUnloadingTime() > coord.getLastMCLoadingTime()) {
-							synchronized (metas) {
-								synchronized (coord) {
-									coord.fullyPersist();
-									iter.remove();
-									if (!coord.hasPermanentlyLoadedData()) {
-										metas.remove(coord);
-										// coord is up for garbage collection at this point and all of its data has been
-										// written to the db
-									} else {
-										coord.deleteNonPersistentData();
-										// keep chunk coord, but garbage collect the data we dont want to keep inside of
-										// it
-									}
-								}
+					if (currentTime - coord.getLastMCUnloadingTime() > retention || excess > 0) {
+						// make sure chunk hasnt loaded again since and was not pinned in the mean time
+						if (coord.getLastMCUnloadingTime() > coord.getLastMCLoadingTime() && !coord.isPinned()) {
+							long size = coord.getEstimatedSize();
+							if (!evict(coord)) {
+								// still being written by a flush, try again later
+								continue;
 							}
+							excess -= size;
 						}
-						else {
-							//chunk was loaded again, remove it from unloading queue
-							iter.remove();
-						}
+						//otherwise chunk was loaded again or is pinned, remove it from unloading queue
+						iter.remove();
 					} else {
 						// tree set iterator is guaranteed to be in ascending order and we use the
 						// timestamp of unloading as key,
@@ -220,6 +302,36 @@ public class WorldChunkMetaManager {
 		}, UNLOAD_CHECK_INTERVAL, UNLOAD_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Writes all data of an unloaded chunk to the database and drops it from the
+	 * cache, except for data which is supposed to always stay loaded
+	 * 
+	 * @return False if changes taken earlier are still being written, in which case
+	 *         the chunk is kept until that is done
+	 */
+	private boolean evict(ChunkCoord coord) {
+		synchronized (metas) {
+			synchronized (coord) {
+				coord.fullyPersist();
+				if (coord.isWriting()) {
+					return false;
+				}
+				if (!coord.hasPermanentlyLoadedData()) {
+					metas.remove(coord.getKey());
+					coord.handleEviction();
+					recentlyPersisted.put(coord.getKey(), coord.getLastPersistTime());
+					// coord is up for garbage collection at this point and all of its data has been
+					// written to the db
+				} else {
+					coord.deleteNonPersistentData();
+					// keep chunk coord, but garbage collect the data we dont want to keep inside of
+					// it
+				}
+				return true;
+			}
+		}
+	}
+
 	private void startChunkLoadingConsumer() {
 		this.chunkLoadingQueue = new LinkedBlockingQueue<>();
 		chunkLoadingConsumer = new Thread(() -> {
@@ -257,7 +369,45 @@ public class WorldChunkMetaManager {
 		// chunkCoord can never be null here, otherwise our data structure would be
 		// broken, in which case we'd want to know
 		chunkCoord.minecraftChunkUnloaded();
-		unloadingQueue.add(chunkCoord);
+		if (!chunkCoord.isPinned()) {
+			unloadingQueue.add(chunkCoord);
+		}
+	}
+
+	/**
+	 * Pins a chunk, which loads its data right away if it is not in memory yet and
+	 * then keeps it in memory even while the chunk is unloaded. Modified data of
+	 * pinned chunks is still written to the database by checkpoints and on
+	 * shutdown
+	 * 
+	 * @param x X-coordinate of the chunk
+	 * @param z Z-coordinate of the chunk
+	 */
+	void pinChunk(int x, int z) {
+		ChunkCoord coord = getChunkCoord(x, z, true, true);
+		coord.setPinned(true);
+	}
+
+	/**
+	 * Unpins a chunk, its data is dropped from memory as usual if the chunk is not
+	 * loaded. Must be called from the main thread
+	 * 
+	 * @param x X-coordinate of the chunk
+	 * @param z Z-coordinate of the chunk
+	 */
+	void unpinChunk(int x, int z) {
+		ChunkCoord coord = getChunkCoord(x, z, false, false);
+		if (coord == null || !coord.isPinned()) {
+			return;
+		}
+		coord.setPinned(false);
+		if (!world.isChunkLoaded(x, z)) {
+			if (coord.getLastMCUnloadingTime() <= coord.getLastMCLoadingTime()) {
+				// never loaded while pinned, so there is no unloading time to expire from yet
+				coord.minecraftChunkUnloaded();
+			}
+			unloadingQueue.add(coord);
+		}
 	}
 
 }
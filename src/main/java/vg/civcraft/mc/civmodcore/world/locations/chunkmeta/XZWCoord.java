@@ -1,9 +1,9 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta;
 
-import java.util.Objects;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
 
 public class XZWCoord implements Comparable<XZWCoord> {
@@ -23,10 +23,23 @@ public class XZWCoord implements Comparable<XZWCoord> {
 	 */
 	protected short worldID;
 
+	/**
+	 * Packed key of the coordinates, see {@link ChunkKey}
+	 */
+	private final long key;
+
 	public XZWCoord(int x, int z, short worldID) {
 		this.x = x;
 		this.z = z;
 		this.worldID = worldID;
+		this.key = ChunkKey.of(worldID, x, z);
+	}
+
+	/**
+	 * @return Packed key of this chunk, see {@link ChunkKey}
+	 */
+	public long getKey() {
+		return key;
 	}
 
 	/**
@@ -51,20 +64,12 @@ public class XZWCoord implements Comparable<XZWCoord> {
 
 	@Override
 	public int compareTo(XZWCoord o) {
-		int worldComp = Short.compare(this.worldID, o.getWorldID());
-		if (worldComp != 0) {
-			return worldComp;
-		}
-		int xComp = Integer.compare(this.x, o.getX());
-		if (xComp != 0) {
-			return worldComp;
-		}
-		return Integer.compare(this.z, o.getZ());
+		return Long.compare(key, o.key);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(x, z, worldID);
+		return Long.hashCode(key);
 	}
 
 	@Override
@@ -75,8 +80,7 @@ public class XZWCoord implements Comparable<XZWCoord> {
 		if (!(o instanceof XZWCoord)) {
 			return false;
 		}
-		XZWCoord xzwCoord = (XZWCoord) o;
-		return x == xzwCoord.x && z == xzwCoord.z && worldID == xzwCoord.worldID;
+		return key == ((XZWCoord) o).key;
 	}
 
 	public static XZWCoord fromLocation(Location location, short worldID) {
@@ -94,4 +98,20 @@ public class XZWCoord implements Comparable<XZWCoord> {
 		return new XZWCoord(chunk.getX(), chunk.getZ(), worldId);
 	}
 
+	/**
+	 * @return Packed key of the chunk the location is in, see {@link ChunkKey}
+	 */
+	public static long toKey(Location location) {
+		short worldId = CivModCorePlugin.getInstance().getWorldIdManager().getInternalWorldId(location.getWorld());
+		return ChunkKey.ofBlock(worldId, location.getBlockX(), location.getBlockZ());
+	}
+
+	/**
+	 * @return Packed key of the chunk, see {@link ChunkKey}
+	 */
+	public static long toKey(Chunk chunk) {
+		short worldId = CivModCorePlugin.getInstance().getWorldIdManager().getInternalWorldId(chunk.getWorld());
+		return ChunkKey.of(worldId, chunk.getX(), chunk.getZ());
+	}
+
 }
@@ -14,4 +14,12 @@ public abstract class APIView {
 	
 	public abstract void disable();
 
+	public JavaPlugin getPlugin() {
+		return plugin;
+	}
+
+	public short getPluginID() {
+		return pluginID;
+	}
+
 }
@@ -1,5 +1,11 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -11,6 +17,9 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.GlobalChunkMetaManage
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.XZWCoord;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedStorageEngine;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockDataChange;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockDataChangeStream;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockDataIndex;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockDataObject;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.fallback.SingleBlockTracker;
 import vg.civcraft.mc.civmodcore.world.locations.global.WorldIDManager;
@@ -30,6 +39,9 @@ public class BlockBasedChunkMetaView<T extends BlockBasedChunkMeta<D, S>, D exte
 	private SingleBlockTracker<D> singleBlockTracker;
 	private boolean allowAccessUnloaded;
 	private WorldIDManager worldIdManager;
+	private List<BlockDataIndex<D, ?>> indexes;
+	// created once someone subscribes, so there is no overhead without subscribers
+	private volatile BlockDataChangeStream<D> changeStream;
 
 	BlockBasedChunkMetaView(JavaPlugin plugin, short pluginID, GlobalChunkMetaManager globalManager,
 			Supplier<T> chunkProducer, S storage, boolean loadAll, boolean allowAccessUnloaded) {
@@ -37,6 +49,7 @@ public class BlockBasedChunkMetaView<T extends BlockBasedChunkMeta<D, S>, D exte
 		this.chunkProducer = chunkProducer;
 		this.allowAccessUnloaded = allowAccessUnloaded;
 		this.storageEngine = storage;
+		this.indexes = new CopyOnWriteArrayList<>();
 		if (loadAll) {
 			loadAll();
 		}
@@ -94,7 +107,97 @@ public class BlockBasedChunkMetaView<T extends BlockBasedChunkMeta<D, S>, D exte
 
 	@SuppressWarnings("unchecked")
 	private T getOrCreateChunkMeta(World world, int x, int z) {
-		return super.computeIfAbsent(world, x, z, (Supplier<ChunkMeta<?>>) (Supplier<?>) chunkProducer);
+		return computeIfAbsent(world, x, z, (Supplier<ChunkMeta<?>>) (Supplier<?>) chunkProducer);
+	}
+
+	@Override
+	public T computeIfAbsent(World world, int chunkX, int chunkZ, Supplier<ChunkMeta<?>> computer) {
+		T chunk = super.computeIfAbsent(world, chunkX, chunkZ, computer);
+		attach(chunk);
+		return chunk;
+	}
+
+	@Override
+	public void insertChunkMeta(World world, int chunkX, int chunkZ, T meta) {
+		super.insertChunkMeta(world, chunkX, chunkZ, meta);
+		attach(meta);
+	}
+
+	private void attach(T chunk) {
+		if (!indexes.isEmpty()) {
+			chunk.setIndexes(indexes);
+		}
+		if (changeStream != null) {
+			chunk.setChangeStream(changeStream);
+		}
+	}
+
+	/**
+	 * Creates a secondary index over an attribute of the data of this view, which
+	 * allows looking up all data with a given attribute value without scanning
+	 * every chunk. The index is filled with all data currently in memory and kept
+	 * up to date from then on, see {@link BlockDataIndex} for details.
+	 * 
+	 * Indexing needs every entry deserialized, so it disables the benefit of lazy
+	 * deserialization for auto storage engines
+	 * 
+	 * @param <K>       Attribute type
+	 * @param attribute Function extracting the attribute value from data. Must be
+	 *                  cheap and thread-safe, it is called whenever data is
+	 *                  inserted or modified
+	 * @return Created index
+	 */
+	@SuppressWarnings("unchecked")
+	public <K> BlockDataIndex<D, K> createIndex(Function<? super D, ? extends K> attribute) {
+		if (globalManager == null) {
+			throw new IllegalStateException("View already shut down, can not create index");
+		}
+		BlockDataIndex<D, K> index = new BlockDataIndex<D, K>(attribute);
+		indexes.add(index);
+		globalManager.forEachChunkMeta(pluginID, chunk -> ((T) chunk).setIndexes(indexes));
+		return index;
+	}
+
+	/**
+	 * Subscribes to changes made to the data of this view, delivered on the main
+	 * thread at the start of the next tick. See {@link BlockDataChangeStream} for
+	 * details
+	 * 
+	 * @param consumer Consumer receiving all changes made within a tick at once
+	 */
+	public void subscribeChanges(Consumer<List<BlockDataChange<D>>> consumer) {
+		subscribeChanges(consumer, null);
+	}
+
+	/**
+	 * Subscribes to changes made to the data of this view. See
+	 * {@link BlockDataChangeStream} for details
+	 * 
+	 * @param consumer Consumer receiving all changes made within a tick at once
+	 * @param executor Executor to deliver changes on, null to deliver them on the
+	 *                 main thread
+	 */
+	@SuppressWarnings("unchecked")
+	public void subscribeChanges(Consumer<List<BlockDataChange<D>>> consumer, Executor executor) {
+		if (globalManager == null) {
+			throw new IllegalStateException("View already shut down, can not subscribe");
+		}
+		if (changeStream == null) {
+			changeStream = new BlockDataChangeStream<D>(plugin);
+			globalManager.forEachChunkMeta(pluginID, chunk -> ((T) chunk).setChangeStream(changeStream));
+		}
+		changeStream.subscribe(consumer, executor);
+	}
+
+	/**
+	 * Unsubscribes from changes made to the data of this view
+	 * 
+	 * @param consumer Consumer previously subscribed
+	 */
+	public void unsubscribeChanges(Consumer<List<BlockDataChange<D>>> consumer) {
+		if (changeStream != null) {
+			changeStream.unsubscribe(consumer);
+		}
 	}
 
 	/**
@@ -182,17 +285,31 @@ public class BlockBasedChunkMetaView<T extends BlockBasedChunkMeta<D, S>, D exte
 	public void postLoad(ChunkMeta<?> c) {
 		@SuppressWarnings("unchecked")
 		T chunk = (T) c;
+		attach(chunk);
 		for (D data : singleBlockTracker.getAllForChunkAndRemove(chunk.getChunkCoord())) {
 			chunk.put(BlockBasedChunkMeta.modulo(data.getLocation().getBlockX()), data.getLocation().getBlockY(),
 					BlockBasedChunkMeta.modulo(data.getLocation().getBlockZ()), data, true, false);
 		}
 	}
 
+	/**
+	 * Must be called from the main thread
+	 * 
+	 * @return Amount of blocks in unloaded chunks tracked individually per
+	 *         internal world id
+	 */
+	public Map<Short, Integer> getFallbackCountPerWorld() {
+		return singleBlockTracker.getCountPerWorld();
+	}
+
 	@Override
 	public void disable() {
 		for (D data : singleBlockTracker.getAll()) {
 			storageEngine.persist(data, worldIdManager.getInternalWorldId(data.getLocation().getWorld()), pluginID);
 		}
+		if (changeStream != null) {
+			changeStream.close();
+		}
 		super.disable();
 	}
 
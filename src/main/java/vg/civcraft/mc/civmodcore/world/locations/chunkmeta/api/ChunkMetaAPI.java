@@ -91,7 +91,7 @@ public class ChunkMetaAPI {
 			plugin.getLogger().log(Level.SEVERE, "Could not init single block meta data, could not retrieve plugin id from db");
 			return null;
 		}
-		GlobalLocationTracker<T> tracker = new GlobalLocationTracker<>(dao);
+		GlobalLocationTracker<T> tracker = new GlobalLocationTracker<>(dao, plugin.getName());
 		SingleBlockAPIView<T> view = new SingleBlockAPIView<>(plugin, id, tracker);
 		existingViews.put(plugin.getName(), view);
 		ChunkMetaViewTracker.getInstance().put(view);
@@ -32,6 +32,10 @@ public final class ChunkMetaViewTracker {
 		singleBlockViews.forEach(function);
 	}
 	
+	public void applyToAllViews(Consumer<ChunkMetaView<?>> function) {
+		pluginIdToView.values().forEach(function);
+	}
+
 	public void put(ChunkMetaView<?> view, short pluginID) {
 		this.pluginIdToView.put(pluginID, view);
 	}
@@ -1,9 +1,11 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.api;
 
+import java.util.concurrent.TimeUnit;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.plugin.java.JavaPlugin;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
 import vg.civcraft.mc.civmodcore.world.locations.global.GlobalLocationTracker;
 import vg.civcraft.mc.civmodcore.world.locations.global.LocationTrackable;
 
@@ -33,16 +35,37 @@ public class SingleBlockAPIView <T extends LocationTrackable> extends APIView {
 		return remove(trackable.getLocation());
 	}
 
+	/**
+	 * Chunk loads are passed on to the tracker by the ChunkLifecycleDispatcher
+	 * already, this only needs to be called to replay a chunk load manually
+	 */
 	public void handleChunkLoad(Chunk chunk) {
-
+		tracker.handleChunkLoad(chunk);
 	}
 
+	/**
+	 * Chunk unloads are passed on to the tracker by the ChunkLifecycleDispatcher
+	 * already, this only needs to be called to replay a chunk unload manually
+	 */
 	public void handleChunkUnload(Chunk chunk) {
+		tracker.handleChunkUnload(chunk);
+	}
 
+	/**
+	 * Sets how much time chunk load callbacks of the trackables of this view may
+	 * take up per tick, before the remaining ones are deferred to later ticks
+	 *
+	 * @param budget Time budget per tick
+	 * @param unit   Unit of the budget
+	 */
+	public void setChunkCallbackBudget(long budget, TimeUnit unit) {
+		tracker.setChunkCallbackBudget(budget, unit);
 	}
 
 	@Override
 	public void disable() {
+		ChunkLifecycleDispatcher.INSTANCE.unsubscribe(tracker);
+		tracker.clearPendingChunkLoads();
 		tracker.persist();
 	}
 
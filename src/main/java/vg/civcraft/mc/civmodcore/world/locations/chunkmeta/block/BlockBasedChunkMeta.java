@@ -1,5 +1,6 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block;
 
+import java.util.List;
 import java.util.function.Consumer;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
@@ -13,7 +14,13 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.ChunkMeta;
  * concentration of data.
  * 
  * 
- * Not thread-safe
+ * Not thread-safe. Data is only inserted, modified and removed by the thread
+ * owning the cache, which is the chunk loading thread until the cache has been
+ * added to its chunk and the main thread from then on. Indexes are attached by
+ * the owning thread as well. Only dropping the cache from memory happens on
+ * another thread. It locks the cache against indexes being attached at the same time,
+ * and never overlaps with changes to the data, as caches are only dropped once
+ * their chunk unloaded
  * 
  * DO NOT USE THIS WHEN THE ASSOCIATED CHUNK IS NOT LOADED
  * 
@@ -28,16 +35,29 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 	protected static final int L2_SECTION_COUNT = CHUNK_HEIGHT / L1_SECTION_COUNT;
 	protected static final int L3_X_SECTION_COUNT = 16;
 	protected static final int L4_Z_SECTION_LENGTH = 16;
+	private static final long ESTIMATED_OVERHEAD = 64L;
+	private static final long ESTIMATED_ENTRY_SIZE = 128L;
 
 	// This has to be an array of the abstract super type and not the generic one,
 	// because java struggles with instanciating
 	// generic arrays
 	protected BlockDataObject<D>[][][][] data;
+	// maintained for size estimates only
+	private int entryCount;
+	private int arrayCount;
+	// secondary indexes of the owning view, null if it has none
+	private List<BlockDataIndex<D, ?>> indexes;
+	// how many of the indexes have been filled with the data in this cache
+	private int filledIndexes;
+	// change stream of the owning view, null if nobody ever subscribed to it
+	private BlockDataChangeStream<D> changeStream;
+	private boolean evicted;
 
 	@SuppressWarnings("unchecked")
 	public BlockBasedChunkMeta(boolean isNew, S storage) {
 		super(isNew, storage);
 		data = new BlockDataObject[L1_SECTION_COUNT][][][];
+		arrayCount = 1;
 	}
 
 	/**
@@ -100,6 +120,7 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		if (create && subArray == null) {
 			subArray = new BlockDataObject[L2_SECTION_COUNT][][];
 			data[l1Offset] = subArray;
+			arrayCount++;
 		}
 		return subArray;
 	}
@@ -115,11 +136,12 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 	 *         requested
 	 */
 	@SuppressWarnings("rawtypes")
-	private static BlockDataObject[][] getL3XSubArray(BlockDataObject[][][] l2Section, int l2Offset, boolean create) {
+	private BlockDataObject[][] getL3XSubArray(BlockDataObject[][][] l2Section, int l2Offset, boolean create) {
 		BlockDataObject[][] subArray = l2Section[l2Offset];
 		if (create && subArray == null) {
 			subArray = new BlockDataObject[L3_X_SECTION_COUNT][];
 			l2Section[l2Offset] = subArray;
+			arrayCount++;
 		}
 		return subArray;
 	}
@@ -140,6 +162,7 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		if (create && subArray == null) {
 			subArray = new BlockDataObject[L4_Z_SECTION_LENGTH];
 			l3Section[l3XOffset] = subArray;
+			arrayCount++;
 		}
 		return subArray;
 	}
@@ -159,6 +182,25 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		return getL4ZSubArray(l3XSection, x, create);
 	}
 
+	@Override
+	public long getEstimatedSize() {
+		// arrays of 16 references, assuming compressed references
+		return ESTIMATED_OVERHEAD + arrayCount * 80L + entryCount * getEstimatedEntrySize();
+	}
+
+	@Override
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 * @return Estimated heap retained by a single entry of this cache in bytes,
+	 *         including its location. Override this if entries hold a lot of data
+	 */
+	protected long getEstimatedEntrySize() {
+		return ESTIMATED_ENTRY_SIZE;
+	}
+
 	@Override
 	public boolean isEmpty() {
 		for (BlockDataObject<D>[][][] l2 : data) {
@@ -236,7 +278,24 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 			remove(x, y, z);
 		}
 		blockData.setOwningCache(this);
+		@SuppressWarnings("unchecked")
+		D previous = (D) l4ZSection[z];
+		if (previous == null) {
+			entryCount++;
+		}
 		l4ZSection[z] = blockData;
+		if (indexes != null) {
+			if (previous != null && previous != blockData) {
+				unindex(previous);
+			}
+			index(blockData);
+		}
+		if (isNew) {
+			if (changeStream != null) {
+				changeStream.record(previous, blockData);
+			}
+			handleDataChange(blockData, false);
+		}
 	}
 
 	/**
@@ -280,7 +339,15 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 			throw new IllegalArgumentException("Can not remove block data from cache, it is already gone");
 		}
 		l4ZSection[modulo(loc.getBlockZ())] = null;
+		entryCount--;
+		if (indexes != null) {
+			unindex(blockData);
+		}
+		if (changeStream != null) {
+			changeStream.record(blockData, null);
+		}
 		setCacheState(CacheState.MODIFIED);
+		handleDataChange(blockData, true);
 	}
 
 	/**
@@ -301,7 +368,15 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		D oldData = (D) l4ZSection[z];
 		if (oldData != null) {
 			l4ZSection[z] = null;
+			entryCount--;
+			if (indexes != null) {
+				unindex(oldData);
+			}
+			if (changeStream != null) {
+				changeStream.record(oldData, null);
+			}
 			setCacheState(CacheState.MODIFIED);
+			handleDataChange(oldData, true);
 		}
 		return oldData;
 	}
@@ -318,8 +393,109 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		return remove(modulo(location.getBlockX()), location.getBlockY(), modulo(location.getBlockZ()));
 	}
 
-	@SuppressWarnings("rawtypes")
+	/**
+	 * Called whenever data in this cache is inserted, modified or removed, but
+	 * not when data is loaded from storage. No op by default
+	 * 
+	 * @param blockData Data which changed
+	 * @param removed   Whether the data was removed from this cache
+	 */
+	protected void handleDataChange(D blockData, boolean removed) {
+		// NO OP by default
+	}
+
+	/**
+	 * Called by data in this cache when it was modified. Data removed from this
+	 * cache already is ignored, its removal was reported when removing it
+	 */
+	void handleDataStateChange(D blockData) {
+		Location loc = blockData.getLocation();
+		BlockDataObject<D>[] l4ZSection = getL4ZSubArrayAbsolute(modulo(loc.getBlockX()), loc.getBlockY(), false);
+		if (l4ZSection == null || l4ZSection[modulo(loc.getBlockZ())] != blockData) {
+			return;
+		}
+		if (indexes != null) {
+			index(blockData);
+		}
+		if (changeStream != null) {
+			changeStream.record(blockData, blockData);
+		}
+		handleDataChange(blockData, false);
+	}
+
+	/**
+	 * Sets the secondary indexes this cache keeps up to date and adds all data
+	 * already in it to the indexes it has not been added to yet. Indexes are only
+	 * ever appended to the list, so this is cheap once the cache is up to date.
+	 * Called by the view owning this cache, plugins should create indexes through
+	 * their view instead
+	 * 
+	 * @param indexes Indexes to keep up to date, shared with all other caches of
+	 *                the same view
+	 */
+	public synchronized void setIndexes(List<BlockDataIndex<D, ?>> indexes) {
+		if (evicted) {
+			return;
+		}
+		if (this.indexes == indexes && filledIndexes == indexes.size()) {
+			return;
+		}
+		if (this.indexes != indexes) {
+			this.indexes = indexes;
+			this.filledIndexes = 0;
+		}
+		List<BlockDataIndex<D, ?>> current = List.copyOf(indexes);
+		List<BlockDataIndex<D, ?>> unfilled = current.subList(filledIndexes, current.size());
+		iterateAll(blockData -> {
+			for (BlockDataIndex<D, ?> index : unfilled) {
+				index.add(blockData);
+			}
+		});
+		filledIndexes = current.size();
+	}
+
+	/**
+	 * Sets the stream changes to data in this cache are reported to. Called by the
+	 * view owning this cache, plugins should subscribe through their view instead
+	 * 
+	 * @param changeStream Stream to report changes to, shared with all other
+	 *                     caches of the same view
+	 */
+	public void setChangeStream(BlockDataChangeStream<D> changeStream) {
+		this.changeStream = changeStream;
+	}
+
+	@Override
+	public synchronized void handleEviction() {
+		evicted = true;
+		if (indexes != null) {
+			forEachEntry(this::unindex);
+			indexes = null;
+		}
+	}
+
+	private void index(D blockData) {
+		for (BlockDataIndex<D, ?> index : indexes) {
+			index.add(blockData);
+		}
+	}
+
+	private void unindex(D blockData) {
+		for (BlockDataIndex<D, ?> index : indexes) {
+			index.remove(blockData);
+		}
+	}
+
 	public void iterateAll(Consumer<D> functionToApply) {
+		forEachEntry(functionToApply);
+	}
+
+	/**
+	 * Applies the given function to all data held in this cache, without giving
+	 * subclasses a chance to add data first like {@link #iterateAll(Consumer)}
+	 */
+	@SuppressWarnings("rawtypes")
+	private void forEachEntry(Consumer<D> functionToApply) {
 		for (int i = 0; i < data.length; i++) {
 			BlockDataObject[][][] l2Cache = data[i];
 			if (l2Cache == null) {
@@ -347,6 +523,28 @@ public abstract class BlockBasedChunkMeta<D extends BlockDataObject<D>, S extend
 		}
 	}
 
+	/**
+	 * Takes the state of the given data for writing it, see
+	 * {@link #takeChanges()}. The data counts as unchanged afterwards
+	 * 
+	 * @param blockData Data to take the state of
+	 * @return State before taking it
+	 */
+	protected static CacheState takeCacheState(BlockDataObject<?> blockData) {
+		return blockData.takeCacheState();
+	}
+
+	/**
+	 * Gives back a state taken through {@link #takeCacheState(BlockDataObject)}
+	 * which was not written after all
+	 * 
+	 * @param blockData Data to give the state back to
+	 * @param taken     State taken earlier
+	 */
+	protected static void restoreCacheState(BlockDataObject<?> blockData, CacheState taken) {
+		blockData.restoreCacheState(taken);
+	}
+
 	public static int modulo(int a) {
 		// javas % operator can return negative numbers, which we do not want
 		int result = a % L4_Z_SECTION_LENGTH;
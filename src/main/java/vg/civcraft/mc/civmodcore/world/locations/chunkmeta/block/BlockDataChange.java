@@ -0,0 +1,31 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block;
+
+import org.bukkit.Location;
+
+/**
+ * A change made to block data at one location, see
+ * {@link BlockDataChangeStream}. Data which was inserted has no old data, data
+ * which was removed has no new data and data which was modified in place has
+ * identical old and new data, as its previous state is not known
+ *
+ * @param location Location of the data
+ * @param oldData  Data at the location before the change, null if there was
+ *                 none
+ * @param newData  Data at the location after the change, null if there is none
+ * @param <D>      Data type changed
+ */
+public record BlockDataChange<D extends BlockDataObject<D>>(Location location, D oldData, D newData) {
+
+	public boolean isInsertion() {
+		return oldData == null;
+	}
+
+	public boolean isRemoval() {
+		return newData == null;
+	}
+
+	public boolean isModification() {
+		return oldData == newData;
+	}
+
+}
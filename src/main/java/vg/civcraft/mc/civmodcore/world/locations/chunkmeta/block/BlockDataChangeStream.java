@@ -0,0 +1,158 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Collects changes plugins make to block data and hands them to subscribers
+ * once per tick, so data can be mirrored elsewhere without wrapping every call
+ * site. Changes to the same location within a tick are coalesced into one,
+ * keeping the data from before the first and after the last change. Changes
+ * cancelling each other out, like data inserted and removed again within the
+ * same tick, are not reported at all.
+ *
+ * Only changes made by plugins are reported, not data being loaded from or
+ * dropped to the database. Changes made to data of unloaded chunks tracked
+ * individually are reported once the chunk loads.
+ *
+ * Nothing is collected while there are no subscribers
+ *
+ * @param <D> Data type changed
+ */
+public class BlockDataChangeStream<D extends BlockDataObject<D>> {
+
+	private final Plugin plugin;
+	private final List<Subscriber<D>> subscribers;
+	// changes since the last delivery by location, in order of their first change
+	private Map<Location, BlockDataChange<D>> pending;
+	private BukkitTask deliveryTask;
+
+	public BlockDataChangeStream(Plugin plugin) {
+		this.plugin = plugin;
+		this.subscribers = new CopyOnWriteArrayList<>();
+		this.pending = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Subscribes to changes. Must be called from the main thread
+	 *
+	 * @param consumer Consumer receiving all changes made within a tick at once,
+	 *                 in order of their first change
+	 * @param executor Executor to deliver changes on, null to deliver them on the
+	 *                 main thread at the start of the next tick
+	 */
+	public void subscribe(Consumer<List<BlockDataChange<D>>> consumer, Executor executor) {
+		if (consumer == null) {
+			throw new IllegalArgumentException("Consumer may not be null");
+		}
+		subscribers.add(new Subscriber<>(consumer, executor));
+		if (deliveryTask == null) {
+			deliveryTask = Bukkit.getScheduler().runTaskTimer(plugin, this::deliver, 1L, 1L);
+		}
+	}
+
+	/**
+	 * Unsubscribes from changes. Must be called from the main thread
+	 *
+	 * @param consumer Consumer previously subscribed
+	 */
+	public void unsubscribe(Consumer<List<BlockDataChange<D>>> consumer) {
+		subscribers.removeIf(s -> s.consumer() == consumer);
+		if (subscribers.isEmpty() && deliveryTask != null) {
+			deliveryTask.cancel();
+			deliveryTask = null;
+			synchronized (this) {
+				pending.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return Whether anyone is subscribed to changes
+	 */
+	public boolean hasSubscribers() {
+		return !subscribers.isEmpty();
+	}
+
+	/**
+	 * Records a change, coalescing it with earlier changes at the same location
+	 * since the last delivery
+	 *
+	 * @param oldData Data before the change, null if there was none
+	 * @param newData Data after the change, null if there is none
+	 */
+	void record(D oldData, D newData) {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+		Location location = newData != null ? newData.getLocation() : oldData.getLocation();
+		synchronized (this) {
+			BlockDataChange<D> earlier = pending.get(location);
+			if (earlier == null) {
+				pending.put(location, new BlockDataChange<>(location, oldData, newData));
+				return;
+			}
+			if (earlier.oldData() == null && newData == null) {
+				pending.remove(location);
+				return;
+			}
+			pending.put(location, new BlockDataChange<>(location, earlier.oldData(), newData));
+		}
+	}
+
+	/**
+	 * Delivers all pending changes right away and stops collecting changes. Must
+	 * be called from the main thread
+	 */
+	public void close() {
+		deliver();
+		subscribers.clear();
+		if (deliveryTask != null) {
+			deliveryTask.cancel();
+			deliveryTask = null;
+		}
+	}
+
+	private void deliver() {
+		List<BlockDataChange<D>> changes;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			changes = Collections.unmodifiableList(new ArrayList<>(pending.values()));
+			pending = new LinkedHashMap<>();
+		}
+		for (Subscriber<D> subscriber : subscribers) {
+			if (subscriber.executor() == null) {
+				subscriber.accept(changes, plugin);
+			} else {
+				subscriber.executor().execute(() -> subscriber.accept(changes, plugin));
+			}
+		}
+	}
+
+	private record Subscriber<D extends BlockDataObject<D>>(Consumer<List<BlockDataChange<D>>> consumer,
+			Executor executor) {
+
+		private void accept(List<BlockDataChange<D>> changes, Plugin plugin) {
+			try {
+				consumer.accept(changes);
+			} catch (Exception e) {
+				plugin.getLogger().log(Level.SEVERE, "Block data change subscriber failed", e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,280 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import org.bukkit.Location;
+import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
+
+/**
+ * Secondary index over an attribute of block data, which allows looking up all
+ * data with a given attribute value, optionally restricted to an area, without
+ * scanning every chunk. Lookups take time proportional to the result instead of
+ * to the total amount of data.
+ *
+ * Indexes are created through the view of a plugin and from then on kept up to
+ * date as data is inserted, modified, removed, loaded and dropped from memory.
+ * Only data held in memory is indexed, which is the data of loaded chunks, of
+ * chunks which unloaded recently and of pinned chunks. Data tracked
+ * individually for unloaded chunks is not indexed. Data whose attribute is null
+ * is not indexed either
+ *
+ * Thread-safe
+ *
+ * @param <D> Data type indexed
+ * @param <K> Attribute type indexed by
+ */
+public class BlockDataIndex<D extends BlockDataObject<D>, K> {
+
+	private final Function<? super D, ? extends K> attribute;
+	// attribute value -> world -> chunk key -> data in that chunk
+	private final Map<K, Map<UUID, Long2ObjectMap<ReferenceSet<D>>>> entries;
+	// value each data object is indexed under, so it can be found again once its
+	// attribute changed
+	private final Reference2ObjectMap<D, K> indexedValues;
+
+	public BlockDataIndex(Function<? super D, ? extends K> attribute) {
+		if (attribute == null) {
+			throw new IllegalArgumentException("Attribute may not be null");
+		}
+		this.attribute = attribute;
+		this.entries = new HashMap<>();
+		this.indexedValues = new Reference2ObjectOpenHashMap<>();
+	}
+
+	/**
+	 * Adds data to the index or moves it to its current attribute value if it is
+	 * already indexed
+	 *
+	 * @param data Data to index
+	 */
+	synchronized void add(D data) {
+		K value = attribute.apply(data);
+		K oldValue = indexedValues.get(data);
+		if (oldValue != null) {
+			if (oldValue.equals(value)) {
+				return;
+			}
+			removeEntry(data, oldValue);
+		}
+		if (value == null) {
+			indexedValues.remove(data);
+			return;
+		}
+		indexedValues.put(data, value);
+		Location loc = data.getLocation();
+		entries.computeIfAbsent(value, v -> new HashMap<>())
+				.computeIfAbsent(loc.getWorld().getUID(), w -> new Long2ObjectOpenHashMap<>())
+				.computeIfAbsent(toChunkKey(loc), c -> new ReferenceOpenHashSet<>()).add(data);
+	}
+
+	/**
+	 * Removes data from the index, if it is indexed
+	 *
+	 * @param data Data to remove
+	 */
+	synchronized void remove(D data) {
+		K value = indexedValues.remove(data);
+		if (value != null) {
+			removeEntry(data, value);
+		}
+	}
+
+	private void removeEntry(D data, K value) {
+		Map<UUID, Long2ObjectMap<ReferenceSet<D>>> worlds = entries.get(value);
+		if (worlds == null) {
+			return;
+		}
+		Location loc = data.getLocation();
+		UUID worldID = loc.getWorld().getUID();
+		Long2ObjectMap<ReferenceSet<D>> chunks = worlds.get(worldID);
+		if (chunks == null) {
+			return;
+		}
+		long chunkKey = toChunkKey(loc);
+		ReferenceSet<D> chunkEntries = chunks.get(chunkKey);
+		if (chunkEntries == null || !chunkEntries.remove(data) || !chunkEntries.isEmpty()) {
+			return;
+		}
+		chunks.remove(chunkKey);
+		if (chunks.isEmpty()) {
+			worlds.remove(worldID);
+			if (worlds.isEmpty()) {
+				entries.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * @param value Attribute value to look for
+	 * @return All indexed data with the given attribute value in any world
+	 */
+	public synchronized List<D> get(K value) {
+		List<D> result = new ArrayList<>();
+		Map<UUID, Long2ObjectMap<ReferenceSet<D>>> worlds = entries.get(value);
+		if (worlds == null) {
+			return result;
+		}
+		for (Long2ObjectMap<ReferenceSet<D>> chunks : worlds.values()) {
+			for (ReferenceSet<D> chunkEntries : chunks.values()) {
+				result.addAll(chunkEntries);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param value Attribute value to look for
+	 * @param world World to look in
+	 * @return All indexed data with the given attribute value in the given world
+	 */
+	public synchronized List<D> get(K value, World world) {
+		List<D> result = new ArrayList<>();
+		Long2ObjectMap<ReferenceSet<D>> chunks = getChunks(value, world);
+		if (chunks == null) {
+			return result;
+		}
+		for (ReferenceSet<D> chunkEntries : chunks.values()) {
+			result.addAll(chunkEntries);
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up all indexed data with the given attribute value within the given
+	 * cuboid. Only the chunks overlapping the area are looked at, so this is cheap
+	 * even if a lot of data with the given value exists elsewhere
+	 *
+	 * @param value Attribute value to look for
+	 * @param world World to look in
+	 * @param minX  Lower x-coordinate of the area, inclusive
+	 * @param minY  Lower y-coordinate of the area, inclusive
+	 * @param minZ  Lower z-coordinate of the area, inclusive
+	 * @param maxX  Upper x-coordinate of the area, inclusive
+	 * @param maxY  Upper y-coordinate of the area, inclusive
+	 * @param maxZ  Upper z-coordinate of the area, inclusive
+	 * @return All indexed data with the given attribute value in the given area
+	 */
+	public synchronized List<D> get(K value, World world, int minX, int minY, int minZ, int maxX, int maxY,
+			int maxZ) {
+		List<D> result = new ArrayList<>();
+		Long2ObjectMap<ReferenceSet<D>> chunks = getChunks(value, world);
+		if (chunks == null) {
+			return result;
+		}
+		int minChunkX = BlockBasedChunkMeta.toChunkCoord(minX);
+		int minChunkZ = BlockBasedChunkMeta.toChunkCoord(minZ);
+		int maxChunkX = BlockBasedChunkMeta.toChunkCoord(maxX);
+		int maxChunkZ = BlockBasedChunkMeta.toChunkCoord(maxZ);
+		long area = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+		if (area <= chunks.size()) {
+			// area is small compared to how spread out the data is, look at each chunk in it
+			for (int x = minChunkX; x <= maxChunkX; x++) {
+				for (int z = minChunkZ; z <= maxChunkZ; z++) {
+					ReferenceSet<D> chunkEntries = chunks.get(ChunkKey.of(x, z));
+					if (chunkEntries != null) {
+						addWithin(chunkEntries, result, minX, minY, minZ, maxX, maxY, maxZ);
+					}
+				}
+			}
+			return result;
+		}
+		for (Long2ObjectMap.Entry<ReferenceSet<D>> entry : chunks.long2ObjectEntrySet()) {
+			long chunkKey = entry.getLongKey();
+			int x = ChunkKey.getX(chunkKey);
+			int z = ChunkKey.getZ(chunkKey);
+			if (x >= minChunkX && x <= maxChunkX && z >= minChunkZ && z <= maxChunkZ) {
+				addWithin(entry.getValue(), result, minX, minY, minZ, maxX, maxY, maxZ);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Looks up all indexed data with the given attribute value within a cube
+	 * around the given location
+	 *
+	 * @param value  Attribute value to look for
+	 * @param center Center of the area to look in
+	 * @param radius Maximum distance from the center along each axis in blocks
+	 * @return All indexed data with the given attribute value in the given area
+	 */
+	public List<D> getNear(K value, Location center, int radius) {
+		return get(value, center.getWorld(), center.getBlockX() - radius, center.getBlockY() - radius,
+				center.getBlockZ() - radius, center.getBlockX() + radius, center.getBlockY() + radius,
+				center.getBlockZ() + radius);
+	}
+
+	/**
+	 * @param value Attribute value to count data for
+	 * @return How much indexed data has the given attribute value
+	 */
+	public synchronized int count(K value) {
+		Map<UUID, Long2ObjectMap<ReferenceSet<D>>> worlds = entries.get(value);
+		if (worlds == null) {
+			return 0;
+		}
+		int count = 0;
+		for (Long2ObjectMap<ReferenceSet<D>> chunks : worlds.values()) {
+			for (ReferenceSet<D> chunkEntries : chunks.values()) {
+				count += chunkEntries.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return All attribute values any indexed data currently has
+	 */
+	public synchronized Set<K> getValues() {
+		return new HashSet<>(entries.keySet());
+	}
+
+	/**
+	 * @return How much data is indexed in total
+	 */
+	public synchronized int size() {
+		return indexedValues.size();
+	}
+
+	private Long2ObjectMap<ReferenceSet<D>> getChunks(K value, World world) {
+		if (world == null) {
+			throw new IllegalArgumentException("World may not be null");
+		}
+		Map<UUID, Long2ObjectMap<ReferenceSet<D>>> worlds = entries.get(value);
+		if (worlds == null) {
+			return null;
+		}
+		return worlds.get(world.getUID());
+	}
+
+	private void addWithin(ReferenceSet<D> chunkEntries, List<D> result, int minX, int minY, int minZ, int maxX,
+			int maxY, int maxZ) {
+		for (D data : chunkEntries) {
+			Location loc = data.getLocation();
+			int x = loc.getBlockX();
+			int y = loc.getBlockY();
+			int z = loc.getBlockZ();
+			if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+				result.add(data);
+			}
+		}
+	}
+
+	private static long toChunkKey(Location loc) {
+		return ChunkKey.ofBlock((short) 0, loc.getBlockX(), loc.getBlockZ());
+	}
+
+}
@@ -31,12 +31,40 @@ public abstract class BlockDataObject<D extends BlockDataObject<D>> {
 		if (this.state != CacheState.NORMAL && oldState != this.state && owningCache != null) {
 			owningCache.setCacheState(CacheState.MODIFIED);
 		}
+		// removals are reported by the cache removing the data already
+		if (owningCache != null && state == CacheState.MODIFIED) {
+			@SuppressWarnings("unchecked")
+			D self = (D) this;
+			owningCache.handleDataStateChange(self);
+		}
 	}
 	
 	public CacheState getCacheState() {
 		return state;
 	}
 
+	/**
+	 * Takes the state of this instance for writing it to the database, after which
+	 * it counts as unchanged. Changes made from here on mark it dirty again
+	 * 
+	 * @return State before taking it
+	 */
+	CacheState takeCacheState() {
+		CacheState taken = this.state;
+		this.state = CacheState.NORMAL;
+		return taken;
+	}
+
+	/**
+	 * Gives back a state taken through {@link #takeCacheState()} which was not
+	 * written after all, merged with any changes made since
+	 * 
+	 * @param taken State taken earlier
+	 */
+	void restoreCacheState(CacheState taken) {
+		this.state = this.state == CacheState.NORMAL ? taken : taken.progress(this.state);
+	}
+
 	public void setOwningCache(BlockBasedChunkMeta<D, ? extends StorageEngine> owningCache) {
 		this.owningCache = owningCache;
 	}
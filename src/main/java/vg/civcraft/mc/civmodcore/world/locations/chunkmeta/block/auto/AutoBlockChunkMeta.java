@@ -1,5 +1,12 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 import org.bukkit.Location;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CacheState;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
@@ -7,10 +14,93 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunk
 public class AutoBlockChunkMeta<D extends SerializableDataObject<D>>
 		extends BlockBasedChunkMeta<D, AutoStorageEngine<D>> {
 
+	// serialized data not yet deserialized, only used with lazy deserialization
+	private Int2ObjectMap<byte[]> rawData;
+	private long rawDataSize;
+	// data removed from this cache since it was last persisted, its rows still need deleting
+	private List<D> removedEntries;
+	// changes taken for writing, see takeChanges()
+	private List<D> writingRemoved;
+	private List<D> writingEntries;
+	private List<CacheState> writingStates;
+	private long writingJournalSequence;
+	// whether the changes taken last were not written and need merging back
+	private boolean writeFailed;
+
 	public AutoBlockChunkMeta(AutoStorageEngine<D> storage) {
 		super(false, storage);
 	}
 
+	@Override
+	protected D get(int x, int y, int z) {
+		if (rawData != null) {
+			deserialize(x, y, z);
+		}
+		return super.get(x, y, z);
+	}
+
+	@Override
+	public void put(int x, int y, int z, D blockData, boolean isNew, boolean deletePreexisting) {
+		if (rawData != null) {
+			deserialize(x, y, z);
+		}
+		super.put(x, y, z, blockData, isNew, deletePreexisting);
+	}
+
+	@Override
+	protected D remove(int x, int y, int z) {
+		if (rawData != null) {
+			deserialize(x, y, z);
+		}
+		return super.remove(x, y, z);
+	}
+
+	@Override
+	public void iterateAll(Consumer<D> functionToApply) {
+		if (rawData != null) {
+			for (int key : rawData.keySet().toIntArray()) {
+				deserialize((key >> 4) & 15, key >> 8, key & 15);
+			}
+		}
+		super.iterateAll(functionToApply);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return rawData == null && super.isEmpty();
+	}
+
+	@Override
+	public int getEntryCount() {
+		return super.getEntryCount() + (rawData == null ? 0 : rawData.size());
+	}
+
+	@Override
+	public long getEstimatedSize() {
+		// raw data is held as an array plus an entry in a hash map
+		return super.getEstimatedSize() + (rawData == null ? 0 : rawDataSize + rawData.size() * 48L);
+	}
+
+	private void deserialize(int x, int y, int z) {
+		byte[] raw = rawData.remove(rawKey(x, y, z));
+		if (rawData.isEmpty()) {
+			rawData = null;
+		}
+		if (raw == null) {
+			return;
+		}
+		rawDataSize -= raw.length;
+		Location loc = new Location(chunkCoord.getWorld(), chunkCoord.getX() * 16 + x, y, chunkCoord.getZ() * 16 + z);
+		D data = storage.deserialize(loc, raw);
+		if (data != null) {
+			super.put(x, y, z, data, false, false);
+		}
+	}
+
+	private static int rawKey(int x, int y, int z) {
+		return (y << 8) | (x << 4) | z;
+	}
+
 	@Override
 	public void delete() {
 		// block based data does not delete entire chunks
@@ -19,8 +109,12 @@ public class AutoBlockChunkMeta<D extends SerializableDataObject<D>>
 
 	@Override
 	public void insert() {
-		iterateAll(d -> {
-			switch (d.getCacheState()) {
+		for (D d : writingRemoved) {
+			storage.deleteData(this.pluginID, d);
+		}
+		for (int i = 0; i < writingEntries.size(); i++) {
+			D d = writingEntries.get(i);
+			switch (writingStates.get(i)) {
 			case DELETED:
 				storage.deleteData(this.pluginID, d);
 				break;
@@ -30,13 +124,12 @@ public class AutoBlockChunkMeta<D extends SerializableDataObject<D>>
 			case NEW:
 				storage.insertData(this.pluginID, d);
 				break;
-			case NORMAL:
-				return;
 			default:
-				return;
+				break;
 			}
-			d.setCacheState(CacheState.NORMAL);
-		});
+		}
+		storage.markPersisted(this, writingJournalSequence);
+		clearWritingChanges();
 	}
 
 	@Override
@@ -44,8 +137,122 @@ public class AutoBlockChunkMeta<D extends SerializableDataObject<D>>
 		insert();
 	}
 
+	@Override
+	public boolean spill() {
+		if (storage.isJournaling()) {
+			// every change is in the journal already, which is replayed on next start
+			clearWritingChanges();
+			return true;
+		}
+		try {
+			for (D d : writingRemoved) {
+				storage.deferData(this.pluginID, d, true);
+			}
+			for (int i = 0; i < writingEntries.size(); i++) {
+				storage.deferData(this.pluginID, writingEntries.get(i), writingStates.get(i) == CacheState.DELETED);
+			}
+		} catch (SQLException e) {
+			// given back and written by a later flush, spilled data being replayed as well is harmless
+			return false;
+		}
+		clearWritingChanges();
+		return true;
+	}
+
+	/**
+	 * Moves the changed data aside and marks it as unchanged. Data in this cache is
+	 * only changed from the main thread, where this is called as well, so the
+	 * writer never sees data half way through being taken
+	 */
+	@Override
+	protected void takeChanges() {
+		if (writeFailed) {
+			mergeFailedChanges();
+		}
+		writingRemoved = takeRemovedEntries();
+		writingEntries = new ArrayList<>();
+		writingStates = new ArrayList<>();
+		// data not yet deserialized is unmodified, so it never needs writing
+		super.iterateAll(d -> {
+			CacheState state = takeCacheState(d);
+			if (state != CacheState.NORMAL) {
+				writingEntries.add(d);
+				writingStates.add(state);
+			}
+		});
+		writingJournalSequence = storage.getJournalSequence();
+	}
+
+	/**
+	 * Called from whichever thread failed to write, so the changes are only merged
+	 * back on the main thread the next time changes are taken
+	 */
+	@Override
+	protected void restoreChanges() {
+		writeFailed = true;
+	}
+
+	private void mergeFailedChanges() {
+		if (!writingRemoved.isEmpty()) {
+			if (removedEntries == null) {
+				removedEntries = new ArrayList<>();
+			}
+			removedEntries.addAll(0, writingRemoved);
+		}
+		for (int i = 0; i < writingEntries.size(); i++) {
+			D d = writingEntries.get(i);
+			Location loc = d.getLocation();
+			// data removed since is in the removed entries already
+			if (super.get(modulo(loc.getBlockX()), loc.getBlockY(), modulo(loc.getBlockZ())) == d) {
+				restoreCacheState(d, writingStates.get(i));
+			}
+		}
+		writeFailed = false;
+		clearWritingChanges();
+	}
+
+	private void clearWritingChanges() {
+		writingRemoved = null;
+		writingEntries = null;
+		writingStates = null;
+	}
+
+	@Override
+	protected void handleDataChange(D blockData, boolean removed) {
+		storage.journal(this, blockData, removed);
+		if (removed) {
+			Location loc = blockData.getLocation();
+			// data only marked as deleted is still in the cache and handled when persisting
+			if (super.get(modulo(loc.getBlockX()), loc.getBlockY(), modulo(loc.getBlockZ())) != blockData) {
+				if (removedEntries == null) {
+					removedEntries = new ArrayList<>();
+				}
+				removedEntries.add(blockData);
+			}
+		}
+	}
+
+	private List<D> takeRemovedEntries() {
+		List<D> removed = removedEntries;
+		if (removed == null) {
+			return Collections.emptyList();
+		}
+		removedEntries = null;
+		return removed;
+	}
+
 	@Override
 	public void populate() {
+		if (storage.isLazyDeserialization()) {
+			storage.loadRawDataForChunk(this.pluginID, this.chunkCoord, (x, y, z, raw) -> {
+				if (rawData == null) {
+					rawData = new Int2ObjectOpenHashMap<>();
+				}
+				rawData.put(rawKey(x, y, z), raw);
+				rawDataSize += raw.length;
+			});
+			return;
+		}
 		storage.loadDataForChunk(this.pluginID, this.chunkCoord, data -> {
 			Location loc = data.getLocation();
 			put(modulo(loc.getBlockX()), loc.getBlockY(), modulo(loc.getBlockZ()), data, false);
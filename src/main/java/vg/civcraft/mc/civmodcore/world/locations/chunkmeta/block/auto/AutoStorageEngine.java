@@ -1,11 +1,16 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -14,6 +19,7 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
 import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
+import vg.civcraft.mc.civmodcore.dao.StreamingQuery;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.ChunkCoord;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.XZWCoord;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
@@ -21,9 +27,19 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedStora
 
 public class AutoStorageEngine<D extends SerializableDataObject<D>> implements BlockBasedStorageEngine<D> {
 
+	private static final String GET_ALL_CHUNKS = "select distinct chunk_x, chunk_z, world_id from cmc_chunk_data "
+			+ "where (world_id, chunk_x, chunk_z) > (?, ?, ?) order by world_id, chunk_x, chunk_z limit ?;";
+	private static final int CHUNK_PAGE_SIZE = 10_000;
+	private static final String DELETE_DATA = "delete from cmc_chunk_data where chunk_x = ? and chunk_z = ? and world_id = ? "
+			+ "and plugin_id = ? and x_offset = ? and y = ? and z_offset = ?;";
+	private static final String UPSERT_DATA = "insert into cmc_chunk_data (chunk_x, chunk_z, world_id, plugin_id, x_offset, y, "
+			+ "z_offset, data) values(?,?,?,?,?,?,?,?) on duplicate key update data = values(data);";
+
 	private ManagedDatasource db;
 	private Logger logger;
 	private BiFunction<Location, String, D> dataDeserializer;
+	private volatile ChunkMetaJournal journal;
+	private boolean lazyDeserialization;
 
 	public AutoStorageEngine(ManagedDatasource db, Logger logger,
 			BiFunction<Location, String, D> dataDeserializer) {
@@ -33,46 +49,64 @@ public class AutoStorageEngine<D extends SerializableDataObject<D>> implements B
 	}
 
 	protected void deleteData(short pluginID, D data) {
-		try (Connection insertConn = db.getConnection();
-				PreparedStatement deleteChunk = insertConn.prepareStatement(
-						"delete from cmc_chunk_data where chunk_x = ? and chunk_z = ? and world_id = ? and plugin_id = ? and x_offset = ? and y = ? and z_offset = ?;")) {
-			ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
-			deleteChunk.setInt(1, chunkCoord.getX());
-			deleteChunk.setInt(2, chunkCoord.getZ());
-			deleteChunk.setShort(3, chunkCoord.getWorldID());
-			deleteChunk.setShort(4, pluginID);
-			deleteChunk.setByte(5, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockX()));
-			deleteChunk.setShort(6, (short) data.getLocation().getBlockY());
-			deleteChunk.setByte(7, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockZ()));
-			deleteChunk.execute();
+		ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
+		Location loc = data.getLocation();
+		try {
+			deleteData(pluginID, chunkCoord.getWorldID(), chunkCoord.getX(), chunkCoord.getZ(),
+					BlockBasedChunkMeta.modulo(loc.getBlockX()), loc.getBlockY(), BlockBasedChunkMeta.modulo(loc.getBlockZ()));
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Failed to delete chunk data", e);
 		}
 	}
 
+	private void deleteData(short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z)
+			throws SQLException {
+		db.getWriteSpool().execute(DELETE_DATA, chunkX, chunkZ, worldID, pluginID, (byte) x, (short) y, (byte) z);
+	}
+
 	protected void insertData(short pluginID, D data) {
-		try (Connection insertConn = db.getConnection();
-				PreparedStatement insertChunk = insertConn.prepareStatement(
-						"insert into cmc_chunk_data (chunk_x, chunk_z, world_id, plugin_id, x_offset, y, z_offset, data) values(?,?,?,?,?,?,?,?)")) {
-			ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
-			insertChunk.setInt(1, chunkCoord.getX());
-			insertChunk.setInt(2, chunkCoord.getZ());
-			insertChunk.setShort(3, chunkCoord.getWorldID());
-			insertChunk.setShort(4, pluginID);
-			insertChunk.setByte(5, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockX()));
-			insertChunk.setShort(6, (short) data.getLocation().getBlockY());
-			insertChunk.setByte(7, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockZ()));
-			insertChunk.setString(8, data.serialize().toString());
-			insertChunk.execute();
+		ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
+		Location loc = data.getLocation();
+		try {
+			upsertData(pluginID, chunkCoord.getWorldID(), chunkCoord.getX(), chunkCoord.getZ(),
+					BlockBasedChunkMeta.modulo(loc.getBlockX()), loc.getBlockY(), BlockBasedChunkMeta.modulo(loc.getBlockZ()),
+					data.serialize().toString());
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Failed to insert chunk data", e);
 		}
 	}
 
+	private void upsertData(short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z, String data)
+			throws SQLException {
+		// upsert, so that replaying a spooled or journaled insert is harmless
+		db.getWriteSpool().execute(UPSERT_DATA, chunkX, chunkZ, worldID, pluginID, (byte) x, (short) y, (byte) z,
+				data);
+	}
+
 	public void loadDataForChunk(short pluginID, ChunkCoord coord, Consumer<D> applyFunction) {
 		int preMultipliedX = coord.getX() * 16;
 		int preMultipliedZ = coord.getZ() * 16;
-		try (Connection insertConn = db.getConnection();
+		loadRawDataForChunk(pluginID, coord, (x, y, z, rawData) -> {
+			Location loc = new Location(coord.getWorld(), x + preMultipliedX, y, z + preMultipliedZ);
+			D data = deserialize(loc, rawData);
+			if (data != null) {
+				applyFunction.accept(data);
+			}
+		});
+	}
+
+	/**
+	 * Loads all data for the given chunk without deserializing it
+	 * 
+	 * @param pluginID      Internal id of the plugin to load data for
+	 * @param coord         Chunk to load data for
+	 * @param applyFunction Receives each entry's offsets within the chunk and its
+	 *                      serialized data as UTF-8
+	 */
+	void loadRawDataForChunk(short pluginID, ChunkCoord coord, RawDataConsumer applyFunction) {
+		// writes to this chunk may still be sitting in the spool from a database outage
+		db.getWriteSpool().flush();
+		try (Connection insertConn = db.getReadConnection(coord.getLastPersistTime());
 				PreparedStatement getData = insertConn.prepareStatement(
 						"select x_offset, y, z_offset, data from cmc_chunk_data where chunk_x = ? and chunk_z = ? and world_id = ? and plugin_id = ?;")) {
 			getData.setInt(1, coord.getX());
@@ -81,17 +115,7 @@ public class AutoStorageEngine<D extends SerializableDataObject<D>> implements B
 			getData.setShort(4, pluginID);
 			try (ResultSet rs = getData.executeQuery()) {
 				while (rs.next()) {
-					int xOffset = rs.getByte(1);
-					int x = xOffset + preMultipliedX;
-					int y = rs.getShort(2);
-					int zOffset = rs.getByte(3);
-					int z = zOffset + preMultipliedZ;
-					Location loc = new Location(coord.getWorld(), x, y, z);
-					String rawData = rs.getString(4);
-					D data = dataDeserializer.apply(loc,rawData);
-					if (data != null) {
-						applyFunction.accept(data);
-					}
+					applyFunction.accept(rs.getByte(1), rs.getShort(2), rs.getByte(3), rs.getBytes(4));
 				}
 			}
 		} catch (SQLException e) {
@@ -101,20 +125,37 @@ public class AutoStorageEngine<D extends SerializableDataObject<D>> implements B
 		}
 	}
 
+	D deserialize(Location location, byte[] rawData) {
+		return dataDeserializer.apply(location, new String(rawData, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Enables or disables lazy deserialization. When enabled, data is kept in its
+	 * serialized form when a chunk loads and only deserialized once it is first
+	 * retrieved. Most data in a loaded chunk is never looked at before the chunk
+	 * unloads again, so this saves deserializing it at all. Iterating over all data
+	 * of a chunk still deserializes all of it
+	 * 
+	 * @param lazyDeserialization Whether to deserialize lazily
+	 */
+	public void setLazyDeserialization(boolean lazyDeserialization) {
+		this.lazyDeserialization = lazyDeserialization;
+	}
+
+	public boolean isLazyDeserialization() {
+		return lazyDeserialization;
+	}
+
 	protected void updateData(short pluginID, D data) {
-		try (Connection insertConn = db.getConnection();
-				PreparedStatement updateChunk = insertConn.prepareStatement(
-						"update cmc_chunk_data set data = ? where chunk_x = ? and z = ? and world_id = ? and plugin_id = ? and x_offset = ? and y = ? and z_offset = ?;")) {
-			ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
-			updateChunk.setString(1, data.serialize().toString());
-			updateChunk.setInt(2, chunkCoord.getX());
-			updateChunk.setInt(3, chunkCoord.getZ());
-			updateChunk.setShort(4, chunkCoord.getWorldID());
-			updateChunk.setShort(5, pluginID);
-			updateChunk.setByte(6, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockX()));
-			updateChunk.setShort(7, (short) data.getLocation().getBlockY());
-			updateChunk.setByte(8, (byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockZ()));
-			updateChunk.execute();
+		ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
+		try {
+			db.getWriteSpool().execute(
+					"update cmc_chunk_data set data = ? where chunk_x = ? and chunk_z = ? and world_id = ? and plugin_id = ? and x_offset = ? and y = ? and z_offset = ?;",
+					data.serialize().toString(), chunkCoord.getX(), chunkCoord.getZ(), chunkCoord.getWorldID(),
+					pluginID,
+					(byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockX()),
+					(short) data.getLocation().getBlockY(),
+					(byte) BlockBasedChunkMeta.modulo(data.getLocation().getBlockZ()));
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Failed to update chunk data", e);
 		}
@@ -123,22 +164,144 @@ public class AutoStorageEngine<D extends SerializableDataObject<D>> implements B
 	@Override
 	public List<XZWCoord> getAllDataChunks() {
 		List<XZWCoord> result = new ArrayList<>();
-		try (Connection insertConn = db.getConnection();
-				PreparedStatement getChunks = insertConn.prepareStatement(
-						"select x, z, world_id from cmc_chunk_data group by chunk_x, chunk_z, world_id;");
-				ResultSet rs = getChunks.executeQuery()) {
-			while (rs.next()) {
-				int x = rs.getInt(1);
-				int z = rs.getInt(2);
-				short worldID = rs.getShort(3);
-				result.add(new XZWCoord(x, z, worldID));
-			}
+		// each row is its own key
+		StreamingQuery.RowReader<XZWCoord> readCoord = rs -> new XZWCoord(rs.getInt(1), rs.getInt(2), rs.getShort(3));
+		try {
+			db.stream(GET_ALL_CHUNKS, readCoord)
+					.keyset(CHUNK_PAGE_SIZE,
+							new XZWCoord(Integer.MIN_VALUE, Integer.MIN_VALUE, Short.MIN_VALUE),
+							readCoord,
+							(statement, key) -> {
+								statement.setShort(1, key.getWorldID());
+								statement.setInt(2, key.getX());
+								statement.setInt(3, key.getZ());
+							})
+					.forEach(result::add);
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Failed to retrieve chunk data", e);
 		}
 		return result;
 	}
 
+	/**
+	 * Enables the optional write-ahead journal, which records every change made to
+	 * this engine's chunk data and makes it durable within the given commit
+	 * interval, without waiting for the chunk to be written to the database. Any
+	 * journal left behind by a crash is first replayed into the database, so this
+	 * must be called before any chunk data is loaded, meaning before the
+	 * associated view is registered.
+	 * 
+	 * Call {@link #disableJournal()} once all data has been saved on shutdown
+	 * 
+	 * @param directory      Directory to keep the journal in, may not be shared
+	 *                       with other engines
+	 * @param commitInterval How often in milliseconds changes are written out and
+	 *                       synced to disk, which is the most that can be lost in a
+	 *                       crash
+	 * @throws IOException If a leftover journal could not be replayed or the
+	 *                     journal could not be opened. The engine keeps working
+	 *                     without a journal in that case
+	 */
+	public void enableJournal(File directory, long commitInterval) throws IOException {
+		if (journal != null) {
+			throw new IllegalStateException("Journal is already enabled");
+		}
+		// only the latest change to each block matters
+		Map<List<Object>, ChunkMetaJournal.Entry> latest = new LinkedHashMap<>();
+		int read = ChunkMetaJournal.read(directory, entry -> {
+			List<Object> key = entry.key();
+			latest.remove(key);
+			latest.put(key, entry);
+		});
+		if (read > 0) {
+			logger.info("Replaying " + latest.size() + " chunk data changes from journal " + directory);
+			for (ChunkMetaJournal.Entry entry : latest.values()) {
+				try {
+					if (entry.op() == ChunkMetaJournal.OP_PUT) {
+						upsertData(entry.pluginID(), entry.worldID(), entry.chunkX(), entry.chunkZ(), entry.x(),
+								entry.y(), entry.z(), entry.data());
+					} else {
+						deleteData(entry.pluginID(), entry.worldID(), entry.chunkX(), entry.chunkZ(), entry.x(),
+								entry.y(), entry.z());
+					}
+				} catch (SQLException e) {
+					throw new IOException("Failed to replay journal " + directory, e);
+				}
+			}
+		}
+		ChunkMetaJournal.delete(directory);
+		journal = new ChunkMetaJournal(directory, logger, commitInterval);
+	}
+
+	/**
+	 * Writes out any outstanding journal entries and stops journaling. If all
+	 * changes have been persisted by now, the journal is deleted, otherwise it is
+	 * replayed on next start
+	 */
+	public void disableJournal() {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	void journal(AutoBlockChunkMeta<D> chunkMeta, D data, boolean removed) {
+		ChunkMetaJournal currentJournal = journal;
+		ChunkCoord chunkCoord = chunkMeta.getChunkCoord();
+		if (currentJournal == null || chunkCoord == null) {
+			return;
+		}
+		Location loc = data.getLocation();
+		int x = BlockBasedChunkMeta.modulo(loc.getBlockX());
+		int z = BlockBasedChunkMeta.modulo(loc.getBlockZ());
+		if (removed) {
+			currentJournal.recordRemove(chunkMeta, chunkMeta.getPluginID(), chunkCoord.getWorldID(), chunkCoord.getX(),
+					chunkCoord.getZ(), x, loc.getBlockY(), z);
+		} else {
+			currentJournal.recordPut(chunkMeta, chunkMeta.getPluginID(), chunkCoord.getWorldID(), chunkCoord.getX(),
+					chunkCoord.getZ(), x, loc.getBlockY(), z, data.serialize().toString());
+		}
+	}
+
+	boolean isJournaling() {
+		return journal != null;
+	}
+
+	/**
+	 * Spools a change to the given data without attempting to write it to the
+	 * database first, used when out of time on shutdown
+	 */
+	void deferData(short pluginID, D data, boolean removed) throws SQLException {
+		ChunkCoord chunkCoord = data.getOwningCache().getChunkCoord();
+		Location loc = data.getLocation();
+		byte x = (byte) BlockBasedChunkMeta.modulo(loc.getBlockX());
+		byte z = (byte) BlockBasedChunkMeta.modulo(loc.getBlockZ());
+		if (removed) {
+			db.getWriteSpool().defer(DELETE_DATA, chunkCoord.getX(), chunkCoord.getZ(), chunkCoord.getWorldID(),
+					pluginID, x, (short) loc.getBlockY(), z);
+		} else {
+			db.getWriteSpool().defer(UPSERT_DATA, chunkCoord.getX(), chunkCoord.getZ(), chunkCoord.getWorldID(),
+					pluginID, x, (short) loc.getBlockY(), z, data.serialize().toString());
+		}
+	}
+
+	long getJournalSequence() {
+		ChunkMetaJournal currentJournal = journal;
+		return currentJournal == null ? 0 : currentJournal.getSequence();
+	}
+
+	void markPersisted(AutoBlockChunkMeta<D> chunkMeta, long journalSequence) {
+		ChunkMetaJournal currentJournal = journal;
+		if (currentJournal != null) {
+			currentJournal.markPersisted(chunkMeta, journalSequence);
+		}
+	}
+
+	@FunctionalInterface
+	interface RawDataConsumer {
+		void accept(int x, int y, int z, byte[] rawData);
+	}
+
 	@Override
 	public boolean stayLoaded() {
 		return false;
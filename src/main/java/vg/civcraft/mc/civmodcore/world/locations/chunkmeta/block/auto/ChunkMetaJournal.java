@@ -0,0 +1,375 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of changes made to chunk metadata, so that changes not yet written to the database survive a
+ * crash. Changes are buffered in memory and written out by a background thread every commit interval, followed by a
+ * single fsync for the whole group, so recording a change never blocks on I/O. A crash can therefore lose at most one
+ * commit interval's worth of changes.
+ *
+ * The journal is split into segments. A segment is deleted once every change recorded in it has been persisted to the
+ * database, which the storage engine reports through {@link #markPersisted(Object, long)}.
+ *
+ * Thread-safe
+ */
+class ChunkMetaJournal {
+
+	static final byte OP_PUT = 1;
+	static final byte OP_REMOVE = 2;
+
+	private static final int HEADER_SIZE = Integer.BYTES * 2;
+	private static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private final File directory;
+	private final Logger logger;
+	private final ScheduledExecutorService committer;
+	private final Object lock = new Object();
+	/**
+	 * Segment id to the sequence number of the last change written into it
+	 */
+	private final TreeMap<Long, Long> segments;
+	/**
+	 * Owner of changes (a chunk meta) to the sequence numbers of its first and last unpersisted change
+	 */
+	private final Map<Object, long[]> unpersisted;
+	private ByteArrayOutputStream buffer;
+	private long sequence;
+	private long bufferedSequence;
+	private long currentSegment;
+	private FileChannel channel;
+
+	ChunkMetaJournal(File directory, Logger logger, long commitInterval) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create journal directory " + directory);
+		}
+		this.directory = directory;
+		this.logger = logger;
+		this.segments = new TreeMap<>();
+		this.unpersisted = new IdentityHashMap<>();
+		this.buffer = new ByteArrayOutputStream();
+		List<Long> existing = listSegments(directory);
+		this.currentSegment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+		openSegment();
+		this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "CivModCore Chunk Meta Journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.committer.scheduleWithFixedDelay(this::commit, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Records that data was put at the given location
+	 *
+	 * @param owner Chunk meta the data belongs to, used to track when it has been persisted
+	 * @param data  Serialized form of the data
+	 */
+	void recordPut(Object owner, short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z,
+			String data) {
+		record(owner, encode(OP_PUT, pluginID, worldID, chunkX, chunkZ, x, y, z, data));
+	}
+
+	/**
+	 * Records that data was removed from the given location
+	 *
+	 * @param owner Chunk meta the data belonged to, used to track when it has been persisted
+	 */
+	void recordRemove(Object owner, short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z) {
+		record(owner, encode(OP_REMOVE, pluginID, worldID, chunkX, chunkZ, x, y, z, null));
+	}
+
+	/**
+	 * @return Sequence number of the most recently recorded change. Capture this before persisting an owner and pass
+	 *         it to {@link #markPersisted(Object, long)} once done
+	 */
+	long getSequence() {
+		synchronized (lock) {
+			return sequence;
+		}
+	}
+
+	/**
+	 * Marks all changes of the given owner up to the given sequence number as persisted
+	 *
+	 * @param owner    Chunk meta which was persisted
+	 * @param sequence Value of {@link #getSequence()} from before persisting began
+	 */
+	void markPersisted(Object owner, long sequence) {
+		synchronized (lock) {
+			long[] range = unpersisted.get(owner);
+			if (range == null) {
+				return;
+			}
+			if (range[1] <= sequence) {
+				unpersisted.remove(owner);
+			} else {
+				// changed while being persisted, these changes may or may not have made it
+				range[0] = Math.max(range[0], sequence + 1);
+			}
+		}
+	}
+
+	private void record(Object owner, byte[] entry) {
+		synchronized (lock) {
+			sequence++;
+			long[] range = unpersisted.get(owner);
+			if (range == null) {
+				unpersisted.put(owner, new long[] { sequence, sequence });
+			} else {
+				range[1] = sequence;
+			}
+			buffer.write(entry, 0, entry.length);
+			bufferedSequence = sequence;
+		}
+	}
+
+	/**
+	 * Writes all buffered changes to the current segment and forces them to disk, then cleans up segments no longer
+	 * needed
+	 */
+	private void commit() {
+		try {
+			byte[] pending;
+			long lastSequence;
+			synchronized (lock) {
+				if (buffer.size() == 0) {
+					deleteObsoleteSegments();
+					return;
+				}
+				pending = buffer.toByteArray();
+				buffer = new ByteArrayOutputStream(pending.length);
+				lastSequence = bufferedSequence;
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(pending);
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+			synchronized (lock) {
+				segments.put(currentSegment, lastSequence);
+				if (channel.size() >= MAX_SEGMENT_SIZE) {
+					channel.close();
+					currentSegment++;
+					openSegment();
+				}
+				deleteObsoleteSegments();
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Failed to write chunk meta journal", e);
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock
+	 */
+	private void deleteObsoleteSegments() {
+		long oldestNeeded = Long.MAX_VALUE;
+		for (long[] range : unpersisted.values()) {
+			oldestNeeded = Math.min(oldestNeeded, range[0]);
+		}
+		while (!segments.isEmpty()) {
+			Map.Entry<Long, Long> oldest = segments.firstEntry();
+			if (oldest.getKey() >= currentSegment || oldest.getValue() >= oldestNeeded) {
+				return;
+			}
+			segments.pollFirstEntry();
+			File file = segmentFile(directory, oldest.getKey());
+			if (!file.delete()) {
+				logger.warning("Failed to delete obsolete journal segment " + file);
+			}
+		}
+	}
+
+	private void openSegment() throws IOException {
+		channel = FileChannel.open(segmentFile(directory, currentSegment).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Commits all buffered changes and stops the journal. If nothing remains unpersisted, the journal is deleted
+	 * entirely, otherwise it will be replayed on next start
+	 */
+	void close() {
+		committer.shutdown();
+		try {
+			committer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		commit();
+		synchronized (lock) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Failed to close chunk meta journal", e);
+			}
+			if (unpersisted.isEmpty()) {
+				for (long segment : listSegments(directory)) {
+					segmentFile(directory, segment).delete();
+				}
+			} else {
+				logger.info(unpersisted.size() + " chunks have changes not yet persisted, keeping journal for replay");
+			}
+		}
+	}
+
+	/**
+	 * Reads all changes recorded in the journal in the given directory, oldest first. Entries torn by a crash are
+	 * skipped
+	 *
+	 * @param directory Directory holding the journal
+	 * @param consumer  Consumer to pass each change to
+	 * @return How many changes were read
+	 */
+	static int read(File directory, Consumer<Entry> consumer) throws IOException {
+		int count = 0;
+		for (long segment : listSegments(directory)) {
+			byte[] content = Files.readAllBytes(segmentFile(directory, segment).toPath());
+			ByteBuffer bytes = ByteBuffer.wrap(content);
+			while (bytes.remaining() >= HEADER_SIZE) {
+				int length = bytes.getInt();
+				int checksum = bytes.getInt();
+				if (length < 0 || length > bytes.remaining()) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				bytes.get(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				consumer.accept(decode(payload));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Deletes the journal in the given directory, once it has been replayed
+	 */
+	static void delete(File directory) {
+		for (long segment : listSegments(directory)) {
+			segmentFile(directory, segment).delete();
+		}
+	}
+
+	private static List<Long> listSegments(File directory) {
+		List<Long> result = new ArrayList<>();
+		String[] names = directory.list();
+		if (names == null) {
+			return result;
+		}
+		for (String name : names) {
+			if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+				continue;
+			}
+			try {
+				result.add(Long.parseLong(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			} catch (NumberFormatException e) {
+				// not ours
+			}
+		}
+		result.sort(null);
+		return result;
+	}
+
+	private static File segmentFile(File directory, long segment) {
+		return new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+	}
+
+	private static byte[] encode(byte op, short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z,
+			String data) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(data == null ? 32 : 32 + data.length());
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(op);
+			output.writeShort(pluginID);
+			output.writeShort(worldID);
+			output.writeInt(chunkX);
+			output.writeInt(chunkZ);
+			output.writeByte(x);
+			output.writeShort(y);
+			output.writeByte(z);
+			if (data != null) {
+				byte[] raw = data.getBytes(StandardCharsets.UTF_8);
+				output.writeInt(raw.length);
+				output.write(raw);
+			}
+			output.flush();
+			byte[] payload = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			ByteBuffer entry = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+			entry.putInt(payload.length);
+			entry.putInt((int) crc.getValue());
+			entry.put(payload);
+			return entry.array();
+		} catch (IOException e) {
+			// can not happen, we are writing to memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Entry decode(byte[] payload) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+		byte op = input.readByte();
+		short pluginID = input.readShort();
+		short worldID = input.readShort();
+		int chunkX = input.readInt();
+		int chunkZ = input.readInt();
+		int x = input.readUnsignedByte();
+		int y = input.readShort();
+		int z = input.readUnsignedByte();
+		String data = null;
+		if (op == OP_PUT) {
+			byte[] raw = new byte[input.readInt()];
+			input.readFully(raw);
+			data = new String(raw, StandardCharsets.UTF_8);
+		}
+		return new Entry(op, pluginID, worldID, chunkX, chunkZ, x, y, z, data);
+	}
+
+	/**
+	 * A single recorded change, data is null for removals
+	 */
+	record Entry(byte op, short pluginID, short worldID, int chunkX, int chunkZ, int x, int y, int z, String data) {
+
+		/**
+		 * @return Identifies the block this change was made to
+		 */
+		List<Object> key() {
+			return Arrays.asList(pluginID, worldID, chunkX, chunkZ, x, y, z);
+		}
+
+	}
+
+}
@@ -2,7 +2,11 @@ package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.function.BiFunction;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bukkit.Location;
 import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
@@ -18,4 +22,42 @@ public class JsonStorageEngine<D extends JsonableDataObject<D>> extends AutoStor
 		});
 	}
 
+	private JsonStorageEngine(ManagedDatasource db, Logger logger, StreamingDeserializer<D> dataDeserializer) {
+		super(db, logger, (l, s) -> {
+			try (JsonReader reader = new JsonReader(new StringReader(s))) {
+				reader.setLenient(true);
+				return dataDeserializer.deserialize(l, reader);
+			} catch (IOException | IllegalStateException e) {
+				logger.log(Level.SEVERE, "Failed to decode json data at " + l, e);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Creates a storage engine which deserializes straight from the stored json
+	 * text, without parsing it into a {@link JsonObject} first. Pairs with data
+	 * objects overriding
+	 * {@link JsonableDataObject#concreteSerialize(com.google.gson.stream.JsonWriter)},
+	 * but reads data written by either serialization
+	 * 
+	 * @param db               Database to store data in
+	 * @param logger           Logger to log errors to
+	 * @param dataDeserializer Deserializer reading a single json object
+	 * @return Created storage engine
+	 */
+	public static <D extends JsonableDataObject<D>> JsonStorageEngine<D> streaming(ManagedDatasource db,
+			Logger logger, StreamingDeserializer<D> dataDeserializer) {
+		return new JsonStorageEngine<>(db, logger, dataDeserializer);
+	}
+
+	@FunctionalInterface
+	public interface StreamingDeserializer<D> {
+		/**
+		 * Reads a single data object from the given reader, which is positioned
+		 * before the object's opening brace
+		 */
+		D deserialize(Location location, JsonReader reader) throws IOException;
+	}
+
 }
@@ -1,21 +1,64 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
 import org.bukkit.Location;
 
 public abstract class JsonableDataObject<D extends JsonableDataObject<D>> extends SerializableDataObject<D> {
-	
+
+	// writes elements the same way JsonElement.toString() does
+	private static final Gson TREE_WRITER = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
 	public JsonableDataObject(Location location, boolean isNew) {
 		super(location, isNew);
 	}
 
 	public abstract void concreteSerialize(JsonObject base);
 
-	@Override
-	public String serialize() {
+	/**
+	 * Writes this object's fields to the given writer, which has already begun the
+	 * surrounding json object. Override this to skip building an intermediate
+	 * {@link JsonObject} on every save, pairing it with a deserializer reading from
+	 * a {@link com.google.gson.stream.JsonReader}, see
+	 * {@link JsonStorageEngine#streaming(vg.civcraft.mc.civmodcore.dao.ManagedDatasource, java.util.logging.Logger, JsonStorageEngine.StreamingDeserializer)}.
+	 * By default this writes the fields produced by
+	 * {@link #concreteSerialize(JsonObject)}
+	 * 
+	 * @param writer Writer to write fields to
+	 * @throws IOException If writing fails
+	 */
+	protected void concreteSerialize(JsonWriter writer) throws IOException {
 		JsonObject json = new JsonObject();
 		concreteSerialize(json);
-		return json.toString();
+		for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+			writer.name(entry.getKey());
+			TREE_WRITER.toJson(entry.getValue(), writer);
+		}
+	}
+
+	@Override
+	public String serialize() {
+		StringWriter buffer = new StringWriter();
+		// same settings as JsonElement.toString(), so the output stays identical
+		JsonWriter writer = new JsonWriter(buffer);
+		writer.setLenient(true);
+		try {
+			writer.beginObject();
+			concreteSerialize(writer);
+			writer.endObject();
+			writer.flush();
+		} catch (IOException e) {
+			// can not happen when writing to a string
+			throw new UncheckedIOException(e);
+		}
+		return buffer.toString();
 	}
 
 }
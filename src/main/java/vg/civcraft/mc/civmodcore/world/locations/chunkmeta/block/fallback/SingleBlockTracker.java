@@ -1,5 +1,7 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.fallback;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -7,25 +9,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.bukkit.Location;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.XZWCoord;
-import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockDataObject;
 
 public class SingleBlockTracker<D extends BlockDataObject<D>> {
 
-	private Map<XZWCoord, Map<Location, D>> blocks;
+	// packed chunk key -> data in that chunk
+	private Long2ObjectMap<Map<Location, D>> blocks;
 
 	public SingleBlockTracker() {
-		blocks = new HashMap<>();
+		blocks = new Long2ObjectOpenHashMap<>();
 	}
 
 	public void putBlock(D data, short worldID) {
-		Map<Location, D> existing = blocks.computeIfAbsent(toCoord(data.getLocation(), worldID), s -> new HashMap<>());
+		Map<Location, D> existing = blocks.computeIfAbsent(toKey(data.getLocation(), worldID), s -> new HashMap<>());
 		existing.put(data.getLocation(), data);
 	}
 
 	public D getBlock(Location location, short worldID) {
-		Map<Location, D> existing = blocks.get(toCoord(location, worldID));
+		Map<Location, D> existing = blocks.get(toKey(location, worldID));
 		if (existing == null) {
 			return null;
 		}
@@ -33,24 +36,39 @@ public class SingleBlockTracker<D extends BlockDataObject<D>> {
 	}
 
 	public D removeBlock(Location location, short worldID) {
-		Map<Location, D> existing = blocks.get(toCoord(location, worldID));
+		long key = toKey(location, worldID);
+		Map<Location, D> existing = blocks.get(key);
 		if (existing == null) {
 			return null;
 		}
-		return existing.remove(location);
+		D removed = existing.remove(location);
+		if (existing.isEmpty()) {
+			blocks.remove(key);
+		}
+		return removed;
 	}
 
 	public Collection<D> getAllForChunkAndRemove(XZWCoord chunk) {
-		Map<Location, D> removed = blocks.remove(chunk);
+		Map<Location, D> removed = blocks.remove(chunk.getKey());
 		if (removed == null) {
 			return Collections.emptyList();
 		}
 		return removed.values();
 	}
 
-	private static XZWCoord toCoord(Location location, short worldID) {
-		return new XZWCoord(BlockBasedChunkMeta.toChunkCoord(location.getBlockX()),
-				BlockBasedChunkMeta.toChunkCoord(location.getBlockZ()), worldID);
+	private static long toKey(Location location, short worldID) {
+		return ChunkKey.ofBlock(worldID, location.getBlockX(), location.getBlockZ());
+	}
+
+	/**
+	 * @return Amount of tracked blocks per internal world id
+	 */
+	public Map<Short, Integer> getCountPerWorld() {
+		Map<Short, Integer> result = new HashMap<>();
+		for (Long2ObjectMap.Entry<Map<Location, D>> entry : blocks.long2ObjectEntrySet()) {
+			result.merge(ChunkKey.getWorldID(entry.getLongKey()), entry.getValue().size(), Integer::sum);
+		}
+		return result;
 	}
 
 	public Collection<D> getAll() {
@@ -1,19 +1,34 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.table;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import org.bukkit.Location;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CacheState;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
 
+/**
+ * Chunk meta whose entries are stored in tables of the plugin owning them,
+ * through a {@link TableStorageEngine}. As those writes are specific to each
+ * plugin, changes can not be spilled to disk on shutdown, so changes not written
+ * by the chunk meta flush deadline are lost
+ */
 public abstract class TableBasedBlockChunkMeta<D extends TableBasedDataObject>
 		extends BlockBasedChunkMeta<TableBasedDataObject, TableStorageEngine<D>> {
 
-	private List<D> modifiedEntries;
+	// identity based, so an entry changed several times is still only written once
+	private Set<D> modifiedEntries;
+	// changes taken for writing, see takeChanges()
+	private List<D> writingEntries;
+	private List<CacheState> writingStates;
+	// whether the changes taken last were not written and need merging back
+	private boolean writeFailed;
 
 	public TableBasedBlockChunkMeta(boolean isNew, TableStorageEngine<D> storage) {
 		super(isNew, storage);
-		this.modifiedEntries = new ArrayList<>();
+		this.modifiedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
 	}
 
 	public void reportChange(D data) {
@@ -52,30 +67,99 @@ public abstract class TableBasedBlockChunkMeta<D extends TableBasedDataObject>
 
 	@Override
 	public void insert() {
-		for (D data : modifiedEntries) {
-			switch (data.getCacheState()) {
-			case NORMAL:
-				continue;
+		List<D> inserted = new ArrayList<>();
+		List<D> updated = new ArrayList<>();
+		List<D> deleted = new ArrayList<>();
+		for (int i = 0; i < writingEntries.size(); i++) {
+			D data = writingEntries.get(i);
+			switch (writingStates.get(i)) {
 			case MODIFIED:
-				storage.update(data, chunkCoord);
+				updated.add(data);
 				break;
 			case NEW:
-				storage.insert(data, chunkCoord);
+				inserted.add(data);
 				break;
 			case DELETED:
-				storage.delete(data, chunkCoord);
+				deleted.add(data);
+				break;
+			default:
+				break;
+			}
+		}
+		List<D> failedEntries = new ArrayList<>();
+		List<CacheState> failedStates = new ArrayList<>();
+		// deletions first, a new entry may take the place of a deleted one
+		if (!storage.deleteAll(deleted, chunkCoord)) {
+			keepFailed(deleted, CacheState.DELETED, failedEntries, failedStates);
+		}
+		if (!storage.insertAll(inserted, chunkCoord)) {
+			keepFailed(inserted, CacheState.NEW, failedEntries, failedStates);
+		}
+		if (!storage.updateAll(updated, chunkCoord)) {
+			keepFailed(updated, CacheState.MODIFIED, failedEntries, failedStates);
+		}
+		if (failedEntries.isEmpty()) {
+			writingEntries = null;
+			writingStates = null;
+		} else {
+			// merged back the next time changes are taken, the rest counts as written
+			writingEntries = failedEntries;
+			writingStates = failedStates;
+			writeFailed = true;
+			setCacheState(CacheState.MODIFIED);
+		}
+	}
+
+	private static <D> void keepFailed(List<D> failed, CacheState state, List<D> failedEntries,
+			List<CacheState> failedStates) {
+		for (D data : failed) {
+			failedEntries.add(data);
+			failedStates.add(state);
+		}
+	}
+
+	/**
+	 * Moves the modified entries aside and marks them as unchanged. Entries are only
+	 * changed from the main thread, where this is called as well, so the writer
+	 * never sees an entry half way through being taken
+	 */
+	@Override
+	protected void takeChanges() {
+		if (writeFailed) {
+			for (int i = 0; i < writingEntries.size(); i++) {
+				D data = writingEntries.get(i);
+				restoreCacheState(data, writingStates.get(i));
+				modifiedEntries.add(data);
+			}
+			writeFailed = false;
+		}
+		writingEntries = new ArrayList<>(modifiedEntries.size());
+		writingStates = new ArrayList<>(modifiedEntries.size());
+		for (D data : modifiedEntries) {
+			CacheState state = takeCacheState(data);
+			if (state != CacheState.NORMAL) {
+				writingEntries.add(data);
+				writingStates.add(state);
 			}
-			data.setCacheState(CacheState.NORMAL);
 		}
 		modifiedEntries.clear();
 	}
 
+	/**
+	 * Called from whichever thread failed to write, so the changes are only merged
+	 * back on the main thread the next time changes are taken
+	 */
+	@Override
+	protected void restoreChanges() {
+		writeFailed = true;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void delete() {
-		iterateAll(d -> {
-			storage.delete((D)d, chunkCoord);
-		});
+		List<D> all = new ArrayList<>();
+		iterateAll(d -> all.add((D) d));
+		storage.deleteAll(all, chunkCoord);
 	}
 
 	@Override
@@ -1,6 +1,11 @@
 package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.table;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import vg.civcraft.mc.civmodcore.dao.ManagedDatasource;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CacheState;
@@ -11,6 +16,8 @@ import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedStora
 public abstract class TableStorageEngine<D extends TableBasedDataObject>
 		implements BlockBasedStorageEngine<TableBasedDataObject> {
 
+	private static final int MAX_BATCH_SIZE = 1000;
+
 	protected ManagedDatasource db;
 	protected Logger logger;
 
@@ -32,6 +39,162 @@ public abstract class TableStorageEngine<D extends TableBasedDataObject>
 
 	public abstract void delete(D data, XZWCoord coord);
 
+	/**
+	 * Inserts all of the given entries, which are all in the given chunk. Uses a
+	 * single transaction of JDBC batches if {@link #getBatchInsert()} is
+	 * implemented, otherwise falls back to
+	 * {@link #insert(TableBasedDataObject, XZWCoord)} for each entry
+	 * 
+	 * @param data  Entries to insert
+	 * @param coord Chunk the entries are in
+	 * @return False if the batch failed, in which case none of the entries were
+	 *         written. Always true when falling back to single inserts, which
+	 *         handle failures themselves
+	 */
+	public boolean insertAll(Collection<D> data, XZWCoord coord) {
+		BatchQuery<D> batch = getBatchInsert();
+		if (batch == null) {
+			data.forEach(d -> insert(d, coord));
+			return true;
+		}
+		return executeBatch(batch, data, coord);
+	}
+
+	/**
+	 * Updates all of the given entries, which are all in the given chunk. Uses a
+	 * single transaction of JDBC batches if {@link #getBatchUpdate()} is
+	 * implemented, otherwise falls back to
+	 * {@link #update(TableBasedDataObject, XZWCoord)} for each entry
+	 * 
+	 * @param data  Entries to update
+	 * @param coord Chunk the entries are in
+	 * @return False if the batch failed, in which case none of the entries were
+	 *         written. Always true when falling back to single updates, which
+	 *         handle failures themselves
+	 */
+	public boolean updateAll(Collection<D> data, XZWCoord coord) {
+		BatchQuery<D> batch = getBatchUpdate();
+		if (batch == null) {
+			data.forEach(d -> update(d, coord));
+			return true;
+		}
+		return executeBatch(batch, data, coord);
+	}
+
+	/**
+	 * Deletes all of the given entries, which are all in the given chunk. Uses a
+	 * single transaction of JDBC batches if {@link #getBatchDelete()} is
+	 * implemented, otherwise falls back to
+	 * {@link #delete(TableBasedDataObject, XZWCoord)} for each entry
+	 * 
+	 * @param data  Entries to delete
+	 * @param coord Chunk the entries are in
+	 * @return False if the batch failed, in which case none of the entries were
+	 *         written. Always true when falling back to single deletes, which
+	 *         handle failures themselves
+	 */
+	public boolean deleteAll(Collection<D> data, XZWCoord coord) {
+		BatchQuery<D> batch = getBatchDelete();
+		if (batch == null) {
+			data.forEach(d -> delete(d, coord));
+			return true;
+		}
+		return executeBatch(batch, data, coord);
+	}
+
+	/**
+	 * Implement this to have {@link #insertAll(Collection, XZWCoord)} insert in
+	 * JDBC batches. Only do so if {@link #insert(TableBasedDataObject, XZWCoord)}
+	 * does nothing beyond running the same query, as it is bypassed then
+	 * 
+	 * @return Query inserting a single entry and how to bind it, null to not batch
+	 *         inserts
+	 */
+	protected BatchQuery<D> getBatchInsert() {
+		return null;
+	}
+
+	/**
+	 * Implement this to have {@link #updateAll(Collection, XZWCoord)} update in
+	 * JDBC batches. Only do so if {@link #update(TableBasedDataObject, XZWCoord)}
+	 * does nothing beyond running the same query, as it is bypassed then
+	 * 
+	 * @return Query updating a single entry and how to bind it, null to not batch
+	 *         updates
+	 */
+	protected BatchQuery<D> getBatchUpdate() {
+		return null;
+	}
+
+	/**
+	 * Implement this to have {@link #deleteAll(Collection, XZWCoord)} delete in
+	 * JDBC batches. Only do so if {@link #delete(TableBasedDataObject, XZWCoord)}
+	 * does nothing beyond running the same query, as it is bypassed then
+	 * 
+	 * @return Query deleting a single entry and how to bind it, null to not batch
+	 *         deletes
+	 */
+	protected BatchQuery<D> getBatchDelete() {
+		return null;
+	}
+
+	/**
+	 * Query writing a single entry, run in JDBC batches for many entries at once
+	 * 
+	 * @param query  Query with placeholders for the entry
+	 * @param binder Binds an entry to the query
+	 */
+	public record BatchQuery<D>(String query, EntryBinder<D> binder) {
+	}
+
+	@FunctionalInterface
+	public interface EntryBinder<D> {
+		void bind(PreparedStatement statement, D data, XZWCoord coord) throws SQLException;
+	}
+
+	private boolean executeBatch(BatchQuery<D> batch, Collection<D> data, XZWCoord coord) {
+		if (data.isEmpty()) {
+			return true;
+		}
+		try (Connection conn = db.getConnection()) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try (PreparedStatement statement = conn.prepareStatement(batch.query())) {
+				int pending = 0;
+				for (D d : data) {
+					batch.binder().bind(statement, d, coord);
+					statement.addBatch();
+					if (++pending >= MAX_BATCH_SIZE) {
+						statement.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					statement.executeBatch();
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			logger.log(Level.SEVERE, "Failed to write batch of " + data.size() + " entries in " + coord, e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Loads all data for the given chunk. Implementations may get their connection
+	 * through {@link ManagedDatasource#getReadConnection(long)}, passing
+	 * {@link vg.civcraft.mc.civmodcore.world.locations.chunkmeta.ChunkCoord#getLastPersistTime()},
+	 * to offload chunk loading to read replicas if any are configured
+	 * 
+	 * @param chunkData      Chunk to load data for
+	 * @param insertFunction Function to insert each loaded entry with
+	 */
 	public abstract void fill(TableBasedBlockChunkMeta<D> chunkData, Consumer<D> insertFunction);
 	
 	@SuppressWarnings("unchecked")
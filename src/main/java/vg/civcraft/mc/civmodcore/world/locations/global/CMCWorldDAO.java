@@ -5,6 +5,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -28,7 +30,9 @@ public class CMCWorldDAO {
 			insertPlugin.setString(1, identifier);
 			try (ResultSet rs = insertPlugin.executeQuery()) {
 				if (rs.next()) {
-					return rs.getShort(1);
+					short id = rs.getShort(1);
+					touchPlugin(insertConn, id);
+					return id;
 				}
 			}
 		} catch (SQLException e) {
@@ -53,15 +57,39 @@ public class CMCWorldDAO {
 		}
 	}
 
+	/**
+	 * Records that the given plugin is still in use, so the chunk data cleanup
+	 * does not consider its data abandoned
+	 */
+	private void touchPlugin(Connection conn, short id) throws SQLException {
+		try (PreparedStatement touch = conn
+				.prepareStatement("update cmc_plugins set last_registered = current_timestamp where id = ?;")) {
+			touch.setShort(1, id);
+			touch.executeUpdate();
+		}
+	}
+
 	public short getOrCreatePluginID(JavaPlugin plugin) {
 		return getOrCreatePluginID(plugin.getName());
 	}
 
 	short getOrCreateWorldID(World world) {
+		return getOrCreateWorldID(world.getUID(), world.getName());
+	}
+
+	/**
+	 * Gets the internal id of a world, which does not need to be loaded or exist
+	 * on this server
+	 * 
+	 * @param uuid UUID of the world
+	 * @param name Name of the world, used if it is not known yet
+	 * @return Internal id of the world or -1 if it could not be retrieved
+	 */
+	public short getOrCreateWorldID(UUID uuid, String name) {
 		try (Connection insertConn = db.getConnection();
 				PreparedStatement insertWorld = insertConn
 						.prepareStatement("select id from cmc_worlds where uuid = ?;")) {
-			insertWorld.setString(1, world.getUID().toString());
+			insertWorld.setString(1, uuid.toString());
 			try (ResultSet rs = insertWorld.executeQuery()) {
 				if (rs.next()) {
 					return rs.getShort(1);
@@ -74,8 +102,8 @@ public class CMCWorldDAO {
 		try (Connection insertConn = db.getConnection();
 				PreparedStatement insertWorld = insertConn.prepareStatement(
 						"insert into cmc_worlds (uuid, name) values(?,?);", Statement.RETURN_GENERATED_KEYS);) {
-			insertWorld.setString(1, world.getUID().toString());
-			insertWorld.setString(2, world.getName());
+			insertWorld.setString(1, uuid.toString());
+			insertWorld.setString(2, name);
 			insertWorld.execute();
 			try (ResultSet rs = insertWorld.getGeneratedKeys()) {
 				if (!rs.next()) {
@@ -107,6 +135,8 @@ public class CMCWorldDAO {
 						"add column y smallint not null," +
 						"add column z_offset tinyint unsigned not null," +
 						"add primary key(world_id, chunk_x, chunk_z, plugin_id, x_offset, y, z_offset)");
+		db.registerMigration(3, false,
+				"alter table cmc_plugins add column last_registered timestamp not null default current_timestamp");
 	}
 
 	public boolean updateDatabase() {
@@ -114,4 +144,9 @@ public class CMCWorldDAO {
 		return db.updateDatabase();
 	}
 
+	public CompletableFuture<Boolean> updateDatabaseAsync() {
+		registerMigrations();
+		return db.updateDatabaseAsync();
+	}
+
 }
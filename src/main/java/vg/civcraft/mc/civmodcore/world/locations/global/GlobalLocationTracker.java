@@ -1,57 +1,215 @@
 package vg.civcraft.mc.civmodcore.world.locations.global;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
-import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.CacheState;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.XZWCoord;
 import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
 
-public class GlobalLocationTracker<T extends LocationTrackable> {
+/**
+ * Tracks data at individual locations, all of which is held in memory at all
+ * times. Chunk loads and unloads are received through the
+ * {@link ChunkLifecycleDispatcher}, which only calls this tracker for chunks it
+ * actually holds data in.
+ *
+ * Load callbacks of trackables are made under a time budget per tick. Once it
+ * is used up, the remaining load callbacks are spread over the following ticks.
+ * Unload callbacks are always made right away, as the chunk is gone afterwards,
+ * but only to trackables which received their load callback
+ */
+public class GlobalLocationTracker<T extends LocationTrackable> implements ChunkLifecycleDispatcher.Subscriber {
+
+	public static final long DEFAULT_CHUNK_CALLBACK_BUDGET = TimeUnit.MILLISECONDS.toNanos(2);
 
 	private Map<Location, T> tracked;
 	private GlobalTrackableDAO<T> dao;
 	private Map<Location, T> deleted;
-	private Map<XZWCoord, Map<Location, T>> perChunk;
+	// packed chunk key -> data in that chunk
+	private Long2ObjectMap<Map<Location, T>> perChunk;
+	private final String name;
+	// chunk loads whose callbacks did not fit into the budget, in order
+	private final Queue<PendingLoad<T>> pendingLoads;
+	// packed chunk key -> its pending load, if any
+	private final Long2ObjectMap<PendingLoad<T>> pendingByChunk;
+	private BukkitTask pendingTask;
+	private long callbackBudget;
+	private int budgetTick;
+	private long budgetSpent;
 
 	public GlobalLocationTracker(GlobalTrackableDAO<T> dao) {
+		this(dao, GlobalLocationTracker.class.getSimpleName());
+	}
+
+	/**
+	 * @param dao  DAO to load and persist data through
+	 * @param name Name to list this tracker under in chunk lifecycle timings
+	 */
+	public GlobalLocationTracker(GlobalTrackableDAO<T> dao, String name) {
+		this.name = name;
 		this.tracked = new HashMap<>();
 		this.dao = dao;
 		this.deleted = new HashMap<>();
-		this.perChunk = new HashMap<>();
+		this.perChunk = new Long2ObjectOpenHashMap<>();
+		this.pendingLoads = new ArrayDeque<>();
+		this.pendingByChunk = new Long2ObjectOpenHashMap<>();
+		this.callbackBudget = DEFAULT_CHUNK_CALLBACK_BUDGET;
+		this.budgetTick = -1;
+	}
+
+	/**
+	 * Sets how much time load callbacks of trackables may take up per tick before
+	 * the remaining ones are deferred to the next tick
+	 *
+	 * @param budget Time budget per tick
+	 * @param unit   Unit of the budget
+	 */
+	public synchronized void setChunkCallbackBudget(long budget, TimeUnit unit) {
+		this.callbackBudget = unit.toNanos(budget);
 	}
 	
 	public synchronized void initFromDB() {
 		dao.loadAll(this::put);
 	}
 
-	public void handleChunkLoad(Chunk chunk) {
-		Map<Location, T> perChunkMap = perChunk.get(XZWCoord.fromChunk(chunk));
-		if (perChunkMap != null) {
-			for(Map.Entry<Location,T> entry : perChunkMap.entrySet()) {
-				int x = BlockBasedChunkMeta.modulo(entry.getKey().getBlockX());
-				int z = BlockBasedChunkMeta.modulo(entry.getKey().getBlockZ());
-				Block block = chunk.getBlock(x, entry.getKey().getBlockY(), z);
-				entry.getValue().onChunkLoad(block);
+	@Override
+	public void onChunkLoad(Chunk chunk) {
+		handleChunkLoad(chunk);
+	}
+
+	@Override
+	public void onChunkUnload(Chunk chunk) {
+		handleChunkUnload(chunk);
+	}
+
+	@Override
+	public String getSubscriberName() {
+		return name;
+	}
+
+	public synchronized void handleChunkLoad(Chunk chunk) {
+		long chunkKey = XZWCoord.toKey(chunk);
+		Map<Location, T> perChunkMap = perChunk.get(chunkKey);
+		if (perChunkMap == null) {
+			return;
+		}
+		List<T> callbacks = new ArrayList<>(perChunkMap.size());
+		for (T trackable : perChunkMap.values()) {
+			if (trackable.hasChunkCallbacks()) {
+				callbacks.add(trackable);
 			}
 		}
+		if (callbacks.isEmpty()) {
+			return;
+		}
+		PendingLoad<T> pending = new PendingLoad<>(chunk, chunkKey, callbacks);
+		// only run right away if nothing is queued, so callbacks keep their order
+		if (pendingLoads.isEmpty() && runLoadCallbacks(pending, false)) {
+			return;
+		}
+		pendingLoads.add(pending);
+		pendingByChunk.put(chunkKey, pending);
+		if (pendingTask == null) {
+			pendingTask = Bukkit.getScheduler().runTaskTimer(CivModCorePlugin.getInstance(),
+					this::processPendingLoads, 1L, 1L);
+		}
 	}
 
-	public void handleChunkUnload(Chunk chunk) {
-		Map<Location, T> perChunkMap = perChunk.get(XZWCoord.fromChunk(chunk));
-		if (perChunkMap != null) {
-			for(Map.Entry<Location,T> entry : perChunkMap.entrySet()) {
-				int x = BlockBasedChunkMeta.modulo(entry.getKey().getBlockX());
-				int z = BlockBasedChunkMeta.modulo(entry.getKey().getBlockZ());
-				Block block = chunk.getBlock(x, entry.getKey().getBlockY(), z);
-				entry.getValue().onChunkUnload(block);
+	public synchronized void handleChunkUnload(Chunk chunk) {
+		long chunkKey = XZWCoord.toKey(chunk);
+		Map<Location, T> perChunkMap = perChunk.get(chunkKey);
+		if (perChunkMap == null) {
+			return;
+		}
+		Set<T> notLoaded = Collections.emptySet();
+		PendingLoad<T> pending = pendingByChunk.remove(chunkKey);
+		if (pending != null) {
+			pendingLoads.remove(pending);
+			notLoaded = new ReferenceOpenHashSet<>(pending.remaining());
+		}
+		for (T trackable : perChunkMap.values()) {
+			if (trackable.hasChunkCallbacks() && !notLoaded.contains(trackable)) {
+				trackable.onChunkUnload(new LazyBlock(chunk, trackable.getLocation()));
 			}
 		}
 	}
 
+	/**
+	 * Drops all load callbacks which were deferred and not made yet
+	 */
+	public synchronized void clearPendingChunkLoads() {
+		pendingLoads.clear();
+		pendingByChunk.clear();
+		if (pendingTask != null) {
+			pendingTask.cancel();
+			pendingTask = null;
+		}
+	}
+
+	private synchronized void processPendingLoads() {
+		boolean first = true;
+		while (!pendingLoads.isEmpty()) {
+			PendingLoad<T> pending = pendingLoads.peek();
+			// always make at least one callback per tick, so a tiny budget can't stall the queue
+			if (!runLoadCallbacks(pending, first)) {
+				return;
+			}
+			first = false;
+			pendingLoads.poll();
+			pendingByChunk.remove(pending.chunkKey);
+		}
+		pendingTask.cancel();
+		pendingTask = null;
+	}
+
+	/**
+	 * Makes load callbacks until either all of the given ones are done or the
+	 * budget for this tick is used up
+	 *
+	 * @param pending Callbacks to make
+	 * @param force   Whether to make the first callback even if over budget
+	 * @return True if all callbacks were made, false if some remain
+	 */
+	private boolean runLoadCallbacks(PendingLoad<T> pending, boolean force) {
+		int tick = Bukkit.getCurrentTick();
+		if (tick != budgetTick) {
+			budgetTick = tick;
+			budgetSpent = 0;
+		}
+		long start = System.nanoTime();
+		try {
+			while (pending.next < pending.callbacks.size()) {
+				if (!force && budgetSpent + System.nanoTime() - start >= callbackBudget) {
+					return false;
+				}
+				force = false;
+				T trackable = pending.callbacks.get(pending.next++);
+				// may have been removed while the callback was pending
+				if (tracked.get(trackable.getLocation()) == trackable) {
+					trackable.onChunkLoad(new LazyBlock(pending.chunk, trackable.getLocation()));
+				}
+			}
+			return true;
+		} finally {
+			budgetSpent += System.nanoTime() - start;
+		}
+	}
+
 	public synchronized void persist() {
 		deleted.values().forEach(dao::delete);
 		for (T t : tracked.values()) {
@@ -79,20 +237,32 @@ public class GlobalLocationTracker<T extends LocationTrackable> {
 
 	public synchronized void put(T trackable) {
 		tracked.put(trackable.getLocation(), trackable);
-		Map<Location, T> chunkSpecificData = perChunk.computeIfAbsent(XZWCoord.fromLocation(
-				trackable.getLocation()), s -> new HashMap<>());
-		chunkSpecificData.put(trackable.getLocation(), trackable);
+		Location loc = trackable.getLocation();
+		Map<Location, T> chunkSpecificData = perChunk.computeIfAbsent(XZWCoord.toKey(loc), s -> {
+			ChunkLifecycleDispatcher.INSTANCE.addInterest(this, loc.getWorld().getUID(),
+					BlockBasedChunkMeta.toChunkCoord(loc.getBlockX()), BlockBasedChunkMeta.toChunkCoord(loc.getBlockZ()));
+			return new HashMap<>();
+		});
+		chunkSpecificData.put(loc, trackable);
 	}
 
 	public synchronized T remove(Location loc) {
 		T removed = tracked.remove(loc);
-		if (removed != null && removed.getCacheState() != CacheState.NEW) {
-			Map<Location, T> chunkSpecificData = perChunk.computeIfAbsent(XZWCoord.fromLocation(
-					loc), s -> new HashMap<>());
-			if (removed != chunkSpecificData.remove(loc)) {
-				CivModCorePlugin.getInstance().getLogger().severe("Data removed from per chunk tracking did "
-						+ "not match data in global tracking");
-			}
+		if (removed == null) {
+			return null;
+		}
+		long chunkKey = XZWCoord.toKey(loc);
+		Map<Location, T> chunkSpecificData = perChunk.get(chunkKey);
+		if (chunkSpecificData == null || removed != chunkSpecificData.remove(loc)) {
+			CivModCorePlugin.getInstance().getLogger().severe("Data removed from per chunk tracking did "
+					+ "not match data in global tracking");
+		}
+		if (chunkSpecificData != null && chunkSpecificData.isEmpty()) {
+			perChunk.remove(chunkKey);
+			ChunkLifecycleDispatcher.INSTANCE.removeInterest(this, loc.getWorld().getUID(),
+					BlockBasedChunkMeta.toChunkCoord(loc.getBlockX()), BlockBasedChunkMeta.toChunkCoord(loc.getBlockZ()));
+		}
+		if (removed.getCacheState() != CacheState.NEW) {
 			deleted.put(loc, removed);
 		}
 		return removed;
@@ -102,4 +272,23 @@ public class GlobalLocationTracker<T extends LocationTrackable> {
 		return remove(trackable.getLocation());
 	}
 
+	private static final class PendingLoad<T> {
+
+		private final Chunk chunk;
+		private final long chunkKey;
+		private final List<T> callbacks;
+		private int next;
+
+		private PendingLoad(Chunk chunk, long chunkKey, List<T> callbacks) {
+			this.chunk = chunk;
+			this.chunkKey = chunkKey;
+			this.callbacks = callbacks;
+		}
+
+		private List<T> remaining() {
+			return callbacks.subList(next, callbacks.size());
+		}
+
+	}
+
 }
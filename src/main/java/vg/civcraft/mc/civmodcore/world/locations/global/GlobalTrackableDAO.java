@@ -33,6 +33,15 @@ public abstract class GlobalTrackableDAO<T extends LocationTrackable> {
 	
 	public abstract void update(T t);
 	
+	/**
+	 * Loads all tracked objects. This is a bulk read run on startup, so
+	 * implementations should read through
+	 * {@link ManagedDatasource#stream(String, vg.civcraft.mc.civmodcore.dao.StreamingQuery.RowReader)},
+	 * which keeps memory use bounded however many objects there are, and keeps
+	 * the read off the primary if read replicas are configured
+	 * 
+	 * @param insertFunction Function to pass each loaded object to
+	 */
 	public abstract void loadAll(Consumer<T> insertFunction);
 
 }
@@ -0,0 +1,55 @@
+package vg.civcraft.mc.civmodcore.world.locations.global;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.BlockBasedChunkMeta;
+
+/**
+ * Handle to a block in a chunk which is loaded or unloading, passed to chunk
+ * callbacks of location trackables. The block is only looked up once
+ * {@link #getBlock()} is called, so trackables which only need their location or
+ * chunk don't pay for the lookup
+ */
+public final class LazyBlock {
+
+	private final Chunk chunk;
+	private final Location location;
+	private Block block;
+
+	public LazyBlock(Chunk chunk, Location location) {
+		this.chunk = chunk;
+		this.location = location;
+	}
+
+	/**
+	 * @return Chunk the block is in
+	 */
+	public Chunk getChunk() {
+		return chunk;
+	}
+
+	/**
+	 * @return Location of the block. This is the location the trackable is tracked
+	 *         at and must not be modified
+	 */
+	public Location getLocation() {
+		return location;
+	}
+
+	/**
+	 * Looks up the block, if it wasn't already. Must only be called from the main
+	 * thread and while the chunk is still loaded, so not after the callback
+	 * returned
+	 *
+	 * @return Block at the location
+	 */
+	public Block getBlock() {
+		if (block == null) {
+			block = chunk.getBlock(BlockBasedChunkMeta.modulo(location.getBlockX()), location.getBlockY(),
+					BlockBasedChunkMeta.modulo(location.getBlockZ()));
+		}
+		return block;
+	}
+
+}
@@ -22,11 +22,56 @@ public abstract class LocationTrackable {
 		return location;
 	}
 
+	/**
+	 * Called when the chunk this is in has loaded. Calls may be deferred by a few
+	 * ticks when many trackables are in loading chunks, but are always made while
+	 * the chunk is loaded and before the matching unload callback. Override
+	 * {@link #onChunkLoad(LazyBlock)} instead where possible, which avoids looking
+	 * up the block if it's not needed
+	 *
+	 * @param block Block at the location of this trackable
+	 */
 	public void onChunkLoad(Block block) {
 	}
 
+	/**
+	 * Called right before the chunk this is in unloads. Override
+	 * {@link #onChunkUnload(LazyBlock)} instead where possible, which avoids
+	 * looking up the block if it's not needed
+	 *
+	 * @param block Block at the location of this trackable
+	 */
 	public void onChunkUnload(Block block) {
 	}
+
+	/**
+	 * Called when the chunk this is in has loaded, see {@link #onChunkLoad(Block)}
+	 *
+	 * @param block Handle to the block at the location of this trackable
+	 */
+	public void onChunkLoad(LazyBlock block) {
+		onChunkLoad(block.getBlock());
+	}
+
+	/**
+	 * Called right before the chunk this is in unloads
+	 *
+	 * @param block Handle to the block at the location of this trackable
+	 */
+	public void onChunkUnload(LazyBlock block) {
+		onChunkUnload(block.getBlock());
+	}
+
+	/**
+	 * Trackables which don't react to their chunk loading or unloading should
+	 * override this to return false, so they are skipped entirely instead of
+	 * having the block looked up for an empty callback
+	 *
+	 * @return Whether chunk load and unload callbacks should be made
+	 */
+	public boolean hasChunkCallbacks() {
+		return true;
+	}
 	
 	public void setCacheState(CacheState state) {
 		this.cacheState = this.cacheState.progress(state);
@@ -1,6 +1,14 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 
 public abstract class AbstractYLimitedArea implements IArea {
 
@@ -35,4 +43,35 @@ public abstract class AbstractYLimitedArea implements IArea {
 		return upperYBound;
 	}
 
+	/**
+	 * Loads the chunks behind the given chunk keys
+	 */
+	protected static Collection<Chunk> toChunks(World world, LongSet chunkKeys) {
+		List<Chunk> chunks = new ArrayList<>(chunkKeys.size());
+		for (LongIterator iter = chunkKeys.iterator(); iter.hasNext();) {
+			long key = iter.nextLong();
+			chunks.add(world.getChunkAt(ChunkKey.getX(key), ChunkKey.getZ(key)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Converts the given chunk keys to pseudo chunks
+	 */
+	protected static Collection<PseudoChunk> toPseudoChunks(World world, LongSet chunkKeys) {
+		List<PseudoChunk> chunks = new ArrayList<>(chunkKeys.size());
+		for (LongIterator iter = chunkKeys.iterator(); iter.hasNext();) {
+			long key = iter.nextLong();
+			chunks.add(new PseudoChunk(world, ChunkKey.getX(key), ChunkKey.getZ(key)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return Coordinate of the chunk the given block coordinate is in
+	 */
+	protected static int toChunkCoord(double blockCoord) {
+		return ((int) Math.floor(blockCoord)) >> 4;
+	}
+
 }
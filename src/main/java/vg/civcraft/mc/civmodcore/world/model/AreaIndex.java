@@ -0,0 +1,249 @@
+package vg.civcraft.mc.civmodcore.world.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.Location;
+import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.locations.QTBox;
+import vg.civcraft.mc.civmodcore.world.locations.SparseQuadTree;
+
+/**
+ * Spatial index over areas, which finds the areas containing a location without
+ * testing every single one. Rectangles and ellipses are indexed by their
+ * bounding box in a quad tree per world, so a lookup only tests the areas whose
+ * bounding box contains the location. Areas without a bounding box, like
+ * {@link GlobalYLimitedArea} or other implementations of {@link IArea}, are
+ * tested on every lookup in their world.
+ *
+ * Lookups are safe from any thread and never block, as they run against an
+ * immutable snapshot of the index. Modifications rebuild the snapshot, so
+ * prefer {@link #rebuild(Collection)} over adding areas one by one, for example
+ * when reloading a config.
+ *
+ * @param <A> Type of area indexed
+ */
+public class AreaIndex<A extends IArea> {
+
+	private final Object lock = new Object();
+	// Only modified while holding the lock
+	private List<A> areas;
+	private volatile Map<UUID, WorldIndex<A>> worlds;
+
+	public AreaIndex() {
+		this.areas = new ArrayList<>();
+		this.worlds = Collections.emptyMap();
+	}
+
+	public AreaIndex(Collection<? extends A> areas) {
+		this();
+		rebuild(areas);
+	}
+
+	/**
+	 * Replaces all areas in the index with the given ones
+	 *
+	 * @param areas Areas to index
+	 * @throws IllegalArgumentException If any of the areas has no world, in which
+	 *                                  case the index is left unchanged
+	 */
+	public void rebuild(Collection<? extends A> areas) {
+		synchronized (lock) {
+			publish(new ArrayList<>(areas));
+		}
+	}
+
+	/**
+	 * Adds a single area to the index. Rebuilds the whole index, use
+	 * {@link #rebuild(Collection)} to add many at once
+	 *
+	 * @param area Area to add
+	 * @throws IllegalArgumentException If the area has no world, in which case the
+	 *                                  index is left unchanged
+	 */
+	public void add(A area) {
+		synchronized (lock) {
+			List<A> updated = new ArrayList<>(areas);
+			updated.add(area);
+			publish(updated);
+		}
+	}
+
+	/**
+	 * Removes a single area from the index. Rebuilds the whole index, use
+	 * {@link #rebuild(Collection)} to remove many at once
+	 *
+	 * @param area Area to remove
+	 * @return True if the area was indexed
+	 */
+	public boolean remove(A area) {
+		synchronized (lock) {
+			List<A> updated = new ArrayList<>(areas);
+			if (!updated.remove(area)) {
+				return false;
+			}
+			publish(updated);
+			return true;
+		}
+	}
+
+	/**
+	 * @return All indexed areas
+	 */
+	public List<A> getAll() {
+		synchronized (lock) {
+			return new ArrayList<>(areas);
+		}
+	}
+
+	/**
+	 * @return Amount of indexed areas
+	 */
+	public int size() {
+		synchronized (lock) {
+			return areas.size();
+		}
+	}
+
+	/**
+	 * Finds all indexed areas which contain the given location
+	 *
+	 * @param location Location to look up
+	 * @return Areas containing the location, possibly empty
+	 */
+	public List<A> getAreas(Location location) {
+		World world = location.getWorld();
+		if (world == null) {
+			return Collections.emptyList();
+		}
+		WorldIndex<A> index = worlds.get(world.getUID());
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		List<A> result = new ArrayList<>();
+		for (Entry<A> entry : index.tree.find(location.getBlockX(), location.getBlockZ())) {
+			if (entry.area.isInArea(location)) {
+				result.add(entry.area);
+			}
+		}
+		for (A area : index.unbounded) {
+			if (area.isInArea(location)) {
+				result.add(area);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param location Location to look up
+	 * @return True if any indexed area contains the given location
+	 */
+	public boolean isInAnyArea(Location location) {
+		return !getAreas(location).isEmpty();
+	}
+
+	/**
+	 * Builds the index over the given areas and only then replaces the current
+	 * areas and index with them, so an invalid area leaves both untouched. Must be
+	 * called while holding the lock
+	 */
+	private void publish(List<A> areas) {
+		Map<UUID, WorldIndex<A>> updated = new HashMap<>();
+		for (A area : areas) {
+			World world = area.getWorld();
+			if (world == null) {
+				throw new IllegalArgumentException("Area " + area + " has no world");
+			}
+			WorldIndex<A> index = updated.computeIfAbsent(world.getUID(), w -> new WorldIndex<>());
+			Entry<A> entry = toEntry(area);
+			if (entry == null) {
+				index.unbounded.add(area);
+			} else {
+				index.tree.add(entry);
+			}
+		}
+		this.areas = areas;
+		this.worlds = updated;
+	}
+
+	private static <A extends IArea> Entry<A> toEntry(A area) {
+		double xSize;
+		double zSize;
+		if (area instanceof RectangleArea rectangle) {
+			xSize = rectangle.getXSize();
+			zSize = rectangle.getZSize();
+		} else if (area instanceof EllipseArea ellipse) {
+			xSize = ellipse.getXSize();
+			zSize = ellipse.getZSize();
+		} else {
+			return null;
+		}
+		Location center = area.getCenter();
+		return new Entry<>(area, (int) Math.floor(center.getX() - xSize), (int) Math.floor(center.getX() + xSize),
+				(int) Math.floor(center.getZ() - zSize), (int) Math.floor(center.getZ() + zSize));
+	}
+
+	private static final class WorldIndex<A extends IArea> {
+
+		private final SparseQuadTree<Entry<A>> tree = new SparseQuadTree<>();
+		private final List<A> unbounded = new ArrayList<>();
+
+	}
+
+	/**
+	 * Block bounding box of an area. Compared by identity, so identical areas can
+	 * be indexed side by side
+	 */
+	private static final class Entry<A extends IArea> implements QTBox {
+
+		private final A area;
+		private final int minX;
+		private final int maxX;
+		private final int minZ;
+		private final int maxZ;
+
+		private Entry(A area, int minX, int maxX, int minZ, int maxZ) {
+			this.area = area;
+			this.minX = minX;
+			this.maxX = maxX;
+			this.minZ = minZ;
+			this.maxZ = maxZ;
+		}
+
+		@Override
+		public int qtXMin() {
+			return minX;
+		}
+
+		@Override
+		public int qtXMid() {
+			return (int) (((long) minX + maxX) / 2);
+		}
+
+		@Override
+		public int qtXMax() {
+			return maxX;
+		}
+
+		@Override
+		public int qtZMin() {
+			return minZ;
+		}
+
+		@Override
+		public int qtZMid() {
+			return (int) (((long) minZ + maxZ) / 2);
+		}
+
+		@Override
+		public int qtZMax() {
+			return maxZ;
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package vg.civcraft.mc.civmodcore.world.model;
+
+/**
+ * Describes how much of a chunk lies within an area, considering only x and z
+ */
+public enum ChunkCoverage {
+
+	/**
+	 * No part of the chunk is in the area
+	 */
+	OUTSIDE,
+
+	/**
+	 * Some, but not all of the chunk is in the area
+	 */
+	PARTIAL,
+
+	/**
+	 * The entire chunk is in the area
+	 */
+	INSIDE;
+
+	/**
+	 * @return True if at least part of the chunk is in the area
+	 */
+	public boolean intersects() {
+		return this != OUTSIDE;
+	}
+
+}
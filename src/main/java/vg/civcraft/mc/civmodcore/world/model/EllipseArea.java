@@ -1,10 +1,12 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.Collection;
-import java.util.HashSet;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 
 public class EllipseArea extends AbstractYLimitedArea {
 
@@ -23,20 +25,57 @@ public class EllipseArea extends AbstractYLimitedArea {
 
 	@Override
 	public Collection<Chunk> getChunks() {
-		Collection<Chunk> chunks = new HashSet<>();
-		for (double x = center.getX() - xSize; x <= center.getX() + xSize; x += 16) {
-			for (double z = center.getZ() - zSize; z <= center.getZ() + zSize; z += 16) {
-				Chunk c = new Location(center.getWorld(), x, center.getY(), z).getChunk();
-				// if one of the corners is in the area the chunk is inside
-				if (isInArea(new Location(c.getWorld(), c.getX() * 16, 0, (c.getZ() * 16) + 15))
-						|| isInArea(new Location(c.getWorld(), c.getX() * 16, 0, c.getZ() * 16))
-						|| isInArea(new Location(c.getWorld(), (c.getX() * 16) + 15, 0, c.getZ() * 16))
-						|| isInArea(new Location(c.getWorld(), (c.getX() * 16) + 15, 0, (c.getZ() * 16) + 15))) {
-					chunks.add(c);
-				}
+		return toChunks(getWorld(), getChunkKeys());
+	}
+
+	@Override
+	public LongSet getChunkKeys() {
+		int minChunkX = toChunkCoord(center.getX() - xSize);
+		int maxChunkX = toChunkCoord(center.getX() + xSize);
+		LongSet keys = new LongOpenHashSet();
+		for (int x = minChunkX; x <= maxChunkX; x++) {
+			// the ellipse is widest in z where the column comes closest to the center in x
+			double xDist = distanceToRange(center.getX(), x << 4, (x << 4) + 16);
+			double ratio = 1 - (xDist * xDist) / (xSize * xSize);
+			if (ratio < 0) {
+				continue;
+			}
+			double halfZ = zSize * Math.sqrt(ratio);
+			int maxChunkZ = toChunkCoord(center.getZ() + halfZ);
+			for (int z = toChunkCoord(center.getZ() - halfZ); z <= maxChunkZ; z++) {
+				keys.add(ChunkKey.of(x, z));
 			}
 		}
-		return chunks;
+		return keys;
+	}
+
+	@Override
+	public ChunkCoverage getChunkCoverage(int chunkX, int chunkZ) {
+		int minX = chunkX << 4;
+		int minZ = chunkZ << 4;
+		// closest point of the chunk to the center
+		if (!isInEllipse(distanceToRange(center.getX(), minX, minX + 16),
+				distanceToRange(center.getZ(), minZ, minZ + 16))) {
+			return ChunkCoverage.OUTSIDE;
+		}
+		// the ellipse is convex, so the chunk is inside if its furthest corner is
+		double xDist = Math.max(Math.abs(center.getX() - minX), Math.abs(center.getX() - (minX + 16)));
+		double zDist = Math.max(Math.abs(center.getZ() - minZ), Math.abs(center.getZ() - (minZ + 16)));
+		return isInEllipse(xDist, zDist) ? ChunkCoverage.INSIDE : ChunkCoverage.PARTIAL;
+	}
+
+	private boolean isInEllipse(double xDist, double zDist) {
+		return ((xDist * xDist) / (xSize * xSize)) + ((zDist * zDist) / (zSize * zSize)) <= 1;
+	}
+
+	private static double distanceToRange(double value, double min, double max) {
+		if (value < min) {
+			return min - value;
+		}
+		if (value > max) {
+			return value - max;
+		}
+		return 0;
 	}
 
 	@Override
@@ -51,9 +90,7 @@ public class EllipseArea extends AbstractYLimitedArea {
 
 	@Override
 	public boolean isInArea(Location loc) {
-		double xDist = center.getX() - loc.getX();
-		double zDist = center.getZ() - loc.getZ();
-		return super.isInArea(loc) && ((xDist * xDist) / (xSize * xSize)) + ((zDist * zDist) / (zSize * zSize)) <= 1;
+		return super.isInArea(loc) && isInEllipse(center.getX() - loc.getX(), center.getZ() - loc.getZ());
 	}
 
 	/**
@@ -72,20 +109,7 @@ public class EllipseArea extends AbstractYLimitedArea {
 
 	@Override
 	public Collection<PseudoChunk> getPseudoChunks() {
-		Collection<PseudoChunk> chunks = new HashSet<>();
-		for (int x = (int) (center.getX() - xSize); x <= center.getX() + xSize; x += 16) {
-			for (int z = (int) (center.getZ() - zSize); z <= center.getZ() + zSize; z += 16) {
-				PseudoChunk c = new PseudoChunk(center.getWorld(), x / 16, z / 16);
-				// if one of the corners is in the area the chunk is inside
-				if (isInArea(new Location(c.getWorld(), c.getX() * 16, 0, (c.getZ() * 16) + 15))
-						|| isInArea(new Location(c.getWorld(), c.getX() * 16, 0, c.getZ() * 16))
-						|| isInArea(new Location(c.getWorld(), (c.getX() * 16) + 15, 0, c.getZ() * 16))
-						|| isInArea(new Location(c.getWorld(), (c.getX() * 16) + 15, 0, (c.getZ() * 16) + 15))) {
-					chunks.add(c);
-				}
-			}
-		}
-		return chunks;
+		return toPseudoChunks(getWorld(), getChunkKeys());
 	}
 
 }
@@ -1,5 +1,6 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.Collection;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -22,6 +23,22 @@ public class GlobalYLimitedArea extends AbstractYLimitedArea {
 		return null;
 	}
 
+	/**
+	 * @return Null, because this area includes an infinite amount of chunks
+	 */
+	@Override
+	public LongSet getChunkKeys() {
+		return null;
+	}
+
+	/**
+	 * @return Inside for every chunk, as this area covers every chunk of its world in x and z
+	 */
+	@Override
+	public ChunkCoverage getChunkCoverage(int chunkX, int chunkZ) {
+		return ChunkCoverage.INSIDE;
+	}
+
 	@Override
 	public Location getCenter() {
 		return new Location(world, 0, 0, 0);
@@ -1,9 +1,12 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.Collection;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 
 public interface IArea {
 
@@ -18,12 +21,50 @@ public interface IArea {
 
 	/**
 	 * Collects all chunks which are (partially) inside the defined area. If the area contains an infinite amount of
-	 * chunks, this will return null
+	 * chunks, this will return null. This loads every chunk in the area, use {@link #getChunkKeys()} if only the
+	 * coordinates are needed
 	 *
 	 * @return All chunks in the area or null in case of an infinite size
 	 */
 	Collection<Chunk> getChunks();
 
+	/**
+	 * Collects the coordinates of all chunks which are (partially) inside the defined area, considering only x and z,
+	 * without loading any of them
+	 *
+	 * @return Chunks in the area packed through {@link ChunkKey#of(int, int)} or null in case of an infinite size
+	 */
+	default LongSet getChunkKeys() {
+		Collection<PseudoChunk> chunks = getPseudoChunks();
+		if (chunks == null) {
+			return null;
+		}
+		LongSet keys = new LongOpenHashSet(chunks.size());
+		for (PseudoChunk chunk : chunks) {
+			keys.add(ChunkKey.of(chunk.getX(), chunk.getZ()));
+		}
+		return keys;
+	}
+
+	/**
+	 * Determines how much of the given chunk is inside the defined area, considering only x and z. The default
+	 * implementation can only tell whether a chunk intersects the area, so reports every intersecting chunk as
+	 * partially inside
+	 *
+	 * @param chunkX
+	 *            X-coordinate of the chunk
+	 * @param chunkZ
+	 *            Z-coordinate of the chunk
+	 * @return How much of the chunk is inside the area
+	 */
+	default ChunkCoverage getChunkCoverage(int chunkX, int chunkZ) {
+		LongSet keys = getChunkKeys();
+		if (keys == null) {
+			return ChunkCoverage.PARTIAL;
+		}
+		return keys.contains(ChunkKey.of(chunkX, chunkZ)) ? ChunkCoverage.PARTIAL : ChunkCoverage.OUTSIDE;
+	}
+
 	/**
 	 * Collects all chunks which are (partially) inside the defined area. Instead of actual chunk objects, which require
 	 * the chunk behind it to be loaded, this will only return pseudo chunks, which contain the right chunk coordinates
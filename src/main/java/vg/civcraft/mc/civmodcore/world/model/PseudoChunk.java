@@ -1,5 +1,6 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import java.util.Objects;
 import org.bukkit.Chunk;
 import org.bukkit.World;
 
@@ -41,4 +42,21 @@ public class PseudoChunk {
 		return world.getChunkAt(x, z);
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PseudoChunk)) {
+			return false;
+		}
+		PseudoChunk other = (PseudoChunk) o;
+		return x == other.x && z == other.z && Objects.equals(world, other.world);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(world, x, z);
+	}
+
 }
@@ -1,10 +1,12 @@
 package vg.civcraft.mc.civmodcore.world.model;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import java.util.Collection;
-import java.util.HashSet;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 
 public class RectangleArea extends AbstractYLimitedArea {
 
@@ -23,15 +25,40 @@ public class RectangleArea extends AbstractYLimitedArea {
 
 	@Override
 	public Collection<Chunk> getChunks() {
-		Collection<Chunk> chunks = new HashSet<>();
-		for (double x = center.getX() - xSize; x <= center.getX() + xSize; x += 16) {
-			for (double z = center.getZ() - zSize; z <= center.getZ() + zSize; z += 16) {
-				chunks.add(new Location(center.getWorld(), x, center.getY(), z).getChunk());
+		return toChunks(getWorld(), getChunkKeys());
+	}
+
+	@Override
+	public LongSet getChunkKeys() {
+		int minChunkX = toChunkCoord(center.getX() - xSize);
+		int maxChunkX = toChunkCoord(center.getX() + xSize);
+		int minChunkZ = toChunkCoord(center.getZ() - zSize);
+		int maxChunkZ = toChunkCoord(center.getZ() + zSize);
+		LongSet keys = new LongOpenHashSet((maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1));
+		for (int x = minChunkX; x <= maxChunkX; x++) {
+			for (int z = minChunkZ; z <= maxChunkZ; z++) {
+				keys.add(ChunkKey.of(x, z));
 			}
-			// last one might have been skipped
-			chunks.add(new Location(center.getWorld(), x, center.getY(), center.getZ() + zSize).getChunk());
 		}
-		return chunks;
+		return keys;
+	}
+
+	@Override
+	public ChunkCoverage getChunkCoverage(int chunkX, int chunkZ) {
+		double minX = center.getX() - xSize;
+		double maxX = center.getX() + xSize;
+		double minZ = center.getZ() - zSize;
+		double maxZ = center.getZ() + zSize;
+		int chunkMinX = chunkX << 4;
+		int chunkMinZ = chunkZ << 4;
+		if (chunkX < toChunkCoord(minX) || chunkX > toChunkCoord(maxX) || chunkZ < toChunkCoord(minZ)
+				|| chunkZ > toChunkCoord(maxZ)) {
+			return ChunkCoverage.OUTSIDE;
+		}
+		if (chunkMinX >= minX && chunkMinX + 16 <= maxX && chunkMinZ >= minZ && chunkMinZ + 16 <= maxZ) {
+			return ChunkCoverage.INSIDE;
+		}
+		return ChunkCoverage.PARTIAL;
 	}
 
 	@Override
@@ -69,15 +96,7 @@ public class RectangleArea extends AbstractYLimitedArea {
 
 	@Override
 	public Collection<PseudoChunk> getPseudoChunks() {
-		Collection<PseudoChunk> chunks = new HashSet<>();
-		for (int x = (int) (center.getX() - xSize); x <= center.getX() + xSize; x += 16) {
-			for (int z = (int) (center.getZ() - zSize); z <= center.getZ() + zSize; z += 16) {
-				chunks.add(new PseudoChunk(center.getWorld(), x / 16, z / 16));
-			}
-			// last one might have been skipped
-			chunks.add(new PseudoChunk(center.getWorld(), x / 16, ((int) (center.getZ() + zSize)) / 16));
-		}
-		return chunks;
+		return toPseudoChunks(getWorld(), getChunkKeys());
 	}
 
 }
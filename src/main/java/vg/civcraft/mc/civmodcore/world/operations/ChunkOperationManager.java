@@ -4,10 +4,13 @@ import co.aikar.commands.BaseCommand;
 import co.aikar.commands.annotation.CommandAlias;
 import co.aikar.commands.annotation.CommandPermission;
 import co.aikar.commands.annotation.Description;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.md_5.bungee.api.ChatColor;
@@ -16,27 +19,31 @@ import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
-import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.plugin.Plugin;
 import vg.civcraft.mc.civmodcore.CivModCorePlugin;
+import vg.civcraft.mc.civmodcore.world.ChunkLifecycleDispatcher;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
 import vg.civcraft.mc.civmodcore.world.WorldTracker;
 import vg.civcraft.mc.civmodcore.world.WorldUtils;
-import vg.civcraft.mc.civmodcore.world.WorldXZ;
 
-public class ChunkOperationManager extends BaseCommand implements Listener {
+public class ChunkOperationManager extends BaseCommand implements ChunkLifecycleDispatcher.Subscriber {
 
 	public static final ChunkOperationManager INSTANCE = new ChunkOperationManager();
 	private static final CivModCorePlugin PLUGIN = CivModCorePlugin.getInstance();
-	private static final Map<WorldXZ, List<ChunkOperation>> STORAGE = new HashMap<>();
+	private static final Map<UUID, Long2ObjectMap<List<ChunkOperation>>> STORAGE = new HashMap<>();
 
-	@EventHandler
-	public void onChunkLoad(final ChunkLoadEvent event) {
-		final Chunk chunk = event.getChunk();
+	@Override
+	public void onChunkLoad(final Chunk chunk) {
 		final World world = chunk.getWorld();
-		final WorldXZ wxz = new WorldXZ(world.getUID(), chunk.getX(), chunk.getZ());
-		final List<ChunkOperation> operations = STORAGE.remove(wxz);
+		final Long2ObjectMap<List<ChunkOperation>> chunks = STORAGE.get(world.getUID());
+		if (chunks == null) {
+			return;
+		}
+		final List<ChunkOperation> operations = chunks.remove(ChunkKey.of(chunk.getX(), chunk.getZ()));
+		if (chunks.isEmpty()) {
+			STORAGE.remove(world.getUID());
+		}
+		ChunkLifecycleDispatcher.INSTANCE.removeInterest(this, world.getUID(), chunk.getX(), chunk.getZ());
 		if (CollectionUtils.isEmpty(operations)) {
 			return;
 		}
@@ -51,46 +58,51 @@ public class ChunkOperationManager extends BaseCommand implements Listener {
 	@CommandPermission("cmc.debug")
 	public void onDebugCommand(final CommandSender sender) {
 		sender.sendMessage(ChatColor.YELLOW + "Chunk Operations:");
-		for (final Map.Entry<WorldXZ, List<ChunkOperation>> entry : STORAGE.entrySet()) {
-			final WorldXZ wxz = entry.getKey();
-			final List<ChunkOperation> operations = entry.getValue();
-			final int operationCount = operations == null ? 0 : operations.size();
-			final World world = WorldTracker.getLoadedWorld(wxz.getWorld());
-			// First line: " WorldName: 22 operations"
-			final var component = Component.text().content(" ");
-			if (world == null) {
-				component.append(Component.text("{NOT LOADED}").color(NamedTextColor.RED));
-			}
-			else {
-				component.append(Component.text(world.getName()).color(NamedTextColor.GREEN));
-			}
-			component.append(Component.text(": "));
-			if (operationCount == 0) {
-				component.append(Component.text("0 operations"));
-				sender.sendMessage(component);
-				continue;
-			}
-			else if (operationCount == 1) {
-				component.append(Component.text("1 operation"));
-			}
-			else {
-				component.append(Component.text(operationCount + " operations"));
-			}
-			sender.sendMessage(component);
-			// Other lines: " - PluginName: 1 operation"
-			final Map<Plugin, Integer> pluginCount = new HashMap<>();
-			for (final ChunkOperation operation : operations) {
-				pluginCount.computeIfPresent(operation.plugin, (o, count) -> count + 1);
-				pluginCount.putIfAbsent(operation.plugin, 0);
-			}
-			for (final Map.Entry<Plugin, Integer> count : pluginCount.entrySet()) {
-				sender.sendMessage(" - " + ChatColor.AQUA + count.getKey().getName() + ": " +
-						ChatColor.RESET + count.getValue());
+		for (final Map.Entry<UUID, Long2ObjectMap<List<ChunkOperation>>> worldEntry : STORAGE.entrySet()) {
+			final World world = WorldTracker.getLoadedWorld(worldEntry.getKey());
+			for (final List<ChunkOperation> operations : worldEntry.getValue().values()) {
+				sendOperations(sender, world, operations);
 			}
 		}
 		sender.sendMessage(ChatColor.RED + "End of operations.");
 	}
 
+	private static void sendOperations(final CommandSender sender, final World world,
+									   final List<ChunkOperation> operations) {
+		final int operationCount = operations == null ? 0 : operations.size();
+		// First line: " WorldName: 22 operations"
+		final var component = Component.text().content(" ");
+		if (world == null) {
+			component.append(Component.text("{NOT LOADED}").color(NamedTextColor.RED));
+		}
+		else {
+			component.append(Component.text(world.getName()).color(NamedTextColor.GREEN));
+		}
+		component.append(Component.text(": "));
+		if (operationCount == 0) {
+			component.append(Component.text("0 operations"));
+			sender.sendMessage(component);
+			return;
+		}
+		else if (operationCount == 1) {
+			component.append(Component.text("1 operation"));
+		}
+		else {
+			component.append(Component.text(operationCount + " operations"));
+		}
+		sender.sendMessage(component);
+		// Other lines: " - PluginName: 1 operation"
+		final Map<Plugin, Integer> pluginCount = new HashMap<>();
+		for (final ChunkOperation operation : operations) {
+			pluginCount.computeIfPresent(operation.plugin, (o, count) -> count + 1);
+			pluginCount.putIfAbsent(operation.plugin, 0);
+		}
+		for (final Map.Entry<Plugin, Integer> count : pluginCount.entrySet()) {
+			sender.sendMessage(" - " + ChatColor.AQUA + count.getKey().getName() + ": " +
+					ChatColor.RESET + count.getValue());
+		}
+	}
+
 	/**
 	 * Stages an operation for a particular chunk, which may be executed immediately if the chunk is loaded.
 	 *
@@ -111,8 +123,11 @@ public class ChunkOperationManager extends BaseCommand implements Listener {
 		}
 		final Chunk chunk = WorldUtils.getLoadedChunk(world, location.getBlockX(), location.getBlockZ());
 		if (chunk == null) {
-			final WorldXZ wxz = new WorldXZ(location);
-			STORAGE.computeIfAbsent(wxz, l -> new ArrayList<>()).add(operation);
+			STORAGE.computeIfAbsent(world.getUID(), w -> new Long2ObjectOpenHashMap<>())
+					.computeIfAbsent(ChunkKey.of(location.getBlockX(), location.getBlockZ()), l -> new ArrayList<>())
+					.add(operation);
+			ChunkLifecycleDispatcher.INSTANCE.addInterest(INSTANCE, world.getUID(), location.getBlockX(),
+					location.getBlockZ());
 			return false;
 		}
 		executeOperation(operation, chunk);
@@ -0,0 +1,53 @@
+package vg.civcraft.mc.civmodcore.dao;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DatabaseCredentialsTests {
+
+	@Test
+	public void testReplicasInheritFromPrimary() {
+		// Setup
+		final var data = new HashMap<String, Object>() {{
+			put("username", "civ");
+			put("password", "hunter2");
+			put("host", "primary.local");
+			put("port", 3306);
+			put("database", "civ");
+			put("read_replicas", List.of(Map.of("host", "replica.local", "port", 3307)));
+			put("max_replica_lag", 2000);
+		}};
+		// Process
+		final DatabaseCredentials credentials = DatabaseCredentials.deserialize(data);
+		// Check
+		Assert.assertNotNull(credentials);
+		Assert.assertEquals(1, credentials.readReplicas().size());
+		Assert.assertEquals(2000L, credentials.maxReplicaLag());
+		final DatabaseCredentials replica = credentials.readReplicas().get(0);
+		Assert.assertEquals("replica.local", replica.host());
+		Assert.assertEquals(3307, replica.port());
+		Assert.assertEquals("civ", replica.username());
+		Assert.assertEquals("hunter2", replica.password());
+		Assert.assertEquals("civ", replica.database());
+		Assert.assertFalse(replica.hasReadReplicas());
+	}
+
+	@Test
+	public void testNoReplicasByDefault() {
+		// Setup
+		final var data = new HashMap<String, Object>() {{
+			put("host", "primary.local");
+		}};
+		// Process
+		final DatabaseCredentials credentials = DatabaseCredentials.deserialize(data);
+		// Check
+		Assert.assertNotNull(credentials);
+		Assert.assertFalse(credentials.hasReadReplicas());
+		Assert.assertEquals(DatabaseCredentials.DEFAULT_MAX_REPLICA_LAG, credentials.maxReplicaLag());
+		Assert.assertEquals(credentials, DatabaseCredentials.deserialize(credentials.serialize()));
+	}
+
+}
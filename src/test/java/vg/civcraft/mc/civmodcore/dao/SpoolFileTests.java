@@ -0,0 +1,93 @@
+package vg.civcraft.mc.civmodcore.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpoolFileTests {
+
+	@Test
+	public void testEntriesSurviveReopening() throws IOException {
+		// Setup
+		final File file = File.createTempFile("spool", ".dat");
+		file.deleteOnExit();
+		try (final var spool = new SpoolFile(file)) {
+			spool.append("insert into test values (?, ?, ?)", new Object[] { 1, (short) 2, "three" });
+			spool.append("delete from test where id = ?", new Object[] { null });
+		}
+		// Process
+		final List<SpoolFile.Entry> entries;
+		try (final var spool = new SpoolFile(file)) {
+			entries = spool.peek(10);
+		}
+		// Check
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals("insert into test values (?, ?, ?)", entries.get(0).query());
+		Assert.assertArrayEquals(new Object[] { 1, (short) 2, "three" }, entries.get(0).parameters());
+		Assert.assertArrayEquals(new Object[] { null }, entries.get(1).parameters());
+	}
+
+	@Test
+	public void testTornEntryIsDiscarded() throws IOException {
+		// Setup
+		final File file = File.createTempFile("spool", ".dat");
+		file.deleteOnExit();
+		try (final var spool = new SpoolFile(file)) {
+			spool.append("update test set a = ?", new Object[] { 1L });
+			spool.append("update test set b = ?", new Object[] { 2L });
+		}
+		try (final var raw = new RandomAccessFile(file, "rw")) {
+			raw.setLength(raw.length() - 3);
+		}
+		// Process
+		try (final var spool = new SpoolFile(file)) {
+			// Check
+			Assert.assertEquals(1, spool.size());
+			Assert.assertEquals("update test set a = ?", spool.peek(10).get(0).query());
+		}
+	}
+
+	@Test
+	public void testAcknowledgingEverythingEmptiesFile() throws IOException {
+		// Setup
+		final File file = File.createTempFile("spool", ".dat");
+		file.deleteOnExit();
+		try (final var spool = new SpoolFile(file)) {
+			spool.append("update test set a = ?", new Object[] { true });
+			spool.append("update test set b = ?", new Object[] { new byte[] { 1, 2 } });
+			// Process
+			final List<SpoolFile.Entry> first = spool.peek(1);
+			spool.acknowledge(first.get(0), 1);
+			final List<SpoolFile.Entry> second = spool.peek(10);
+			spool.acknowledge(second.get(0), 1);
+			// Check
+			Assert.assertEquals("update test set b = ?", second.get(0).query());
+			Assert.assertTrue(spool.isEmpty());
+		}
+		Assert.assertEquals(0, file.length());
+	}
+
+	@Test
+	public void testAcknowledgementsSurviveReopening() throws IOException {
+		// Setup
+		final File file = File.createTempFile("spool", ".dat");
+		file.deleteOnExit();
+		new File(file.getPath() + ".ack").deleteOnExit();
+		try (final var spool = new SpoolFile(file)) {
+			spool.append("update test set a = ?", new Object[] { 1 });
+			spool.append("update test set b = ?", new Object[] { 2 });
+			spool.append("update test set c = ?", new Object[] { 3 });
+			spool.acknowledge(spool.peek(1).get(0), 1);
+		}
+		// Process
+		try (final var spool = new SpoolFile(file)) {
+			// Check
+			Assert.assertEquals(2, spool.size());
+			Assert.assertEquals("update test set b = ?", spool.peek(10).get(0).query());
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package vg.civcraft.mc.civmodcore.world;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkKeyTests {
+
+	@Test
+	public void testRoundTrip() {
+		// Setup
+		final int[] coords = { 0, 1, -1, 15, -16, 1_874_999, -1_875_000 };
+		for (final int x : coords) {
+			for (final int z : coords) {
+				// Process
+				final long key = ChunkKey.of((short) 7, x, z);
+				// Check
+				Assert.assertEquals(7, ChunkKey.getWorldID(key));
+				Assert.assertEquals(x, ChunkKey.getX(key));
+				Assert.assertEquals(z, ChunkKey.getZ(key));
+			}
+		}
+	}
+
+	@Test
+	public void testOrdering() {
+		// Setup
+		final long[] ordered = {
+				ChunkKey.of((short) 1, -5, 3),
+				ChunkKey.of((short) 1, -4, -100),
+				ChunkKey.of((short) 1, -4, 2),
+				ChunkKey.of((short) 1, 3, -1),
+				ChunkKey.of((short) 2, -1000, -1000) };
+		// Process / Check
+		for (int i = 1; i < ordered.length; i++) {
+			Assert.assertTrue(ordered[i - 1] < ordered[i]);
+		}
+	}
+
+	@Test
+	public void testBlockCoordinates() {
+		// Process
+		final long key = ChunkKey.ofBlock((short) 0, -1, 16);
+		// Check
+		Assert.assertEquals(-1, ChunkKey.getX(key));
+		Assert.assertEquals(1, ChunkKey.getZ(key));
+	}
+
+}
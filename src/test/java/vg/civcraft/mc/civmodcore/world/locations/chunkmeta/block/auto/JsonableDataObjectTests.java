@@ -0,0 +1,110 @@
+package vg.civcraft.mc.civmodcore.world.locations.chunkmeta.block.auto;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+import org.bukkit.Location;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonableDataObjectTests {
+
+	private static final Location LOCATION = new Location(null, 1, 2, 3);
+	private static final Logger LOGGER = Logger.getLogger(JsonableDataObjectTests.class.getName());
+
+	@Test
+	public void testStreamingOutputMatchesTreeOutput() {
+		// Setup
+		final var tree = new TreeData(LOCATION, "<owner> \"quoted\"", 42, true);
+		final var streaming = new StreamingData(LOCATION, "<owner> \"quoted\"", 42, true);
+		final var expected = new JsonObject();
+		tree.concreteSerialize(expected);
+		// Process
+		final String treeJson = tree.serialize();
+		final String streamingJson = streaming.serialize();
+		// Check
+		Assert.assertEquals(expected.toString(), treeJson);
+		Assert.assertEquals(treeJson, streamingJson);
+	}
+
+	@Test
+	public void testStreamingEngineReadsTreeOutput() {
+		// Setup
+		final var engine = JsonStorageEngine.streaming(null, LOGGER, StreamingData::read);
+		final byte[] stored = new TreeData(LOCATION, "owner", 7, false).serialize().getBytes(StandardCharsets.UTF_8);
+		// Process
+		final StreamingData data = engine.deserialize(LOCATION, stored);
+		// Check
+		Assert.assertEquals("owner", data.owner);
+		Assert.assertEquals(7, data.health);
+		Assert.assertFalse(data.locked);
+	}
+
+	private static final class TreeData extends JsonableDataObject<TreeData> {
+		private final String owner;
+		private final int health;
+		private final boolean locked;
+
+		private TreeData(final Location location, final String owner, final int health, final boolean locked) {
+			super(location, false);
+			this.owner = owner;
+			this.health = health;
+			this.locked = locked;
+		}
+
+		@Override
+		public void concreteSerialize(final JsonObject base) {
+			base.addProperty("owner", this.owner);
+			base.addProperty("health", this.health);
+			base.addProperty("locked", this.locked);
+		}
+	}
+
+	private static final class StreamingData extends JsonableDataObject<StreamingData> {
+		private final String owner;
+		private final int health;
+		private final boolean locked;
+
+		private StreamingData(final Location location, final String owner, final int health, final boolean locked) {
+			super(location, false);
+			this.owner = owner;
+			this.health = health;
+			this.locked = locked;
+		}
+
+		@Override
+		public void concreteSerialize(final JsonObject base) {
+			base.addProperty("owner", this.owner);
+			base.addProperty("health", this.health);
+			base.addProperty("locked", this.locked);
+		}
+
+		@Override
+		protected void concreteSerialize(final JsonWriter writer) throws IOException {
+			writer.name("owner").value(this.owner);
+			writer.name("health").value(this.health);
+			writer.name("locked").value(this.locked);
+		}
+
+		private static StreamingData read(final Location location, final JsonReader reader) throws IOException {
+			String owner = null;
+			int health = 0;
+			boolean locked = false;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "owner" -> owner = reader.nextString();
+					case "health" -> health = reader.nextInt();
+					case "locked" -> locked = reader.nextBoolean();
+					default -> reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new StreamingData(location, owner, health, locked);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package vg.civcraft.mc.civmodcore.world.model;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AreaIndexTests {
+
+	@Test
+	public void testRectangleLookups() {
+		// Setup
+		final World world = createWorld();
+		final RectangleArea first = new RectangleArea(0, 255, new Location(world, 10.5, 64, -3.25), 4.3, 2.6);
+		final RectangleArea second = new RectangleArea(0, 255, new Location(world, 13.75, 64, -1.1), 0.4, 7.85);
+		final AreaIndex<IArea> index = new AreaIndex<>(List.of(first, second));
+		// Process / Check: x from 6.2 to 14.8, so block 6 and 14 are only partially covered
+		Assert.assertEquals(List.of(first), index.getAreas(new Location(world, 6.25, 64, -5.8)));
+		Assert.assertTrue(index.getAreas(new Location(world, 6.15, 64, -5.8)).isEmpty());
+		Assert.assertEquals(List.of(first), index.getAreas(new Location(world, 14.79, 64, -0.66)));
+		Assert.assertTrue(index.getAreas(new Location(world, 14.81, 64, -0.66)).isEmpty());
+		assertMatchesAreas(index, world, List.of(first, second));
+	}
+
+	@Test
+	public void testEllipseLookups() {
+		// Setup
+		final World world = createWorld();
+		final EllipseArea first = new EllipseArea(0, 255, new Location(world, 0.5, 64, 0.5), 7.25, 3.5);
+		final EllipseArea second = new EllipseArea(0, 255, new Location(world, -3.3, 64, 2.9), 2.05, 6.45);
+		final AreaIndex<IArea> index = new AreaIndex<>(List.of(first, second));
+		// Process / Check: x from -6.75 to 7.75 along the center line
+		Assert.assertEquals(List.of(first), index.getAreas(new Location(world, 7.7, 64, 0.5)));
+		Assert.assertTrue(index.getAreas(new Location(world, 7.8, 64, 0.5)).isEmpty());
+		Assert.assertTrue(index.getAreas(new Location(world, 7.7, 64, 1.5)).isEmpty());
+		assertMatchesAreas(index, world, List.of(first, second));
+	}
+
+	@Test
+	public void testUnboundedAreas() {
+		// Setup
+		final World world = createWorld();
+		final World otherWorld = createWorld();
+		final GlobalYLimitedArea global = new GlobalYLimitedArea(0, 100, world);
+		final RectangleArea rectangle = new RectangleArea(0, 255, new Location(world, 0, 64, 0), 8, 8);
+		final AreaIndex<IArea> index = new AreaIndex<>(List.of(global, rectangle));
+		// Process / Check
+		Assert.assertEquals(List.of(rectangle, global), index.getAreas(new Location(world, 2, 64, 2)));
+		Assert.assertEquals(List.of(global), index.getAreas(new Location(world, 100_000.5, 50, -100_000.5)));
+		Assert.assertEquals(List.of(rectangle), index.getAreas(new Location(world, 2, 150, 2)));
+		Assert.assertTrue(index.getAreas(new Location(world, 100_000.5, 150, -100_000.5)).isEmpty());
+		Assert.assertTrue(index.getAreas(new Location(otherWorld, 2, 64, 2)).isEmpty());
+	}
+
+	@Test
+	public void testRebuildAndRemove() {
+		// Setup
+		final World world = createWorld();
+		final RectangleArea first = new RectangleArea(0, 255, new Location(world, 0, 64, 0), 8, 8);
+		final EllipseArea second = new EllipseArea(0, 255, new Location(world, 4, 64, 4), 8, 8);
+		final RectangleArea third = new RectangleArea(0, 255, new Location(world, 100, 64, 100), 8, 8);
+		final Location shared = new Location(world, 2, 64, 2);
+		final AreaIndex<IArea> index = new AreaIndex<>();
+		index.add(first);
+		index.add(second);
+		// Process / Check
+		Assert.assertEquals(2, index.getAreas(shared).size());
+		Assert.assertTrue(index.remove(first));
+		Assert.assertFalse(index.remove(first));
+		Assert.assertEquals(List.of(second), index.getAreas(shared));
+		index.rebuild(List.of(first, third));
+		Assert.assertEquals(List.of(first, third), index.getAll());
+		Assert.assertEquals(List.of(first), index.getAreas(shared));
+		Assert.assertEquals(List.of(third), index.getAreas(new Location(world, 100, 64, 100)));
+	}
+
+	@Test
+	public void testAreaWithoutWorldLeavesIndexUnchanged() {
+		// Setup
+		final World world = createWorld();
+		final RectangleArea valid = new RectangleArea(0, 255, new Location(world, 0, 64, 0), 8, 8);
+		final RectangleArea invalid = new RectangleArea(0, 255, new Location(null, 0, 64, 0), 8, 8);
+		final AreaIndex<IArea> index = new AreaIndex<>(List.of(valid));
+		// Process
+		Assert.assertThrows(IllegalArgumentException.class, () -> index.add(invalid));
+		Assert.assertThrows(IllegalArgumentException.class, () -> index.rebuild(List.of(invalid)));
+		// Check
+		Assert.assertEquals(List.of(valid), index.getAll());
+		Assert.assertEquals(List.of(valid), index.getAreas(new Location(world, 2, 64, 2)));
+	}
+
+	/**
+	 * Compares lookups against testing every area, on a grid finer than blocks
+	 */
+	private static void assertMatchesAreas(final AreaIndex<IArea> index, final World world, final List<IArea> areas) {
+		for (double x = -20; x <= 20; x += 0.25) {
+			for (double z = -20; z <= 20; z += 0.25) {
+				final Location location = new Location(world, x, 64, z);
+				final List<IArea> found = index.getAreas(location);
+				for (final IArea area : areas) {
+					Assert.assertEquals("Lookup at " + x + ", " + z, area.isInArea(location), found.contains(area));
+				}
+			}
+		}
+	}
+
+	private static World createWorld() {
+		final UUID uuid = UUID.randomUUID();
+		return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] { World.class },
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getUID" -> uuid;
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> uuid.hashCode();
+					default -> throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+}
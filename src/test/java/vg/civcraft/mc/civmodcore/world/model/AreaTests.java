@@ -0,0 +1,69 @@
+package vg.civcraft.mc.civmodcore.world.model;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.bukkit.Location;
+import org.junit.Assert;
+import org.junit.Test;
+import vg.civcraft.mc.civmodcore.world.ChunkKey;
+
+public class AreaTests {
+
+	@Test
+	public void testRectangleChunks() {
+		// Setup
+		final RectangleArea area = new RectangleArea(0, 255, new Location(null, -8, 64, 20), 24, 12);
+		// Process
+		final LongSet keys = area.getChunkKeys();
+		// Check: x from -32 to 16, z from 8 to 32
+		Assert.assertEquals(4 * 3, keys.size());
+		Assert.assertTrue(keys.contains(ChunkKey.of(-2, 0)));
+		Assert.assertTrue(keys.contains(ChunkKey.of(1, 2)));
+		Assert.assertFalse(keys.contains(ChunkKey.of(-3, 0)));
+		Assert.assertEquals(ChunkCoverage.INSIDE, area.getChunkCoverage(-2, 1));
+		Assert.assertEquals(ChunkCoverage.PARTIAL, area.getChunkCoverage(1, 1));
+		Assert.assertEquals(ChunkCoverage.OUTSIDE, area.getChunkCoverage(2, 1));
+	}
+
+	@Test
+	public void testEllipseChunks() {
+		// Setup
+		final EllipseArea area = new EllipseArea(0, 255, new Location(null, 5.5, 64, -40.25), 70, 33);
+		// Process
+		final LongSet keys = area.getChunkKeys();
+		// Check
+		for (int chunkX = -8; chunkX <= 8; chunkX++) {
+			for (int chunkZ = -8; chunkZ <= 8; chunkZ++) {
+				final ChunkCoverage coverage = area.getChunkCoverage(chunkX, chunkZ);
+				Assert.assertEquals(coverage.intersects(), keys.contains(ChunkKey.of(chunkX, chunkZ)));
+				int inside = 0;
+				int total = 0;
+				for (double x = 0; x <= 16; x += 0.5) {
+					for (double z = 0; z <= 16; z += 0.5) {
+						total++;
+						if (area.isInArea(new Location(null, (chunkX << 4) + x, 64, (chunkZ << 4) + z))) {
+							inside++;
+						}
+					}
+				}
+				if (inside > 0) {
+					Assert.assertTrue(coverage.intersects());
+				}
+				if (coverage == ChunkCoverage.INSIDE) {
+					Assert.assertEquals(total, inside);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPseudoChunkEquality() {
+		// Setup
+		final PseudoChunk former = new PseudoChunk(null, 3, -4);
+		final PseudoChunk latter = new PseudoChunk(null, 3, -4);
+		// Check
+		Assert.assertEquals(former, latter);
+		Assert.assertEquals(former.hashCode(), latter.hashCode());
+		Assert.assertNotEquals(former, new PseudoChunk(null, 4, -3));
+	}
+
+}